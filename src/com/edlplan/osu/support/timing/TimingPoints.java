@@ -4,27 +4,28 @@ import com.edlplan.framework.utils.U;
 import com.edlplan.osu.support.SampleSet;
 
 import java.util.ArrayList;
-import java.util.List;
+
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapTimingPoints;
 
 public class TimingPoints {
     private final ArrayList<TimingPoint> timings = new ArrayList<>();
 
-    public static TimingPoints parse(List<String> strings) {
+    public static TimingPoints of(BeatmapTimingPoints points) {
         TimingPoints timingPoints = new TimingPoints();
-        for (String ll : strings) {
-            String[] l = ll.split(",");
+        for (int i = 0; i < points.size(); i++) {
             TimingPoint t = new TimingPoint();
-            t.setTime(Double.parseDouble(l[0].trim()));
-            t.setBeatLength(Double.parseDouble(l[1].trim()));
+            t.setTime(points.getTime(i));
+            t.setBeatLength(points.getBeatLength(i));
             if (Double.isNaN(t.getBeatLength())) {
                 continue;
             }
-            t.setMeter(l.length > 2 ? Integer.parseInt(l[2]) : 4);
-            t.setSampleType(l.length > 3 ? Integer.parseInt(l[3]) : 1);
-            t.setSampleSet(l.length > 4 ? SampleSet.parse(l[4]) : SampleSet.None);
-            t.setVolume(l.length > 5 ? Integer.parseInt(l[5]) : 100);
+            int sampleType = points.getSampleType(i);
+            t.setMeter(points.getMeter(i));
+            t.setSampleType(sampleType == BeatmapTimingPoints.DEFAULT_SAMPLE_TYPE ? 1 : sampleType);
+            t.setSampleSet(SampleSet.parse(String.valueOf(points.getSampleIndex(i))));
+            t.setVolume(points.getVolume(i));
             t.setInherited(t.getBeatLength() < 0);
-            int eff = l.length > 7 ? Integer.parseInt(l[7]) : 0;
+            int eff = points.getEffects(i);
             t.setKiaiMode((eff & 1) > 0);
             t.setOmitFirstBarSignature((eff & 8) > 0);
             timingPoints.addTimingPoint(t);
@@ -7,6 +7,10 @@ import android.database.sqlite.SQLiteDatabase;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import ru.nsu.ccfit.zuev.osu.scoring.ScoreLibrary;
 
 public class OdrDatabase {
 
@@ -74,7 +78,19 @@ public class OdrDatabase {
         values.put("time", replay.getTime());
         values.put("perfect", replay.getPerfect());
 
-        return database.insert("scores", null, values);
+        // Go through the score writer when it is running, so that this does not race its transactions.
+        Future<Long> result = ScoreLibrary.getInstance().insertScore(values);
+        if (result == null) {
+            long id = database.insert("scores", null, values);
+            ScoreLibrary.getInstance().invalidateBestMark(values.getAsString("filename"));
+            return id;
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return -1;
+        }
     }
 
     public List<OsuDroidReplay> getReplayById(int id) {
@@ -145,6 +161,7 @@ public class OdrDatabase {
         }
 
         int result = database.delete("scores", "id = ?", new String[]{String.valueOf(id)});
+        ScoreLibrary.getInstance().invalidateBestMarks();
         if (onDatabaseChangedListener != null) {
             onDatabaseChangedListener.run();
         }
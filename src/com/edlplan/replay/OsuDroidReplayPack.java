@@ -15,6 +15,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import ru.nsu.ccfit.zuev.osu.scoring.ReplayIndex;
+
 public class OsuDroidReplayPack {
 
     public static void packTo(File file, OsuDroidReplay replay) throws Exception {
@@ -42,6 +44,9 @@ public class OsuDroidReplayPack {
 
         File file = replay.isAbsoluteReplay() ?
                 new File(replay.getReplayFile()) : new File(OdrConfig.getScoreDir(), replay.getReplayFileName());
+        if (ReplayIndex.getInstance().get(file) == null) {
+            throw new IOException("Invalid replay file: " + file.getPath());
+        }
         FileInputStream inputStream = new FileInputStream(file);
 
         byte[] buffer = new byte[1024];
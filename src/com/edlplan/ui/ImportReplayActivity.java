@@ -9,10 +9,13 @@ import com.edlplan.replay.OdrConfig;
 import com.edlplan.replay.OdrDatabase;
 import com.edlplan.replay.OsuDroidReplayPack;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 
+import ru.nsu.ccfit.zuev.osu.scoring.ReplayHeader;
+import ru.nsu.ccfit.zuev.osu.scoring.ReplayIndex;
 import ru.nsu.ccfit.zuev.osuplus.R;
 
 public class ImportReplayActivity extends Activity {
@@ -37,6 +40,12 @@ public class ImportReplayActivity extends Activity {
             }
             try {
                 OsuDroidReplayPack.ReplayEntry entry = OsuDroidReplayPack.unpack(new FileInputStream(file));
+                if (entry.replayFile == null || ReplayHeader.read(new ByteArrayInputStream(entry.replayFile)) == null) {
+                    Toast.makeText(this, R.string.failed_to_import_edr, Toast.LENGTH_SHORT).show();
+                    super.onStart();
+                    finish();
+                    return;
+                }
                 File rep = new File(OdrConfig.getScoreDir(), entry.replay.getReplayFileName());
                 if (!rep.exists()) {
                     if (!rep.createNewFile()) {
@@ -50,6 +59,8 @@ public class ImportReplayActivity extends Activity {
                 outputStream.write(entry.replayFile);
                 outputStream.close();
                 entry.replay.setReplayFile(rep.getAbsolutePath());
+                ReplayIndex.getInstance().get(rep);
+                ReplayIndex.getInstance().save();
                 if (OdrDatabase.get().write(entry.replay) != -1) {
                     Toast.makeText(this, R.string.import_edr_successfully, Toast.LENGTH_SHORT).show();
                     finish();
@@ -109,7 +109,7 @@ public class PropsMenuFragment extends BaseFragment implements IPropsMenu {
             confirm.showForResult(isAccepted -> {
                 if (isAccepted) {
                     if (menu != null) {
-                        menu.scene.postRunnable(item::delete);
+                        menu.scene.postRunnable(() -> menu.removeItem(item));
                     }
                     dismiss();
                 }
@@ -66,6 +66,20 @@ public class DifficultyBeatmap {
         stackLeniency = source.stackLeniency;
     }
 
+    /**
+     * Constructs a view of a beatmap that shares its hit objects, but has its own difficulty manager.
+     *
+     * @param source The source beatmap.
+     * @param difficultyManager The difficulty manager of the view.
+     */
+    private DifficultyBeatmap(DifficultyBeatmap source, BeatmapDifficultyManager difficultyManager) {
+        this.difficultyManager = difficultyManager;
+        hitObjectsManager = source.hitObjectsManager;
+
+        formatVersion = source.formatVersion;
+        stackLeniency = source.stackLeniency;
+    }
+
     /**
      * Gets the difficulty manager of this beatmap.
      */
@@ -140,8 +154,23 @@ public class DifficultyBeatmap {
         return combo;
     }
 
+    /**
+     * Creates a beatmap that shares hit objects with this beatmap, but uses a different difficulty manager.
+     * <br><br>
+     * Changes to hit objects of either beatmap will be reflected in both.
+     *
+     * @param difficultyManager The difficulty manager to use. It will not be cloned.
+     * @return The beatmap.
+     */
+    public DifficultyBeatmap withDifficultyManager(BeatmapDifficultyManager difficultyManager) {
+        return new DifficultyBeatmap(this, difficultyManager);
+    }
+
     /**
      * Deep clones this beatmap.
+     * <br><br>
+     * Hit object geometry such as positions and slider paths is shared with this beatmap. Only the fields
+     * that difficulty calculation changes, namely stack heights and scales, are copied.
      *
      * @return The deep cloned instance of this beatmap.
      */
@@ -0,0 +1,570 @@
+package com.rian.difficultycalculator.beatmap.hitobject;
+
+import com.rian.difficultycalculator.beatmap.hitobject.sliderobject.SliderHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.sliderobject.SliderRepeat;
+import com.rian.difficultycalculator.math.MathUtils;
+import com.rian.difficultycalculator.math.Vector2;
+
+import java.util.List;
+
+/**
+ * Holds the difficulty hit objects of a beatmap in parallel primitive columns.
+ * <br><br>
+ * Evaluators walk back and forth through the history of the current object, so every value they read is kept
+ * in its own array and addressed by index rather than spread across one object per hit object.
+ * <code>DifficultyHitObject</code> provides an object view over a single index.
+ * <br><br>
+ * Index 0 refers to the second hit object of the beatmap, as the first hit object has no difficulty of its own.
+ */
+public final class DifficultyHitObjectStore {
+    /**
+     * The value of <code>getKind</code> for hit circles.
+     */
+    public static final byte KIND_CIRCLE = 0;
+
+    /**
+     * The value of <code>getKind</code> for sliders.
+     */
+    public static final byte KIND_SLIDER = 1;
+
+    /**
+     * The value of <code>getKind</code> for spinners.
+     */
+    public static final byte KIND_SPINNER = 2;
+
+    /**
+     * The fade in time of hit objects.
+     */
+    public static final double TIME_FADE_IN = 400;
+
+    /**
+     * A distance by which all distances should be scaled in order to assume a uniform circle size.
+     */
+    private static final int normalizedRadius = 50;
+    private static final int minDeltaTime = 25;
+    private static final float assumedSliderRadius = normalizedRadius * 1.8f;
+
+    private final int count;
+    private final HitObject[] objects;
+    private final double baseTimePreempt;
+    private final double timePreempt;
+
+    private final byte[] kinds;
+    private final double[] rawStartTimes;
+    private final double[] startTimes;
+    private final double[] endTimes;
+    private final double[] deltaTimes;
+    private final double[] strainTimes;
+    private final double[] lazyJumpDistances;
+    private final double[] minimumJumpDistances;
+    private final double[] minimumJumpTimes;
+    private final double[] travelDistances;
+    private final double[] travelTimes;
+    private final double[] angles;
+    private final double[] velocities;
+    private final double[] radii;
+    private final float[] stackedX;
+    private final float[] stackedY;
+    private final float[] stackedEndX;
+    private final float[] stackedEndY;
+    private final double[] sliderLazyTravelDistances;
+    private final int[] repeatCounts;
+
+    private final double[] aimStrainsWithSliders;
+    private final double[] aimStrainsWithoutSliders;
+    private final double[] speedStrains;
+    private final double[] rhythmMultipliers;
+    private final double[] flashlightStrains;
+
+    /**
+     * @param hitObjects All hit objects of the beatmap, with their scale and stacking already applied.
+     * @param clockRate The clock rate being calculated.
+     * @param timePreempt The preempt time of the hit objects.
+     * @param isForceAR Whether force AR is used.
+     */
+    public DifficultyHitObjectStore(List<HitObject> hitObjects, double clockRate, double timePreempt, boolean isForceAR) {
+        count = Math.max(0, hitObjects.size() - 1);
+        objects = new HitObject[count];
+        baseTimePreempt = timePreempt;
+        this.timePreempt = isForceAR ? timePreempt : timePreempt / clockRate;
+
+        kinds = new byte[count];
+        rawStartTimes = new double[count];
+        startTimes = new double[count];
+        endTimes = new double[count];
+        deltaTimes = new double[count];
+        strainTimes = new double[count];
+        lazyJumpDistances = new double[count];
+        minimumJumpDistances = new double[count];
+        minimumJumpTimes = new double[count];
+        travelDistances = new double[count];
+        travelTimes = new double[count];
+        angles = new double[count];
+        velocities = new double[count];
+        radii = new double[count];
+        stackedX = new float[count];
+        stackedY = new float[count];
+        stackedEndX = new float[count];
+        stackedEndY = new float[count];
+        sliderLazyTravelDistances = new double[count];
+        repeatCounts = new int[count];
+
+        aimStrainsWithSliders = new double[count];
+        aimStrainsWithoutSliders = new double[count];
+        speedStrains = new double[count];
+        rhythmMultipliers = new double[count];
+        flashlightStrains = new double[count];
+
+        for (int i = 0; i < count; ++i) {
+            HitObject object = hitObjects.get(i + 1);
+            HitObject lastObject = hitObjects.get(i);
+            HitObject lastLastObject = i > 0 ? hitObjects.get(i - 1) : null;
+
+            objects[i] = object;
+            kinds[i] = object instanceof Slider ? KIND_SLIDER : object instanceof Spinner ? KIND_SPINNER : KIND_CIRCLE;
+            rawStartTimes[i] = object.startTime;
+            startTimes[i] = object.startTime / clockRate;
+            deltaTimes[i] = (object.startTime - lastObject.getStartTime()) / clockRate;
+
+            if (object instanceof HitObjectWithDuration) {
+                endTimes[i] = ((HitObjectWithDuration) object).endTime / clockRate;
+            } else {
+                endTimes[i] = startTimes[i];
+            }
+
+            // Capped to 25ms to prevent difficulty calculation breaking from simultaneous objects.
+            strainTimes[i] = Math.max(deltaTimes[i], minDeltaTime);
+            angles[i] = Double.NaN;
+            radii[i] = object.getRadius();
+
+            Vector2 stackedPosition = object.getStackedPosition();
+            Vector2 stackedEndPosition = object.getStackedEndPosition();
+            stackedX[i] = stackedPosition.x;
+            stackedY[i] = stackedPosition.y;
+            stackedEndX[i] = stackedEndPosition.x;
+            stackedEndY[i] = stackedEndPosition.y;
+
+            setDistances(i, object, lastObject, lastLastObject, clockRate);
+
+            if (object instanceof Slider) {
+                Slider slider = (Slider) object;
+                sliderLazyTravelDistances[i] = slider.getLazyTravelDistance();
+                repeatCounts[i] = slider.getRepeatCount();
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of difficulty hit objects.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets an object view of a difficulty hit object.
+     *
+     * @param index The index of the difficulty hit object.
+     * @return The difficulty hit object, <code>null</code> if the index is out of range.
+     */
+    public DifficultyHitObject get(int index) {
+        if (index < 0 || index >= count) {
+            return null;
+        }
+
+        return new DifficultyHitObject(this, index);
+    }
+
+    /**
+     * Gets the underlying hit object of a difficulty hit object.
+     */
+    public HitObject getObject(int index) {
+        return objects[index];
+    }
+
+    /**
+     * Gets the kind of the underlying hit object, one of <code>KIND_CIRCLE</code>, <code>KIND_SLIDER</code>,
+     * or <code>KIND_SPINNER</code>.
+     */
+    public byte getKind(int index) {
+        return kinds[index];
+    }
+
+    public boolean isSlider(int index) {
+        return kinds[index] == KIND_SLIDER;
+    }
+
+    public boolean isSpinner(int index) {
+        return kinds[index] == KIND_SPINNER;
+    }
+
+    /**
+     * Gets the preempt time of the hit objects.
+     */
+    public double getBaseTimePreempt() {
+        return baseTimePreempt;
+    }
+
+    /**
+     * Gets the preempt time of the hit objects, taking speed multiplier into account.
+     */
+    public double getTimePreempt() {
+        return timePreempt;
+    }
+
+    /**
+     * Gets the start time of the underlying hit object, without taking speed multiplier into account.
+     */
+    public double getRawStartTime(int index) {
+        return rawStartTimes[index];
+    }
+
+    /**
+     * Gets the start time of a hit object, taking speed multiplier into account.
+     */
+    public double getStartTime(int index) {
+        return startTimes[index];
+    }
+
+    /**
+     * Gets the end time of a hit object, taking speed multiplier into account.
+     */
+    public double getEndTime(int index) {
+        return endTimes[index];
+    }
+
+    /**
+     * Gets the amount of milliseconds elapsed between a hit object and the hit object before it.
+     */
+    public double getDeltaTime(int index) {
+        return deltaTimes[index];
+    }
+
+    /**
+     * Gets the amount of milliseconds elapsed since the start time of the previous hit object, with a minimum of 25ms.
+     */
+    public double getStrainTime(int index) {
+        return strainTimes[index];
+    }
+
+    /**
+     * Gets the normalized distance from the "lazy" end position of the previous hit object to the start position
+     * of a hit object.
+     */
+    public double getLazyJumpDistance(int index) {
+        return lazyJumpDistances[index];
+    }
+
+    /**
+     * Gets the normalized shortest distance to consider for a jump between the previous hit object and a hit object.
+     */
+    public double getMinimumJumpDistance(int index) {
+        return minimumJumpDistances[index];
+    }
+
+    /**
+     * Gets the time taken to travel through the minimum jump distance, with a minimum value of 25ms.
+     */
+    public double getMinimumJumpTime(int index) {
+        return minimumJumpTimes[index];
+    }
+
+    /**
+     * Gets the normalized distance between the start and end position of a hit object.
+     */
+    public double getTravelDistance(int index) {
+        return travelDistances[index];
+    }
+
+    /**
+     * Gets the time taken to travel through the travel distance, with a minimum value of 25ms for sliders.
+     */
+    public double getTravelTime(int index) {
+        return travelTimes[index];
+    }
+
+    /**
+     * Gets the angle the player has to take to hit a hit object, <code>NaN</code> if the hit object does not
+     * form an angle.
+     */
+    public double getAngle(int index) {
+        return angles[index];
+    }
+
+    /**
+     * Gets the velocity of a slider, taking speed multiplier into account.
+     */
+    public double getVelocity(int index) {
+        return velocities[index];
+    }
+
+    /**
+     * Gets the radius of a hit object.
+     */
+    public double getRadius(int index) {
+        return radii[index];
+    }
+
+    /**
+     * Gets the distance between the stacked position of a hit object and the stacked end position of another.
+     * <br><br>
+     * This is computed in single precision, the same way as <code>Vector2.getLength</code>.
+     *
+     * @param index The index of the hit object to measure from the start of.
+     * @param endIndex The index of the hit object to measure from the end of.
+     */
+    public float getStackedDistanceToEnd(int index, int endIndex) {
+        float x = stackedX[index] - stackedEndX[endIndex];
+        float y = stackedY[index] - stackedEndY[endIndex];
+
+        return (float) Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Gets the lazy travel distance of a slider, not normalized.
+     */
+    public double getSliderLazyTravelDistance(int index) {
+        return sliderLazyTravelDistances[index];
+    }
+
+    /**
+     * Gets the repetition amount of a slider, 0 for other hit objects.
+     */
+    public int getRepeatCount(int index) {
+        return repeatCounts[index];
+    }
+
+    public double getAimStrainWithSliders(int index) {
+        return aimStrainsWithSliders[index];
+    }
+
+    public void setAimStrainWithSliders(int index, double strain) {
+        aimStrainsWithSliders[index] = strain;
+    }
+
+    public double getAimStrainWithoutSliders(int index) {
+        return aimStrainsWithoutSliders[index];
+    }
+
+    public void setAimStrainWithoutSliders(int index, double strain) {
+        aimStrainsWithoutSliders[index] = strain;
+    }
+
+    public double getSpeedStrain(int index) {
+        return speedStrains[index];
+    }
+
+    public void setSpeedStrain(int index, double strain) {
+        speedStrains[index] = strain;
+    }
+
+    public double getRhythmMultiplier(int index) {
+        return rhythmMultipliers[index];
+    }
+
+    public void setRhythmMultiplier(int index, double multiplier) {
+        rhythmMultipliers[index] = multiplier;
+    }
+
+    public double getFlashlightStrain(int index) {
+        return flashlightStrains[index];
+    }
+
+    public void setFlashlightStrain(int index, double strain) {
+        flashlightStrains[index] = strain;
+    }
+
+    /**
+     * Calculates the opacity of a hit object at a given time.
+     *
+     * @param index The index of the hit object.
+     * @param time The time to calculate the hit object's opacity at, without taking speed multiplier into account.
+     * @param isHidden Whether Hidden mod is used.
+     * @return The opacity of the hit object at the given time.
+     */
+    public double opacityAt(int index, double time, boolean isHidden) {
+        double startTime = rawStartTimes[index];
+
+        if (time > startTime) {
+            // Consider a hit object as being invisible when its start time is passed.
+            // In reality the hit object will be visible beyond its start time up until its hittable window has passed,
+            // but this is an approximation and such a case is unlikely to be hit where this function is used.
+            return 0;
+        }
+
+        double fadeInStartTime = startTime - baseTimePreempt;
+        double fadeInDuration = TIME_FADE_IN;
+
+        double nonHiddenOpacity = MathUtils.clamp((time - fadeInStartTime) / fadeInDuration, 0, 1);
+
+        if (isHidden) {
+            double fadeOutStartTime = fadeInStartTime + fadeInDuration;
+            double fadeOutDuration = baseTimePreempt * 0.3;
+
+            return Math.min(nonHiddenOpacity, 1 - MathUtils.clamp((time - fadeOutStartTime) / fadeOutDuration, 0, 1));
+        }
+
+        return nonHiddenOpacity;
+    }
+
+    private void setDistances(int index, HitObject object, HitObject lastObject, HitObject lastLastObject, double clockRate) {
+        if (object instanceof Slider) {
+            Slider slider = (Slider) object;
+            velocities[index] = slider.velocity * clockRate;
+            computeSliderCursorPosition(slider);
+
+            double travelDistance = slider.lazyTravelDistance;
+            // Bonus for repeat sliders until a better per nested object strain system can be achieved.
+            travelDistance *= (float) Math.pow(1 + (slider.repeatCount - 1) / 2.5, 1 / 2.5);
+
+            travelDistances[index] = travelDistance;
+            travelTimes[index] = Math.max(slider.lazyTravelTime / clockRate, minDeltaTime);
+        }
+
+        // We don't need to calculate either angle or distance when one of the last->curr objects
+        // is a spinner or there is no object before the current object.
+        if (object instanceof Spinner || lastObject instanceof Spinner) {
+            return;
+        }
+
+        double strainTime = strainTimes[index];
+        float scalingFactor = getScalingFactor(object);
+        Vector2 lastCursorPosition = getEndCursorPosition(lastObject);
+
+        Vector2 lazyJumpVector = object.getStackedPosition()
+                .scale(scalingFactor)
+                .subtract(lastCursorPosition.scale(scalingFactor));
+        double lazyJumpDistance = lazyJumpVector.getLength();
+        lazyJumpDistances[index] = lazyJumpDistance;
+        minimumJumpTimes[index] = strainTime;
+        minimumJumpDistances[index] = lazyJumpDistance;
+
+        if (lastObject instanceof Slider) {
+            minimumJumpTimes[index] = Math.max(strainTime - ((Slider) lastObject).lazyTravelTime / clockRate, minDeltaTime);
+
+            // There are two types of slider-to-object patterns to consider in order to better approximate the real movement a player will take to jump between the hit objects.
+            //
+            // 1. The anti-flow pattern, where players cut the slider short in order to move to the next hit object.
+            //
+            //      <======o==>  ← slider
+            //             |     ← most natural jump path
+            //             o     ← a follow-up hit circle
+            //
+            // In this case the most natural jump path is approximated by LazyJumpDistance.
+            //
+            // 2. The flow pattern, where players follow through the slider to its visual extent into the next hit object.
+            //
+            //      <======o==>---o
+            //                  ↑
+            //        most natural jump path
+            //
+            // In this case the most natural jump path is better approximated by a new distance called "tailJumpDistance" - the distance between the slider's tail and the next hit object.
+            //
+            // Thus, the player is assumed to jump the minimum of these two distances in all cases.
+            float tailJumpDistance = ((Slider) lastObject).tail
+                        .getStackedPosition()
+                        .subtract(object.getStackedPosition())
+                        .getLength() * scalingFactor;
+
+            float maximumSliderRadius = normalizedRadius * 2.4f;
+            minimumJumpDistances[index] = Math.max(0, Math.min(lazyJumpDistance - (maximumSliderRadius - assumedSliderRadius), tailJumpDistance - maximumSliderRadius));
+        }
+
+        if (lastLastObject != null && !(lastLastObject instanceof Spinner)) {
+            Vector2 lastLastCursorPosition = getEndCursorPosition(lastLastObject);
+            Vector2 v1 = lastLastCursorPosition.subtract(lastObject.getStackedPosition());
+            Vector2 v2 = object.getStackedPosition().subtract(lastCursorPosition);
+            float dot = v1.dot(v2);
+            float det = v1.x * v2.y - v1.y * v2.x;
+
+            angles[index] = Math.abs(Math.atan2(det, dot));
+        }
+    }
+
+    private static void computeSliderCursorPosition(Slider slider) {
+        if (slider.lazyEndPosition != null) {
+            return;
+        }
+
+        slider.lazyTravelTime = slider.nestedHitObjects.get(slider.nestedHitObjects.size() - 1).startTime - slider.startTime;
+
+        double endTimeMin = slider.lazyTravelTime / slider.spanDuration;
+        if (endTimeMin % 2 >= 1) {
+            endTimeMin = 1 - endTimeMin % 1;
+        } else {
+            endTimeMin %= 1;
+        }
+
+        // Temporary lazy end position until a real result can be derived.
+        slider.lazyEndPosition = slider.getStackedPosition().add(slider.path.positionAt(endTimeMin));
+
+        Vector2 currentCursorPosition = slider.getStackedPosition();
+        double scalingFactor = normalizedRadius / slider.getRadius();
+
+        for (int i = 1; i < slider.nestedHitObjects.size(); ++i) {
+            SliderHitObject currentMovementObject = slider.nestedHitObjects.get(i);
+
+            Vector2 currentMovement = currentMovementObject
+                    .getStackedPosition()
+                    .subtract(currentCursorPosition);
+            double currentMovementLength = scalingFactor * currentMovement.getLength();
+
+            // The amount of movement required so that the cursor position needs to be updated.
+            double requiredMovement = assumedSliderRadius;
+
+            if (i == slider.nestedHitObjects.size() - 1) {
+                // The end of a slider has special aim rules due to the relaxed time constraint on position.
+                // There is both a lazy end position as well as the actual end slider position. We assume the player takes the simpler movement.
+                // For sliders that are circular, the lazy end position may actually be farther away than the sliders' true end.
+                // This code is designed to prevent buffing situations where lazy end is actually a less efficient movement.
+                Vector2 lazyMovement = slider.lazyEndPosition.subtract(currentCursorPosition);
+
+                if (lazyMovement.getLength() < currentMovement.getLength()) {
+                    currentMovement = lazyMovement;
+                }
+
+                currentMovementLength = scalingFactor * currentMovement.getLength();
+            } else if (currentMovementObject instanceof SliderRepeat) {
+                // For a slider repeat, assume a tighter movement threshold to better assess repeat sliders.
+                requiredMovement = normalizedRadius;
+            }
+
+            if (currentMovementLength > requiredMovement) {
+                // This finds the positional delta from the required radius and the current position,
+                // and updates the currentCursorPosition accordingly, as well as rewarding distance.
+                currentCursorPosition = currentCursorPosition.add(currentMovement.scale((float) ((currentMovementLength - requiredMovement) / currentMovementLength)));
+                currentMovementLength *= (currentMovementLength - requiredMovement) / currentMovementLength;
+                slider.lazyTravelDistance += (float) currentMovementLength;
+            }
+
+            if (i == slider.nestedHitObjects.size() - 1) {
+                slider.lazyEndPosition = currentCursorPosition;
+            }
+        }
+    }
+
+    private static float getScalingFactor(HitObject object) {
+        // We will scale distances by this factor, so we can assume a uniform CircleSize among beatmaps.
+        float radius = (float) object.getRadius();
+        float scalingFactor = normalizedRadius / radius;
+
+        // High circle size (small CS) bonus
+        if (radius < 30) {
+            scalingFactor *= 1 + Math.min(30 - radius, 5) / 50;
+        }
+
+        return scalingFactor;
+    }
+
+    private static Vector2 getEndCursorPosition(HitObject object) {
+        Vector2 pos = object.getStackedPosition();
+
+        if (object instanceof Slider) {
+            Slider slider = (Slider) object;
+            computeSliderCursorPosition(slider);
+            pos = slider.lazyEndPosition != null ? slider.lazyEndPosition : pos;
+        }
+
+        return pos;
+    }
+}
@@ -57,13 +57,15 @@ public abstract class HitObject {
 
     /**
      * Copy constructor.
+     * <br><br>
+     * Positions are not modified after construction, so they are shared with the source.
      *
      * @param source The source to copy from.
      */
     protected HitObject(HitObject source) {
         startTime = source.startTime;
-        position = new Vector2(source.position.x, source.position.y);
-        endPosition = new Vector2(source.endPosition.x, source.endPosition.y);
+        position = source.position;
+        endPosition = source.endPosition;
         stackHeight = source.stackHeight;
         scale = source.scale;
     }
@@ -194,6 +194,9 @@ public class Slider extends HitObjectWithDuration {
 
     /**
      * Copy constructor.
+     * <br><br>
+     * The path is not modified after construction, so it is shared with the source. The cursor movement
+     * fields are not copied, as they depend on the stacking and scale that the copy is made to change.
      *
      * @param source The source to copy from.
      */
@@ -201,14 +204,10 @@ public class Slider extends HitObjectWithDuration {
         super(source);
 
         repeatCount = source.repeatCount;
-        endPosition = new Vector2(source.endPosition.x, source.endPosition.y);
-        path = source.path.deepClone();
+        path = source.path;
         velocity = source.velocity;
         head = source.head.deepClone();
         tail = source.tail.deepClone();
-        lazyEndPosition = source.lazyEndPosition != null ? new Vector2(source.lazyEndPosition.x, source.lazyEndPosition.y) : null;
-        lazyTravelDistance = source.lazyTravelDistance;
-        lazyTravelTime = source.lazyTravelTime;
         spanDuration = source.spanDuration;
 
         nestedHitObjects.add(head);
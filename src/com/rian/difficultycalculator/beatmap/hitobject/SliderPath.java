@@ -1,12 +1,13 @@
 package com.rian.difficultycalculator.beatmap.hitobject;
 
 import com.rian.difficultycalculator.math.MathUtils;
+import com.rian.difficultycalculator.utils.DoubleList;
 import com.rian.difficultycalculator.utils.PathApproximator;
 import com.rian.difficultycalculator.math.Precision;
 import com.rian.difficultycalculator.math.Vector2;
+import com.rian.difficultycalculator.utils.PathPointList;
 
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Represents the path of a slider.
@@ -30,12 +31,12 @@ public class SliderPath {
     /**
      * The calculated path of this slider path.
      */
-    public final ArrayList<Vector2> calculatedPath = new ArrayList<>();
+    public final PathPointList calculatedPath;
 
     /**
      * The cumulative length of this slider path.
      */
-    public final ArrayList<Double> cumulativeLength = new ArrayList<>();
+    public final DoubleList cumulativeLength;
 
     /**
      * @param type The path type of this slider.
@@ -47,10 +48,34 @@ public class SliderPath {
         this.controlPoints = controlPoints;
         this.expectedDistance = expectedDistance;
 
+        calculatedPath = new PathPointList();
+        cumulativeLength = new DoubleList();
+
         calculatePath();
         calculateCumulativeLength();
     }
 
+    /**
+     * Constructs a slider path from a path that has been calculated before.
+     * <br><br>
+     * The calculated path and cumulative length must have been calculated from the same path type,
+     * control points, and expected distance.
+     *
+     * @param type The path type of this slider.
+     * @param controlPoints The control points (anchor points) of this slider path.
+     * @param expectedDistance The distance that is expected when calculating slider path.
+     * @param calculatedPath The calculated path of this slider path.
+     * @param cumulativeLength The cumulative length of this slider path.
+     */
+    public SliderPath(SliderPathType type, ArrayList<Vector2> controlPoints, double expectedDistance,
+                      PathPointList calculatedPath, DoubleList cumulativeLength) {
+        this.pathType = type;
+        this.controlPoints = controlPoints;
+        this.expectedDistance = expectedDistance;
+        this.calculatedPath = calculatedPath;
+        this.cumulativeLength = cumulativeLength;
+    }
+
     /**
      * Copy constructor.
      *
@@ -65,10 +90,8 @@ public class SliderPath {
             controlPoints.add(new Vector2(point.x, point.y));
         }
 
-        for (final Vector2 point : source.calculatedPath) {
-            calculatedPath.add(new Vector2(point.x, point.y));
-        }
-
+        calculatedPath = new PathPointList(source.calculatedPath);
+        cumulativeLength = new DoubleList(source.cumulativeLength.size());
         cumulativeLength.addAll(source.cumulativeLength);
     }
 
@@ -103,21 +126,32 @@ public class SliderPath {
             return;
         }
 
-        calculatedPath.add(controlPoints.get(0));
+        PathPointList points = new PathPointList(controlPoints);
+        calculatedPath.add(points.getX(0), points.getY(0));
 
         int spanStart = 0;
 
-        for (int i = 0; i < controlPoints.size(); ++i) {
-            if (i == controlPoints.size() - 1 || controlPoints.get(i).equals(controlPoints.get(i + 1))) {
+        for (int i = 0; i < points.size(); ++i) {
+            if (i == points.size() - 1 ||
+                    (points.getX(i) == points.getX(i + 1) && points.getY(i) == points.getY(i + 1))) {
                 int spanEnd = i + 1;
-                List<Vector2> cpSpan = controlPoints.subList(spanStart, spanEnd);
+                int subPathStart = calculatedPath.size();
+
+                calculateSubPath(points, spanStart, spanEnd);
+
+                // Drop points that repeat the point before them, compacting the sub-path in place.
+                int size = subPathStart;
 
-                for (Vector2 t : calculateSubPath(cpSpan)) {
-                    if (calculatedPath.isEmpty() || !calculatedPath.get(calculatedPath.size() - 1).equals(t)) {
-                        calculatedPath.add(t);
+                for (int j = subPathStart; j < calculatedPath.size(); ++j) {
+                    float x = calculatedPath.getX(j);
+                    float y = calculatedPath.getY(j);
+
+                    if (x != calculatedPath.getX(size - 1) || y != calculatedPath.getY(size - 1)) {
+                        calculatedPath.set(size++, x, y);
                     }
                 }
 
+                calculatedPath.truncate(size);
                 spanStart = spanEnd;
             }
         }
@@ -128,13 +162,15 @@ public class SliderPath {
      */
     private void calculateCumulativeLength() {
         cumulativeLength.clear();
-        cumulativeLength.add(0d);
+        cumulativeLength.add(0);
 
         double calculatedLength = 0;
 
         for (int i = 0; i < calculatedPath.size() - 1; ++i) {
-            Vector2 diff = calculatedPath.get(i + 1).subtract(calculatedPath.get(i));
-            calculatedLength += diff.getLength();
+            float dx = calculatedPath.getX(i + 1) - calculatedPath.getX(i);
+            float dy = calculatedPath.getY(i + 1) - calculatedPath.getY(i);
+
+            calculatedLength += (float) Math.sqrt(dx * dx + dy * dy);
             cumulativeLength.add(calculatedLength);
         }
 
@@ -147,53 +183,68 @@ public class SliderPath {
             }
 
             // The last length is always incorrect.
-            cumulativeLength.remove(cumulativeLength.size() - 1);
+            cumulativeLength.removeLast();
             int pathEndIndex = calculatedPath.size() - 1;
 
             if (calculatedLength > expectedDistance) {
                 // The path will be shortened further, in which case we should trim any more unnecessary lengths and their associated path segments
                 while (cumulativeLength.size() > 0 && cumulativeLength.get(cumulativeLength.size() - 1) >= expectedDistance) {
-                    cumulativeLength.remove(cumulativeLength.size() - 1);
-                    calculatedPath.remove(pathEndIndex--);
+                    cumulativeLength.removeLast();
+                    calculatedPath.removeLast();
+                    --pathEndIndex;
                 }
             }
 
             if (pathEndIndex <= 0) {
                 // The expected distance is negative or zero
-                cumulativeLength.add(0d);
+                cumulativeLength.add(0);
                 return;
             }
 
             // The direction of the segment to shorten or lengthen
-            Vector2 dir = calculatedPath.get(pathEndIndex).subtract(calculatedPath.get(pathEndIndex - 1));
-            dir.normalize();
+            float dirX = calculatedPath.getX(pathEndIndex) - calculatedPath.getX(pathEndIndex - 1);
+            float dirY = calculatedPath.getY(pathEndIndex) - calculatedPath.getY(pathEndIndex - 1);
+            float dirLength = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+            dirX /= dirLength;
+            dirY /= dirLength;
+
+            float extension = (float) (expectedDistance - cumulativeLength.get(cumulativeLength.size() - 1));
 
             calculatedPath.set(
                     pathEndIndex,
-                    calculatedPath
-                            .get(pathEndIndex - 1)
-                            .add(dir.scale((float) (expectedDistance - cumulativeLength.get(cumulativeLength.size() - 1))))
+                    calculatedPath.getX(pathEndIndex - 1) + dirX * extension,
+                    calculatedPath.getY(pathEndIndex - 1) + dirY * extension
             );
 
             cumulativeLength.add(expectedDistance);
         }
     }
 
-    private List<Vector2> calculateSubPath(List<Vector2> subControlPoints) {
+    /**
+     * Appends the approximated points of a span of control points to the calculated path.
+     *
+     * @param points The control points.
+     * @param start The index of the first control point of the span, inclusive.
+     * @param end The index of the last control point of the span, exclusive.
+     */
+    private void calculateSubPath(PathPointList points, int start, int end) {
         switch (pathType) {
             case Linear:
-                return PathApproximator.approximateLinear(subControlPoints);
+                PathApproximator.approximateLinear(points, start, end, calculatedPath);
+                return;
             case PerfectCurve:
-                if (subControlPoints.size() != 3) {
+                if (end - start != 3) {
                     break;
                 }
 
-                return PathApproximator.approximateCircularArc(subControlPoints);
+                PathApproximator.approximateCircularArc(points, start, calculatedPath);
+                return;
             case Catmull:
-                return PathApproximator.approximateCatmull(subControlPoints);
+                PathApproximator.approximateCatmull(points, start, end, calculatedPath);
+                return;
         }
 
-        return PathApproximator.approximateBezier(subControlPoints);
+        PathApproximator.approximateBezier(points, start, end, calculatedPath);
     }
 
     /**
@@ -218,19 +269,22 @@ public class SliderPath {
             return calculatedPath.get(calculatedPath.size() - 1);
         }
 
-        Vector2 p0 = calculatedPath.get(i - 1);
-        Vector2 p1 = calculatedPath.get(i);
+        float x0 = calculatedPath.getX(i - 1);
+        float y0 = calculatedPath.getY(i - 1);
 
         double d0 = cumulativeLength.get(i - 1);
         double d1 = cumulativeLength.get(i);
 
         // Avoid division by and almost-zero number in case two points are extremely close to each other.
         if (Precision.almostEqualsNumber(d0, d1)) {
-            return p0;
+            return new Vector2(x0, y0);
         }
 
-        double w = (d - d0) / (d1 - d0);
-        return p0.add(p1.subtract(p0).scale((float) w));
+        float w = (float) ((d - d0) / (d1 - d0));
+        return new Vector2(
+                x0 + (calculatedPath.getX(i) - x0) * w,
+                y0 + (calculatedPath.getY(i) - y0) * w
+        );
     }
 
     /**
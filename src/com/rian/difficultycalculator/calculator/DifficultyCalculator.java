@@ -4,8 +4,9 @@ import com.rian.difficultycalculator.attributes.DifficultyAttributes;
 import com.rian.difficultycalculator.attributes.TimedDifficultyAttributes;
 import com.rian.difficultycalculator.beatmap.BeatmapDifficultyManager;
 import com.rian.difficultycalculator.beatmap.DifficultyBeatmap;
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.beatmap.hitobject.HitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.Slider;
 import com.rian.difficultycalculator.skills.Aim;
 import com.rian.difficultycalculator.skills.Flashlight;
 import com.rian.difficultycalculator.skills.Skill;
@@ -14,8 +15,13 @@ import com.rian.difficultycalculator.utils.HitObjectStackEvaluator;
 import com.rian.difficultycalculator.utils.HitWindowConverter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
 
@@ -23,6 +29,19 @@ import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
  * A difficulty calculator for calculating star rating.
  */
 public class DifficultyCalculator {
+    /**
+     * The version of this calculator. Must be incremented whenever a change to the calculator
+     * alters its output, so that persisted difficulty attributes get invalidated.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The pool that batch calculations are spread over.
+     * <br><br>
+     * <code>ForkJoinPool.commonPool()</code> is not available below Android API 24.
+     */
+    private static final ForkJoinPool batchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     /**
      * Mods that can alter the star rating when they are used in calculation with one or more mods.
      */
@@ -58,20 +77,79 @@ public class DifficultyCalculator {
         DifficultyBeatmap beatmapToCalculate = beatmap;
 
         if (parameters != null) {
-            // Always operate on a clone of the original beatmap, to not modify it game-wide
-            beatmapToCalculate = beatmap.deepClone();
-            applyParameters(beatmapToCalculate, parameters);
+            beatmapToCalculate = createAppliedBeatmap(beatmap, parameters);
         }
 
-        Skill[] skills = createSkills(beatmapToCalculate, parameters);
+        return calculateAppliedBeatmap(beatmapToCalculate, parameters);
+    }
 
-        for (DifficultyHitObject object : createDifficultyHitObjects(beatmapToCalculate, parameters)) {
-            for (Skill skill : skills) {
-                skill.process(object);
+    /**
+     * Calculates the difficulty of a beatmap for multiple sets of parameters at once.
+     * <br><br>
+     * Parameters that result in the same circle size and approach rate produce identical hit object
+     * geometry, so they share a single clone of the beatmap. Calculations are spread over a dedicated
+     * <code>ForkJoinPool</code>.
+     *
+     * @param beatmap The beatmap whose difficulty is to be calculated.
+     * @param parameters The calculation parameters that should be applied to the beatmap. A <code>null</code>
+     *                   entry is treated as a set of parameters without any mods.
+     * @return Structures describing the difficulty of the beatmap, in the same order as <code>parameters</code>.
+     */
+    public List<DifficultyAttributes> calculateBatch(final DifficultyBeatmap beatmap,
+                                                     final List<DifficultyCalculationParameters> parameters) {
+        DifficultyAttributes[] attributes = new DifficultyAttributes[parameters.size()];
+        LinkedHashMap<Long, ArrayList<DifficultyCalculationParameters>> groups = new LinkedHashMap<>();
+        LinkedHashMap<Long, ArrayList<Integer>> groupIndices = new LinkedHashMap<>();
+
+        for (int i = 0; i < parameters.size(); ++i) {
+            DifficultyCalculationParameters parameter = parameters.get(i);
+
+            if (parameter == null) {
+                parameter = new DifficultyCalculationParameters();
             }
+
+            BeatmapDifficultyManager manager = beatmap.getDifficultyManager().deepClone();
+            processCS(manager, parameter);
+            processAR(manager, parameter);
+
+            long geometryKey = (long) Float.floatToIntBits(manager.getCS()) << 32 |
+                    Float.floatToIntBits(manager.getAR()) & 0xFFFFFFFFL;
+
+            ArrayList<DifficultyCalculationParameters> groupParameters = groups.get(geometryKey);
+            ArrayList<Integer> indices = groupIndices.get(geometryKey);
+
+            if (groupParameters == null) {
+                groupParameters = new ArrayList<>();
+                indices = new ArrayList<>();
+
+                groups.put(geometryKey, groupParameters);
+                groupIndices.put(geometryKey, indices);
+            }
+
+            groupParameters.add(parameter);
+            indices.add(i);
+        }
+
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (long geometryKey : groups.keySet()) {
+            ArrayList<DifficultyCalculationParameters> groupParameters = groups.get(geometryKey);
+            ArrayList<Integer> indices = groupIndices.get(geometryKey);
+
+            tasks.add(batchPool.submit(() -> {
+                DifficultyAttributes[] groupAttributes = calculateGroup(beatmap, groupParameters);
+
+                for (int i = 0; i < indices.size(); ++i) {
+                    attributes[indices.get(i)] = groupAttributes[i];
+                }
+            }));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
         }
 
-        return createDifficultyAttributes(beatmapToCalculate, skills, parameters);
+        return Arrays.asList(attributes);
     }
 
     /**
@@ -97,12 +175,29 @@ public class DifficultyCalculator {
      */
     public List<TimedDifficultyAttributes> calculateTimed(final DifficultyBeatmap beatmap,
                                                           final DifficultyCalculationParameters parameters) {
+        return calculateTimed(beatmap, parameters, 0);
+    }
+
+    /**
+     * Calculates the difficulty of a beatmap with specific parameters and returns a set of
+     * <code>TimedDifficultyAttributes</code> representing the difficulty at a given granularity.
+     * <br><br>
+     * Skills keep their strain peaks sorted as objects are processed, so emitting attributes
+     * does not require sorting every strain peak again.
+     *
+     * @param beatmap The beatmap whose difficulty is to be calculated.
+     * @param parameters The calculation parameters that should be applied to the beatmap.
+     * @param interval The minimum time between two emitted attributes, in milliseconds. Set to 0 to
+     *                 emit attributes for every object. Attributes for the last object are always emitted.
+     * @return The set of <code>TimedDifficultyAttributes</code>.
+     */
+    public List<TimedDifficultyAttributes> calculateTimed(final DifficultyBeatmap beatmap,
+                                                          final DifficultyCalculationParameters parameters,
+                                                          final double interval) {
         DifficultyBeatmap beatmapToCalculate = beatmap;
 
         if (parameters != null) {
-            // Always operate on a clone of the original beatmap, to not modify it game-wide
-            beatmapToCalculate = beatmap.deepClone();
-            applyParameters(beatmapToCalculate, parameters);
+            beatmapToCalculate = createAppliedBeatmap(beatmap, parameters);
         }
 
         Skill[] skills = createSkills(beatmapToCalculate, parameters);
@@ -113,33 +208,122 @@ public class DifficultyCalculator {
         }
 
         DifficultyBeatmap progressiveBeatmap = new DifficultyBeatmap(beatmapToCalculate.getDifficultyManager());
+        HitObject firstObject = beatmapToCalculate.getHitObjectsManager().getObjects().get(0);
 
         // Add the first object in the beatmap, otherwise it will be ignored.
-        progressiveBeatmap.getHitObjectsManager().add(beatmapToCalculate.getHitObjectsManager().getObjects().get(0));
+        progressiveBeatmap.getHitObjectsManager().add(firstObject);
+
+        // Track max combo as objects are added, rather than recounting every object per emitted attribute.
+        int maxCombo = getMaxCombo(firstObject);
+        double speedMultiplier = parameters != null ? parameters.getTotalSpeedMultiplier() : 1;
+        double lastEmittedTime = Double.NEGATIVE_INFINITY;
+
+        DifficultyHitObjectStore difficultyObjects = createDifficultyHitObjects(beatmapToCalculate, parameters);
+
+        for (int i = 0; i < difficultyObjects.size(); ++i) {
+            HitObject object = difficultyObjects.getObject(i);
+            double endTime = difficultyObjects.getEndTime(i);
 
-        for (DifficultyHitObject object : createDifficultyHitObjects(beatmapToCalculate, parameters)) {
-            progressiveBeatmap.getHitObjectsManager().add(object.object);
+            progressiveBeatmap.getHitObjectsManager().add(object);
+            maxCombo += getMaxCombo(object);
 
             for (Skill skill : skills) {
-                skill.process(object);
+                skill.process(difficultyObjects, i);
             }
 
-            attributes.add(new TimedDifficultyAttributes(object.endTime * (parameters != null ? parameters.getTotalSpeedMultiplier() : 1), createDifficultyAttributes(progressiveBeatmap, skills, parameters)));
+            if (endTime - lastEmittedTime < interval && i < difficultyObjects.size() - 1) {
+                continue;
+            }
+
+            lastEmittedTime = endTime;
+
+            attributes.add(new TimedDifficultyAttributes(
+                    endTime * speedMultiplier,
+                    createDifficultyAttributes(progressiveBeatmap, skills, parameters, maxCombo)
+            ));
         }
 
         return attributes;
     }
 
+    /**
+     * Calculates the difficulty of a beatmap that parameters have been applied to.
+     *
+     * @param beatmap The beatmap whose difficulty is to be calculated.
+     * @param parameters The calculation parameters that were applied to the beatmap.
+     * @return A structure describing the difficulty of the beatmap.
+     */
+    private DifficultyAttributes calculateAppliedBeatmap(final DifficultyBeatmap beatmap,
+                                                         final DifficultyCalculationParameters parameters) {
+        Skill[] skills = createSkills(beatmap, parameters);
+
+        DifficultyHitObjectStore objects = createDifficultyHitObjects(beatmap, parameters);
+
+        for (int i = 0; i < objects.size(); ++i) {
+            for (Skill skill : skills) {
+                skill.process(objects, i);
+            }
+        }
+
+        return createDifficultyAttributes(beatmap, skills, parameters, beatmap.getMaxCombo());
+    }
+
+    /**
+     * Calculates the difficulty of a beatmap for parameters that share the same circle size and approach rate.
+     *
+     * @param beatmap The beatmap whose difficulty is to be calculated.
+     * @param parameters The calculation parameters, all resulting in the same circle size and approach rate.
+     * @return Structures describing the difficulty of the beatmap, in the same order as <code>parameters</code>.
+     */
+    private DifficultyAttributes[] calculateGroup(final DifficultyBeatmap beatmap,
+                                                  final List<DifficultyCalculationParameters> parameters) {
+        DifficultyAttributes[] attributes = new DifficultyAttributes[parameters.size()];
+
+        // Stacking only depends on approach rate, so it only needs to be applied once for the whole group.
+        DifficultyBeatmap sharedBeatmap = createAppliedBeatmap(beatmap, parameters.get(0));
+
+        // The first calculation sets object scales and caches slider cursor positions in the shared hit objects.
+        // Those are identical for the whole group, so the remaining calculations only read from them.
+        attributes[0] = calculateAppliedBeatmap(sharedBeatmap, parameters.get(0));
+
+        ArrayList<RecursiveAction> actions = new ArrayList<>();
+
+        for (int i = 1; i < parameters.size(); ++i) {
+            final int index = i;
+
+            actions.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    DifficultyCalculationParameters parameter = parameters.get(index);
+                    BeatmapDifficultyManager manager = beatmap.getDifficultyManager().deepClone();
+
+                    processCS(manager, parameter);
+                    processAR(manager, parameter);
+                    processOD(manager, parameter);
+                    processHP(manager, parameter);
+
+                    attributes[index] = calculateAppliedBeatmap(sharedBeatmap.withDifficultyManager(manager), parameter);
+                }
+            });
+        }
+
+        ForkJoinTask.invokeAll(actions);
+
+        return attributes;
+    }
+
     /**
      * Creates difficulty attributes to describe a beatmap's difficulty.
      *
      * @param beatmap The beatmap whose difficulty was calculated.
      * @param skills The skills which processed the beatmap.
      * @param parameters The difficulty calculation parameters used.
+     * @param maxCombo The maximum achievable combo of the beatmap.
      * @return Difficulty attributes describing the beatmap's difficulty.
      */
     private DifficultyAttributes createDifficultyAttributes(final DifficultyBeatmap beatmap, final Skill[] skills,
-                                                              final DifficultyCalculationParameters parameters) {
+                                                              final DifficultyCalculationParameters parameters,
+                                                              final int maxCombo) {
         DifficultyAttributes attributes = new DifficultyAttributes();
 
         if (parameters != null) {
@@ -195,7 +379,7 @@ public class DifficultyCalculator {
 
         attributes.overallDifficulty = HitWindowConverter.hitWindow300ToOD(odMS);
 
-        attributes.maxCombo = beatmap.getMaxCombo();
+        attributes.maxCombo = maxCombo;
         attributes.hitCircleCount = beatmap.getHitObjectsManager().getCircleCount();
         attributes.sliderCount = beatmap.getHitObjectsManager().getSliderCount();
         attributes.spinnerCount = beatmap.getHitObjectsManager().getSpinnerCount();
@@ -203,6 +387,38 @@ public class DifficultyCalculator {
         return attributes;
     }
 
+    /**
+     * Creates a beatmap with difficulty calculation parameters applied to it.
+     * <br><br>
+     * Only approach rate and circle size affect hit objects, through stacking and scale. If neither is changed
+     * by the parameters, the returned beatmap shares its hit objects with the original beatmap, as difficulty
+     * calculation would write the same values to them as it does without parameters. Otherwise, the hit objects
+     * are cloned to not modify them game-wide.
+     *
+     * @param beatmap The original beatmap.
+     * @param parameters The difficulty calculation parameters.
+     * @return The beatmap to calculate.
+     */
+    private DifficultyBeatmap createAppliedBeatmap(DifficultyBeatmap beatmap, DifficultyCalculationParameters parameters) {
+        BeatmapDifficultyManager original = beatmap.getDifficultyManager();
+        BeatmapDifficultyManager manager = original.deepClone();
+
+        processCS(manager, parameters);
+        processAR(manager, parameters);
+
+        if (manager.getCS() == original.getCS() && manager.getAR() == original.getAR()) {
+            processOD(manager, parameters);
+            processHP(manager, parameters);
+
+            return beatmap.withDifficultyManager(manager);
+        }
+
+        DifficultyBeatmap beatmapToCalculate = beatmap.deepClone();
+        applyParameters(beatmapToCalculate, parameters);
+
+        return beatmapToCalculate;
+    }
+
     /**
      * Applies difficulty calculation parameters to the given beatmap.
      *
@@ -255,6 +471,20 @@ public class DifficultyCalculator {
         };
     }
 
+    /**
+     * Gets the maximum combo given by a hit object.
+     *
+     * @param object The hit object.
+     * @return The maximum combo given by the hit object.
+     */
+    private int getMaxCombo(HitObject object) {
+        if (object instanceof Slider) {
+            return ((Slider) object).getNestedHitObjects().size();
+        }
+
+        return 1;
+    }
+
     private double calculateRating(Skill skill) {
         return Math.sqrt(skill.difficultyValue()) * difficultyMultiplier;
     }
@@ -355,33 +585,28 @@ public class DifficultyCalculator {
      * @param parameters The difficulty calculation parameter being used.
      * @return The generated difficulty hit objects.
      */
-    private List<DifficultyHitObject> createDifficultyHitObjects(
+    private DifficultyHitObjectStore createDifficultyHitObjects(
             final DifficultyBeatmap beatmap, final DifficultyCalculationParameters parameters) {
-        ArrayList<DifficultyHitObject> objects = new ArrayList<>();
         List<HitObject> rawObjects = beatmap.getHitObjectsManager().getObjects();
 
         float ar = beatmap.getDifficultyManager().getAR();
         double timePreempt = (ar <= 5) ? (1800 - 120 * ar) : (1950 - 150 * ar);
         float objectScale = (1 - 0.7f * (beatmap.getDifficultyManager().getCS() - 5) / 5) / 2;
 
-        for (int i = 1; i < rawObjects.size(); ++i) {
-            rawObjects.get(i).setScale(objectScale);
-            rawObjects.get(i - 1).setScale(objectScale);
-
-            HitObject lastLast = i > 1 ? rawObjects.get(i - 2) : null;
-
-            objects.add(new DifficultyHitObject(
-                    rawObjects.get(i),
-                    rawObjects.get(i - 1),
-                    lastLast,
-                    parameters != null ? parameters.getTotalSpeedMultiplier() : 1,
-                    objects,
-                    objects.size(),
-                    timePreempt,
-                    parameters != null && parameters.isForceAR()
-            ));
+        if (rawObjects.size() > 1) {
+            for (HitObject object : rawObjects) {
+                // Avoid writing to objects that already have the scale, as they may be shared between calculations.
+                if (object.getScale() != objectScale) {
+                    object.setScale(objectScale);
+                }
+            }
         }
 
-        return objects;
+        return new DifficultyHitObjectStore(
+                rawObjects,
+                parameters != null ? parameters.getTotalSpeedMultiplier() : 1,
+                timePreempt,
+                parameters != null && parameters.isForceAR()
+        );
     }
 }
@@ -1,8 +1,6 @@
 package com.rian.difficultycalculator.evaluators;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
-import com.rian.difficultycalculator.beatmap.hitobject.Slider;
-import com.rian.difficultycalculator.beatmap.hitobject.Spinner;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.math.MathUtils;
 
 /**
@@ -29,39 +27,50 @@ public final class AimEvaluator {
      *     <li>and slider difficulty.</li>
      * </ul>
      *
-     * @param current The current object.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the current object.
      * @param withSliders Whether to take slider difficulty into account.
      */
-    public static double evaluateDifficultyOf(DifficultyHitObject current, boolean withSliders) {
-        DifficultyHitObject last = current.previous(0);
-
-        if (current.object instanceof Spinner || current.index <= 1 || last.object instanceof Spinner) {
+    public static double evaluateDifficultyOf(DifficultyHitObjectStore objects, int current, boolean withSliders) {
+        if (objects.isSpinner(current) || current <= 1 || objects.isSpinner(current - 1)) {
             return 0;
         }
 
-        DifficultyHitObject lastLast = current.previous(1);
+        int last = current - 1;
+        int lastLast = current - 2;
+
+        double currentStrainTime = objects.getStrainTime(current);
+        double lastStrainTime = objects.getStrainTime(last);
+        double currentAngle = objects.getAngle(current);
+        double lastAngle = objects.getAngle(last);
+        double lastLastAngle = objects.getAngle(lastLast);
+        double currentLazyJumpDistance = objects.getLazyJumpDistance(current);
+        double lastLazyJumpDistance = objects.getLazyJumpDistance(last);
+        double lastTravelDistance = objects.getTravelDistance(last);
+        double lastLastTravelDistance = objects.getTravelDistance(lastLast);
+        boolean isLastSlider = objects.isSlider(last);
 
         // Calculate the velocity to the current hit object, which starts with a base distance / time assuming the last object is a hitcircle.
-        double currentVelocity = current.lazyJumpDistance / current.strainTime;
+        double currentVelocity = currentLazyJumpDistance / currentStrainTime;
 
         // But if the last object is a slider, then we extend the travel velocity through the slider into the current object.
-        if (last.object instanceof Slider && withSliders) {
+        if (isLastSlider && withSliders) {
             // Calculate the slider velocity from slider head to slider end.
-            double travelVelocity = last.travelDistance / last.travelTime;
+            double travelVelocity = lastTravelDistance / objects.getTravelTime(last);
 
             // Calculate the movement velocity from slider end to current object.
-            double movementVelocity = current.minimumJumpDistance / current.minimumJumpTime;
+            double movementVelocity = objects.getMinimumJumpDistance(current) / objects.getMinimumJumpTime(current);
 
             // Take the larger total combined velocity.
             currentVelocity = Math.max(currentVelocity, movementVelocity + travelVelocity);
         }
 
         // As above, do the same for the previous hitobject.
-        double prevVelocity = last.lazyJumpDistance / last.strainTime;
+        double prevVelocity = lastLazyJumpDistance / lastStrainTime;
 
-        if (lastLast.object instanceof Slider && withSliders) {
-            double travelVelocity = lastLast.travelDistance / lastLast.travelTime;
-            double movementVelocity = last.minimumJumpDistance / last.minimumJumpTime;
+        if (objects.isSlider(lastLast) && withSliders) {
+            double travelVelocity = lastLastTravelDistance / objects.getTravelTime(lastLast);
+            double movementVelocity = objects.getMinimumJumpDistance(last) / objects.getMinimumJumpTime(last);
 
             prevVelocity = Math.max(prevVelocity, movementVelocity + travelVelocity);
         }
@@ -76,58 +85,58 @@ public final class AimEvaluator {
 
         if (
             // If rhythms are the same.
-            Math.max(current.strainTime, last.strainTime) < 1.25 * Math.min(current.strainTime, last.strainTime) &&
-            !Double.isNaN(current.angle) &&
-            !Double.isNaN(last.angle) &&
-            !Double.isNaN(lastLast.angle)
+            Math.max(currentStrainTime, lastStrainTime) < 1.25 * Math.min(currentStrainTime, lastStrainTime) &&
+            !Double.isNaN(currentAngle) &&
+            !Double.isNaN(lastAngle) &&
+            !Double.isNaN(lastLastAngle)
         ) {
             // Rewarding angles, take the smaller velocity as base.
             double angleBonus = Math.min(currentVelocity, prevVelocity);
 
-            wideAngleBonus = calculateWideAngleBonus(current.angle);
-            acuteAngleBonus = calculateAcuteAngleBonus(current.angle);
+            wideAngleBonus = calculateWideAngleBonus(currentAngle);
+            acuteAngleBonus = calculateAcuteAngleBonus(currentAngle);
 
             // Only buff deltaTime exceeding 300 BPM 1/2.
-            if (current.strainTime > 100) {
+            if (currentStrainTime > 100) {
                 acuteAngleBonus = 0;
             } else {
                 acuteAngleBonus *=
                         // Multiply by previous angle, we don't want to buff unless this is a wiggle type pattern.
-                        calculateAcuteAngleBonus(last.angle) *
+                        calculateAcuteAngleBonus(lastAngle) *
                         // The maximum velocity we buff is equal to 125 / strainTime.
-                        Math.min(angleBonus, 125 / current.strainTime) *
+                        Math.min(angleBonus, 125 / currentStrainTime) *
                         // Scale buff from 300 BPM 1/2 to 400 BPM 1/2.
-                        Math.pow(Math.sin(Math.PI / 2 * Math.min(1, (100 - current.strainTime) / 25)), 2) *
+                        Math.pow(Math.sin(Math.PI / 2 * Math.min(1, (100 - currentStrainTime) / 25)), 2) *
                         // Buff distance exceeding 50 (radius) up to 100 (diameter).
-                        Math.pow(Math.sin(Math.PI / 2 * (MathUtils.clamp(current.lazyJumpDistance, 50, 100) - 50) / 50), 2);
+                        Math.pow(Math.sin(Math.PI / 2 * (MathUtils.clamp(currentLazyJumpDistance, 50, 100) - 50) / 50), 2);
             }
 
             // Penalize wide angles if they're repeated, reducing the penalty as last.angle gets more acute.
-            wideAngleBonus *= angleBonus * (1 - Math.min(wideAngleBonus, Math.pow(calculateWideAngleBonus(last.angle), 3)));
+            wideAngleBonus *= angleBonus * (1 - Math.min(wideAngleBonus, Math.pow(calculateWideAngleBonus(lastAngle), 3)));
             // Penalize acute angles if they're repeated, reducing the penalty as lastLast.angle gets more obtuse.
-            acuteAngleBonus *= 0.5 + 0.5 * (1 - Math.min(acuteAngleBonus, Math.pow(calculateAcuteAngleBonus(lastLast.angle), 3)));
+            acuteAngleBonus *= 0.5 + 0.5 * (1 - Math.min(acuteAngleBonus, Math.pow(calculateAcuteAngleBonus(lastLastAngle), 3)));
         }
 
         if (Math.max(prevVelocity, currentVelocity) != 0) {
             // We want to use the average velocity over the whole object when awarding differences, not the individual jump and slider path velocities.
-            prevVelocity = (last.lazyJumpDistance + lastLast.travelDistance) / last.strainTime;
-            currentVelocity = (current.lazyJumpDistance + last.travelDistance) / current.strainTime;
+            prevVelocity = (lastLazyJumpDistance + lastLastTravelDistance) / lastStrainTime;
+            currentVelocity = (currentLazyJumpDistance + lastTravelDistance) / currentStrainTime;
 
             // Scale with ratio of difference compared to half the max distance.
             double distanceRatio = Math.pow(Math.sin(Math.PI / 2 * Math.abs(prevVelocity - currentVelocity) / Math.max(prevVelocity, currentVelocity)), 2);
 
             // Reward for % distance up to 125 / strainTime for overlaps where velocity is still changing.
-            double overlapVelocityBuff = Math.min(125 / Math.min(current.strainTime, last.strainTime), Math.abs(prevVelocity - currentVelocity));
+            double overlapVelocityBuff = Math.min(125 / Math.min(currentStrainTime, lastStrainTime), Math.abs(prevVelocity - currentVelocity));
 
             velocityChangeBonus = overlapVelocityBuff * distanceRatio;
 
             // Penalize for rhythm changes.
-            velocityChangeBonus *= Math.pow(Math.min(current.strainTime, last.strainTime) / Math.max(current.strainTime, last.strainTime), 2);
+            velocityChangeBonus *= Math.pow(Math.min(currentStrainTime, lastStrainTime) / Math.max(currentStrainTime, lastStrainTime), 2);
         }
 
-        if (last.object instanceof Slider) {
+        if (isLastSlider) {
             // Reward sliders based on velocity.
-            sliderBonus = last.travelDistance / last.travelTime;
+            sliderBonus = lastTravelDistance / objects.getTravelTime(last);
         }
 
         // Add in acute angle bonus or wide angle bonus + velocity change bonus, whichever is larger.
@@ -1,8 +1,6 @@
 package com.rian.difficultycalculator.evaluators;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
-import com.rian.difficultycalculator.beatmap.hitobject.Slider;
-import com.rian.difficultycalculator.beatmap.hitobject.Spinner;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 
 /**
  * An evaluator for calculating osu!standard flashlight skill.
@@ -24,33 +22,32 @@ public final class FlashlightEvaluator {
      *     <li>and whether Hidden mod is enabled.</li>
      * </ul>
      *
-     * @param current The current object.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the current object.
      * @param isHiddenMod Whether the Hidden mod is enabled.
      */
-    public static double evaluateDifficultyOf(DifficultyHitObject current, boolean isHiddenMod) {
+    public static double evaluateDifficultyOf(DifficultyHitObjectStore objects, int current, boolean isHiddenMod) {
         // Exclude overlapping objects that can be tapped at once.
-        if (current.object instanceof Spinner) {
+        if (objects.isSpinner(current)) {
             return 0;
         }
 
-        double scalingFactor = 52 / current.object.getRadius();
+        double scalingFactor = 52 / objects.getRadius(current);
+        double currentAngle = objects.getAngle(current);
         double smallDistNerf = 1;
         double cumulativeStrainTime = 0;
         double result = 0;
-        DifficultyHitObject last = current;
+        int last = current;
         double angleRepeatCount = 0;
 
-        for (int i = 0; i < Math.min(current.index, 10); ++i) {
-            DifficultyHitObject currentObject = current.previous(i);
+        for (int i = 0; i < Math.min(current, 10); ++i) {
+            int currentObject = current - i - 1;
 
             // Exclude overlapping objects that can be tapped at once.
-            if (!(currentObject.object instanceof Spinner)) {
-                double jumpDistance = current.object
-                        .getStackedPosition()
-                        .subtract(currentObject.object.getStackedEndPosition())
-                        .getLength();
+            if (!objects.isSpinner(currentObject)) {
+                double jumpDistance = objects.getStackedDistanceToEnd(current, currentObject);
 
-                cumulativeStrainTime += last.strainTime;
+                cumulativeStrainTime += objects.getStrainTime(last);
 
                 // We want to nerf objects that can be easily seen within the Flashlight circle radius.
                 if (i == 0) {
@@ -58,17 +55,19 @@ public final class FlashlightEvaluator {
                 }
 
                 // We also want to nerf stacks so that only the first object of the stack is accounted for.
-                double stackNerf = Math.min(1, currentObject.lazyJumpDistance / scalingFactor / 25);
+                double stackNerf = Math.min(1, objects.getLazyJumpDistance(currentObject) / scalingFactor / 25);
 
                 // Bonus based on how visible the object is.
                 double opacityBonusMultiplier = 0.4;
-                double opacityBonus = 1 + opacityBonusMultiplier * (1 - current.opacityAt(currentObject.object.getStartTime(), isHiddenMod));
+                double opacityBonus = 1 + opacityBonusMultiplier * (1 - objects.opacityAt(current, objects.getRawStartTime(currentObject), isHiddenMod));
 
                 result += (stackNerf * opacityBonus * scalingFactor * jumpDistance) / cumulativeStrainTime;
 
-                if (!Double.isNaN(currentObject.angle) && !Double.isNaN(current.angle)) {
+                double currentObjectAngle = objects.getAngle(currentObject);
+
+                if (!Double.isNaN(currentObjectAngle) && !Double.isNaN(currentAngle)) {
                     // Objects further back in time should count less for the nerf.
-                    if (Math.abs(currentObject.angle - current.angle) < 0.02) {
+                    if (Math.abs(currentObjectAngle - currentAngle) < 0.02) {
                         angleRepeatCount += Math.max(0, 1 - 0.1 * i);
                     }
                 }
@@ -90,19 +89,19 @@ public final class FlashlightEvaluator {
         result *= minAngleMultiplier + (1 - minAngleMultiplier) / (angleRepeatCount + 1);
 
         double sliderBonus = 0;
-        if (current.object instanceof Slider) {
+        if (objects.isSlider(current)) {
             // Invert the scaling factor to determine the true travel distance independent of circle size.
-            double pixelTravelDistance = ((Slider) current.object).getLazyTravelDistance() / scalingFactor;
+            double pixelTravelDistance = objects.getSliderLazyTravelDistance(current) / scalingFactor;
 
             // Reward sliders based on velocity.
             double minVelocity = 0.5;
-            sliderBonus = Math.pow(Math.max(0, pixelTravelDistance / current.travelTime - minVelocity), 0.5);
+            sliderBonus = Math.pow(Math.max(0, pixelTravelDistance / objects.getTravelTime(current) - minVelocity), 0.5);
 
             // Longer sliders require more memorization.
             sliderBonus *= pixelTravelDistance;
 
             // Nerf sliders with repeats, as less memorization is required.
-            sliderBonus /= ((Slider) current.object).getRepeatCount();
+            sliderBonus /= objects.getRepeatCount(current);
         }
 
         double sliderMultiplier = 1.3;
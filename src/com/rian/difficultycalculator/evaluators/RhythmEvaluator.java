@@ -1,8 +1,6 @@
 package com.rian.difficultycalculator.evaluators;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
-import com.rian.difficultycalculator.beatmap.hitobject.Slider;
-import com.rian.difficultycalculator.beatmap.hitobject.Spinner;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 
 /**
  * An evaluator for calculating osu!standard rhythm skill.
@@ -19,11 +17,12 @@ public final class RhythmEvaluator {
      * Calculates a rhythm multiplier for the difficulty of the tap associated
      * with historic data of the current object.
      *
-     * @param current The current object.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the current object.
      * @param greatWindow The great hit window of the current object.
      */
-    public static double evaluateDifficultyOf(DifficultyHitObject current, double greatWindow) {
-        if (current.object instanceof Spinner) {
+    public static double evaluateDifficultyOf(DifficultyHitObjectStore objects, int current, double greatWindow) {
+        if (objects.isSpinner(current)) {
             return 0;
         }
 
@@ -37,29 +36,30 @@ public final class RhythmEvaluator {
         boolean firstDeltaSwitch = false;
         int rhythmStart = 0;
 
-        int historicalNoteCount = Math.min(current.index, 32);
+        int historicalNoteCount = Math.min(current, 32);
+        double currentStartTime = objects.getStartTime(current);
 
         // 5 seconds of calculateRhythmBonus max.
         int historyTimeMax = 5000;
         while (rhythmStart < historicalNoteCount - 2 &&
-                current.startTime - current.previous(rhythmStart).startTime < historyTimeMax) {
+                currentStartTime - objects.getStartTime(current - rhythmStart - 1) < historyTimeMax) {
             ++rhythmStart;
         }
 
         for (int i = rhythmStart; i > 0; --i) {
-            DifficultyHitObject currentObject = current.previous(i - 1);
-            DifficultyHitObject prevObject = current.previous(i);
-            DifficultyHitObject lastObject = current.previous(i + 1);
+            int currentObject = current - i;
+            int prevObject = currentObject - 1;
+            int lastObject = currentObject - 2;
 
             // Scale note 0 to 1 from history to now.
-            double currentHistoricalDecay = (historyTimeMax - (current.startTime - currentObject.startTime)) / historyTimeMax;
+            double currentHistoricalDecay = (historyTimeMax - (currentStartTime - objects.getStartTime(currentObject))) / historyTimeMax;
 
             // Either we're limited by time or limited by object count.
             currentHistoricalDecay = Math.min(currentHistoricalDecay, (double) (historicalNoteCount - i) / historicalNoteCount);
 
-            double currentDelta = currentObject.strainTime;
-            double prevDelta = prevObject.strainTime;
-            double lastDelta = lastObject.strainTime;
+            double currentDelta = objects.getStrainTime(currentObject);
+            double prevDelta = objects.getStrainTime(prevObject);
+            double lastDelta = objects.getStrainTime(lastObject);
 
             double currentRatio = 1 + 6 * Math.min(0.5, Math.pow(Math.sin(Math.PI / (Math.min(prevDelta, currentDelta) / Math.max(prevDelta, currentDelta))), 2));
 
@@ -74,12 +74,12 @@ public final class RhythmEvaluator {
                         ++islandSize;
                     }
                 } else {
-                    if (currentObject.object instanceof Slider) {
+                    if (objects.isSlider(currentObject)) {
                         // BPM change is into slider, this is easy acc window.
                         effectiveRatio /= 8;
                     }
 
-                    if (prevObject.object instanceof Slider) {
+                    if (objects.isSlider(prevObject)) {
                         // BPM change was from a slider, this is typically easier than circle -> circle.
                         effectiveRatio /= 4;
                     }
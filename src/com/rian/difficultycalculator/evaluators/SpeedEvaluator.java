@@ -1,7 +1,6 @@
 package com.rian.difficultycalculator.evaluators;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
-import com.rian.difficultycalculator.beatmap.hitobject.Spinner;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.math.MathUtils;
 
 /**
@@ -25,26 +24,25 @@ public final class SpeedEvaluator {
      *     <li>and how easily they can be cheesed.</li>
      * </ul>
      *
-     * @param current The current object.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the current object.
      * @param greatWindow The great hit window of the current object.
      */
-    public static double evaluateDifficultyOf(DifficultyHitObject current, double greatWindow) {
-        if (current.object instanceof Spinner) {
+    public static double evaluateDifficultyOf(DifficultyHitObjectStore objects, int current, double greatWindow) {
+        if (objects.isSpinner(current)) {
             return 0;
         }
 
-        DifficultyHitObject prev = current.previous(0);
-
-        double strainTime = current.strainTime;
+        double strainTime = objects.getStrainTime(current);
         double greatWindowFull = greatWindow * 2;
 
         // Nerf double-tappable doubles.
-        DifficultyHitObject next = current.next(0);
+        int next = current + 1;
         double doubletapness = 1;
 
-        if (next != null) {
-            double currentDeltaTime = Math.max(1, current.deltaTime);
-            double nextDeltaTime = Math.max(1, next.deltaTime);
+        if (next < objects.size()) {
+            double currentDeltaTime = Math.max(1, objects.getDeltaTime(current));
+            double nextDeltaTime = Math.max(1, objects.getDeltaTime(next));
             double deltaDifference = Math.abs(nextDeltaTime - currentDeltaTime);
             double speedRatio = currentDeltaTime / Math.max(currentDeltaTime, deltaDifference);
             double windowRatio = Math.pow(Math.min(1, currentDeltaTime / greatWindowFull), 2);
@@ -60,8 +58,8 @@ public final class SpeedEvaluator {
             speedBonus += 0.75 * Math.pow((minSpeedBonus - strainTime) / 40, 2);
         }
 
-        double travelDistance = prev != null ? prev.travelDistance : 0;
-        double distance = Math.min(singleSpacingThreshold, travelDistance + current.minimumJumpDistance);
+        double travelDistance = current > 0 ? objects.getTravelDistance(current - 1) : 0;
+        double distance = Math.min(singleSpacingThreshold, travelDistance + objects.getMinimumJumpDistance(current));
 
         return (speedBonus + speedBonus * Math.pow(distance / singleSpacingThreshold, 3.5)) * doubletapness / strainTime;
     }
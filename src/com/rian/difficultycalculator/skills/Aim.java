@@ -1,6 +1,6 @@
 package com.rian.difficultycalculator.skills;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.evaluators.AimEvaluator;
 
 import java.util.EnumSet;
@@ -26,25 +26,25 @@ public class Aim extends StrainSkill {
     }
 
     @Override
-    protected double strainValueAt(DifficultyHitObject current) {
-        currentStrain *= strainDecay(current.deltaTime);
+    protected double strainValueAt(DifficultyHitObjectStore objects, int current) {
+        currentStrain *= strainDecay(objects.getDeltaTime(current));
         double skillMultiplier = 23.55;
-        currentStrain += AimEvaluator.evaluateDifficultyOf(current, withSliders) * skillMultiplier;
+        currentStrain += AimEvaluator.evaluateDifficultyOf(objects, current, withSliders) * skillMultiplier;
 
         return currentStrain;
     }
 
     @Override
-    protected double calculateInitialStrain(double time, DifficultyHitObject current) {
-        return currentStrain * strainDecay(time - current.previous(0).startTime);
+    protected double calculateInitialStrain(double time, DifficultyHitObjectStore objects, int current) {
+        return currentStrain * strainDecay(time - objects.getStartTime(current - 1));
     }
 
     @Override
-    protected void saveToHitObject(DifficultyHitObject current) {
+    protected void saveToHitObject(DifficultyHitObjectStore objects, int current) {
         if (withSliders) {
-            current.aimStrainWithSliders = currentStrain;
+            objects.setAimStrainWithSliders(current, currentStrain);
         } else {
-            current.aimStrainWithoutSliders = currentStrain;
+            objects.setAimStrainWithoutSliders(current, currentStrain);
         }
     }
 
@@ -1,6 +1,6 @@
 package com.rian.difficultycalculator.skills;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.evaluators.FlashlightEvaluator;
 
 import java.util.EnumSet;
@@ -24,22 +24,22 @@ public class Flashlight extends StrainSkill {
     }
 
     @Override
-    protected double strainValueAt(DifficultyHitObject current) {
-        currentStrain *= strainDecay(current.deltaTime);
+    protected double strainValueAt(DifficultyHitObjectStore objects, int current) {
+        currentStrain *= strainDecay(objects.getDeltaTime(current));
         double skillMultiplier = 0.052;
-        currentStrain += FlashlightEvaluator.evaluateDifficultyOf(current, hasHidden) * skillMultiplier;
+        currentStrain += FlashlightEvaluator.evaluateDifficultyOf(objects, current, hasHidden) * skillMultiplier;
 
         return currentStrain;
     }
 
     @Override
-    protected double calculateInitialStrain(double time, DifficultyHitObject current) {
-        return currentStrain * strainDecay(time - current.previous(0).startTime);
+    protected double calculateInitialStrain(double time, DifficultyHitObjectStore objects, int current) {
+        return currentStrain * strainDecay(time - objects.getStartTime(current - 1));
     }
 
     @Override
-    protected void saveToHitObject(DifficultyHitObject current) {
-        current.flashlightStrain = currentStrain;
+    protected void saveToHitObject(DifficultyHitObjectStore objects, int current) {
+        objects.setFlashlightStrain(current, currentStrain);
     }
 
     @Override
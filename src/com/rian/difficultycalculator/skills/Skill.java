@@ -1,6 +1,6 @@
 package com.rian.difficultycalculator.skills;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 
 import java.util.EnumSet;
 
@@ -26,9 +26,10 @@ public abstract class Skill {
      * Calculates the strain value of a hit object and stores the value in it.
      * This value is affected by previously processed objects.
      *
-     * @param current The hit object to process.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the hit object to process.
      */
-    public abstract void process(DifficultyHitObject current);
+    public abstract void process(DifficultyHitObjectStore objects, int current);
 
     /**
      * Returns the calculated difficulty value representing all hit objects
@@ -1,11 +1,10 @@
 package com.rian.difficultycalculator.skills;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.evaluators.RhythmEvaluator;
 import com.rian.difficultycalculator.evaluators.SpeedEvaluator;
+import com.rian.difficultycalculator.utils.DoubleList;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EnumSet;
 
 import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
@@ -16,9 +15,14 @@ import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
 public class Speed extends StrainSkill {
     private double currentStrain;
     private double currentRhythm;
-    private final ArrayList<Double> objectStrains = new ArrayList<>();
+    private final DoubleList objectStrains = new DoubleList();
     private final double greatWindow;
 
+    // Relevant note count is accumulated across calls, and only recalculated in full when the maximum strain changes.
+    private double maxObjectStrain;
+    private double relevantNoteCount;
+    private int relevantNoteCountedObjects;
+
     /**
      * @param mods The mods that this skill processes.
      * @param greatWindow The 300 hit window.
@@ -36,43 +40,49 @@ public class Speed extends StrainSkill {
         if (objectStrains.size() == 0)
             return 0;
 
-        double maxStrain = Collections.max(objectStrains);
-
-        if (maxStrain == 0)
+        if (maxObjectStrain == 0)
             return 0;
 
-        double relevantNoteCount = 0;
-
-        for (double strain : objectStrains) {
-            relevantNoteCount += 1 / (1 + Math.exp(-(strain / maxStrain * 12 - 6)));
+        for (int i = relevantNoteCountedObjects; i < objectStrains.size(); ++i) {
+            relevantNoteCount += 1 / (1 + Math.exp(-(objectStrains.get(i) / maxObjectStrain * 12 - 6)));
         }
 
+        relevantNoteCountedObjects = objectStrains.size();
+
         return relevantNoteCount;
     }
 
     @Override
-    protected double strainValueAt(DifficultyHitObject current) {
-        currentStrain *= strainDecay(current.strainTime);
+    protected double strainValueAt(DifficultyHitObjectStore objects, int current) {
+        currentStrain *= strainDecay(objects.getStrainTime(current));
         double skillMultiplier = 1375;
-        currentStrain += SpeedEvaluator.evaluateDifficultyOf(current, greatWindow) * skillMultiplier;
-        currentRhythm = RhythmEvaluator.evaluateDifficultyOf(current, greatWindow);
+        currentStrain += SpeedEvaluator.evaluateDifficultyOf(objects, current, greatWindow) * skillMultiplier;
+        currentRhythm = RhythmEvaluator.evaluateDifficultyOf(objects, current, greatWindow);
 
         double totalStrain = currentStrain * currentRhythm;
 
         objectStrains.add(totalStrain);
 
+        if (totalStrain > maxObjectStrain) {
+            maxObjectStrain = totalStrain;
+
+            // Every counted note is weighted against the maximum strain, so they need to be counted again.
+            relevantNoteCount = 0;
+            relevantNoteCountedObjects = 0;
+        }
+
         return totalStrain;
     }
 
     @Override
-    protected double calculateInitialStrain(double time, DifficultyHitObject current) {
-        return currentStrain * currentRhythm * strainDecay(time - current.previous(0).startTime);
+    protected double calculateInitialStrain(double time, DifficultyHitObjectStore objects, int current) {
+        return currentStrain * currentRhythm * strainDecay(time - objects.getStartTime(current - 1));
     }
 
     @Override
-    protected void saveToHitObject(DifficultyHitObject current) {
-        current.speedStrain = currentStrain;
-        current.rhythmMultiplier = currentRhythm;
+    protected void saveToHitObject(DifficultyHitObjectStore objects, int current) {
+        objects.setSpeedStrain(current, currentStrain);
+        objects.setRhythmMultiplier(current, currentRhythm);
     }
 
     @Override
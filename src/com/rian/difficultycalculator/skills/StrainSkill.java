@@ -1,11 +1,10 @@
 package com.rian.difficultycalculator.skills;
 
-import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObject;
+import com.rian.difficultycalculator.beatmap.hitobject.DifficultyHitObjectStore;
 import com.rian.difficultycalculator.math.Interpolation;
 import com.rian.difficultycalculator.math.MathUtils;
+import com.rian.difficultycalculator.utils.DoubleList;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EnumSet;
 
 import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
@@ -16,11 +15,34 @@ import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
  * hitting all the processed objects.
  */
 public abstract class StrainSkill extends Skill {
+    /**
+     * The weight below which a strain peak can no longer measurably affect the difficulty value.
+     */
+    private static final double negligibleWeight = 1e-20;
+
     /**
      * The strain peaks of each sections.
      */
-    protected final ArrayList<Double> strainPeaks = new ArrayList<>();
+    protected final DoubleList strainPeaks = new DoubleList();
+
+    /**
+     * The highest strain peaks of each sections, sorted from highest to lowest.
+     * <br><br>
+     * Only the peaks that can measurably affect the difficulty value are held here.
+     */
+    private final DoubleList relevantStrainPeaks = new DoubleList();
+
+    /**
+     * The sum of strain peaks that were dropped from <code>relevantStrainPeaks</code>.
+     */
+    private double irrelevantStrainPeakSum;
+
+    /**
+     * Scratch list used when calculating the difficulty value, to avoid allocating on every call.
+     */
+    private final DoubleList difficultyStrains = new DoubleList();
 
+    private int relevantStrainPeakCount = -1;
     private double currentSectionPeak;
     private double currentSectionEnd;
 
@@ -32,37 +54,57 @@ public abstract class StrainSkill extends Skill {
     }
 
     @Override
-    public void process(DifficultyHitObject current) {
+    public void process(DifficultyHitObjectStore objects, int current) {
         // The first object doesn't generate a strain, so we begin with an incremented section end
         int sectionLength = 400;
-        if (current.index == 0) {
-            currentSectionEnd = Math.ceil(current.startTime / sectionLength) * sectionLength;
+        double startTime = objects.getStartTime(current);
+        if (current == 0) {
+            currentSectionEnd = Math.ceil(startTime / sectionLength) * sectionLength;
         }
 
-        while (current.startTime > currentSectionEnd) {
+        while (startTime > currentSectionEnd) {
             saveCurrentPeak();
-            startNewSectionFrom(currentSectionEnd, current);
+            startNewSectionFrom(currentSectionEnd, objects, current);
             currentSectionEnd += sectionLength;
         }
 
-        currentSectionPeak = Math.max(strainValueAt(current), currentSectionPeak);
-        saveToHitObject(current);
+        currentSectionPeak = Math.max(strainValueAt(objects, current), currentSectionPeak);
+        saveToHitObject(objects, current);
     }
 
     @Override
     public double difficultyValue() {
-        ArrayList<Double> strains = getCurrentStrainPeaks();
-        Collections.sort(strains, (d1, d2) -> Double.compare(d2, d1));
+        // The saved peaks are kept sorted, so only the current section peak needs to be placed.
+        DoubleList strains = difficultyStrains;
+        strains.clear();
+        strains.addAll(relevantStrainPeaks);
+        strains.add(strains.findDescendingInsertionIndex(currentSectionPeak), currentSectionPeak);
+
+        int reducedSectionCount = getReducedSectionCount();
+
+        if (reducedSectionCount > 0) {
+            int reducedCount = Math.min(strains.size(), reducedSectionCount);
 
-        if (getReducedSectionCount() > 0) {
             // We are reducing the highest strains first to account for extreme difficulty spikes.
-            for (int i = 0; i < Math.min(strains.size(), getReducedSectionCount()); ++i) {
-                double scale = Math.log10(Interpolation.linear(1d, 10, MathUtils.clamp((float) i / getReducedSectionCount(), 0, 1)));
+            for (int i = 0; i < reducedCount; ++i) {
+                double scale = Math.log10(Interpolation.linear(1d, 10, MathUtils.clamp((float) i / reducedSectionCount, 0, 1)));
 
                 strains.set(i, strains.get(i) * Interpolation.linear(getReducedSectionBaseline(), 1, scale));
             }
 
-            Collections.sort(strains, (d1, d2) -> Double.compare(d2, d1));
+            // Everything after the reduced strains is still sorted, so move each reduced strain
+            // into place starting from the lowest one.
+            for (int i = reducedCount - 1; i >= 0; --i) {
+                double strain = strains.get(i);
+                int j = i;
+
+                while (j + 1 < strains.size() && strains.get(j + 1) > strain) {
+                    strains.set(j, strains.get(j + 1));
+                    ++j;
+                }
+
+                strains.set(j, strain);
+            }
         }
 
         // Difficulty is the weighted sum of the highest strains from every section.
@@ -70,21 +112,30 @@ public abstract class StrainSkill extends Skill {
         double difficulty = 0;
         double weight = 1;
 
-        for (double strain : strains) {
-            difficulty += strain * weight;
+        for (int i = 0; i < strains.size(); ++i) {
+            difficulty += strains.get(i) * weight;
             weight *= getDecayWeight();
         }
 
+        // Dropped strains all come after the relevant ones. Their weight is either negligible, or exactly 1
+        // for skills whose strains do not decay, in which case their order does not matter.
+        difficulty += irrelevantStrainPeakSum * weight;
+
         return difficulty * getDifficultyMultiplier();
     }
 
     /**
-     * Returns a list of the peak strains for each <code>sectionLength</code> section of the beatmap,
+     * Returns the peak strains for each <code>sectionLength</code> section of the beatmap,
      * including the peak of the current section.
      */
-    public ArrayList<Double> getCurrentStrainPeaks() {
-        ArrayList<Double> strains = new ArrayList<>(strainPeaks);
-        strains.add(currentSectionPeak);
+    public double[] getCurrentStrainPeaks() {
+        double[] strains = new double[strainPeaks.size() + 1];
+
+        for (int i = 0; i < strainPeaks.size(); ++i) {
+            strains[i] = strainPeaks.get(i);
+        }
+
+        strains[strains.length - 1] = currentSectionPeak;
 
         return strains;
     }
@@ -107,26 +158,29 @@ public abstract class StrainSkill extends Skill {
      * Calculates the strain value at the hit object.
      * This value is calculated with or without respect to previous objects.
      *
-     * @param current The hit object to calculate.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the hit object to calculate.
      * @return The strain value at the hit object.
      */
-    protected abstract double strainValueAt(DifficultyHitObject current);
+    protected abstract double strainValueAt(DifficultyHitObjectStore objects, int current);
 
     /**
      * Retrieves the peak strain at a point in time.
      *
      * @param time The time to retrieve the peak strain at.
-     * @param current The current hit object.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the current hit object.
      * @return The peak strain.
      */
-    protected abstract double calculateInitialStrain(double time, DifficultyHitObject current);
+    protected abstract double calculateInitialStrain(double time, DifficultyHitObjectStore objects, int current);
 
     /**
      * Saves the current strain to a hit object.
      *
-     * @param current The hit object to save to.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the hit object to save to.
      */
-    protected abstract void saveToHitObject(DifficultyHitObject current);
+    protected abstract void saveToHitObject(DifficultyHitObjectStore objects, int current);
 
     /**
      * Gets the number of sections with the highest strains, which the peak strain reductions will apply to.
@@ -149,17 +203,39 @@ public abstract class StrainSkill extends Skill {
      */
     private void saveCurrentPeak() {
         strainPeaks.add(currentSectionPeak);
+
+        if (relevantStrainPeakCount < 0) {
+            relevantStrainPeakCount = getReducedSectionCount();
+
+            if (getDecayWeight() < 1) {
+                relevantStrainPeakCount += (int) Math.ceil(Math.log(negligibleWeight) / Math.log(getDecayWeight()));
+            }
+        }
+
+        double peak = currentSectionPeak;
+
+        if (relevantStrainPeaks.size() == relevantStrainPeakCount) {
+            if (relevantStrainPeakCount == 0 || peak <= relevantStrainPeaks.get(relevantStrainPeakCount - 1)) {
+                irrelevantStrainPeakSum += peak;
+                return;
+            }
+
+            irrelevantStrainPeakSum += relevantStrainPeaks.removeLast();
+        }
+
+        relevantStrainPeaks.add(relevantStrainPeaks.findDescendingInsertionIndex(peak), peak);
     }
 
     /**
      * Sets the initial strain level for a new section.
      *
      * @param time The beginning of the new section, in milliseconds.
-     * @param current The current hit object.
+     * @param objects The difficulty hit objects.
+     * @param current The index of the current hit object.
      */
-    private void startNewSectionFrom(double time, DifficultyHitObject current) {
+    private void startNewSectionFrom(double time, DifficultyHitObjectStore objects, int current) {
         // The maximum strain of the new section is not zero by default.
         // This means we need to capture the strain level at the beginning of the new section, and use that as the initial peak level.
-        currentSectionPeak = calculateInitialStrain(time, current);
+        currentSectionPeak = calculateInitialStrain(time, objects, current);
     }
 }
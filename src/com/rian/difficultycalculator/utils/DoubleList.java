@@ -0,0 +1,167 @@
+package com.rian.difficultycalculator.utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive <code>double</code>s.
+ * <br><br>
+ * Used in place of <code>ArrayList&lt;Double&gt;</code> in hot paths to avoid boxing every value.
+ */
+public final class DoubleList {
+    private double[] values;
+    private int size;
+
+    public DoubleList() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity The initial capacity of this list.
+     */
+    public DoubleList(int initialCapacity) {
+        values = new double[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Gets the amount of values in this list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether this list holds no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the value at an index.
+     *
+     * @param index The index.
+     * @return The value at the index.
+     */
+    public double get(int index) {
+        checkIndex(index);
+
+        return values[index];
+    }
+
+    /**
+     * Sets the value at an index.
+     *
+     * @param index The index.
+     * @param value The new value.
+     */
+    public void set(int index, double value) {
+        checkIndex(index);
+
+        values[index] = value;
+    }
+
+    /**
+     * Appends a value to the end of this list.
+     *
+     * @param value The value to append.
+     */
+    public void add(double value) {
+        ensureCapacity(size + 1);
+
+        values[size++] = value;
+    }
+
+    /**
+     * Inserts a value at an index, shifting subsequent values to the right.
+     *
+     * @param index The index to insert at.
+     * @param value The value to insert.
+     */
+    public void add(int index, double value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        ensureCapacity(size + 1);
+
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        ++size;
+    }
+
+    /**
+     * Appends all values of another list to the end of this list.
+     *
+     * @param other The list whose values are to be appended.
+     */
+    public void addAll(DoubleList other) {
+        ensureCapacity(size + other.size);
+
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Removes the last value of this list.
+     *
+     * @return The removed value.
+     */
+    public double removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+
+        return values[--size];
+    }
+
+    /**
+     * Removes all values from this list. The backing storage is kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Finds the index at which a value should be inserted to keep this list sorted from highest to lowest.
+     * <br><br>
+     * Values equal to the given value are placed before the returned index.
+     *
+     * @param value The value.
+     * @return The insertion index.
+     */
+    public int findDescendingInsertionIndex(double value) {
+        int l = 0;
+        int r = size;
+
+        while (l < r) {
+            int pivot = l + ((r - l) >> 1);
+
+            if (values[pivot] >= value) {
+                l = pivot + 1;
+            } else {
+                r = pivot;
+            }
+        }
+
+        return l;
+    }
+
+    /**
+     * Copies the values of this list into a new array.
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, values.length + (values.length >> 1)));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
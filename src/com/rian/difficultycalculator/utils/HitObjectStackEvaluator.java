@@ -6,6 +6,7 @@ import com.rian.difficultycalculator.beatmap.hitobject.HitObjectWithDuration;
 import com.rian.difficultycalculator.beatmap.hitobject.Slider;
 import com.rian.difficultycalculator.beatmap.hitobject.Spinner;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -14,8 +15,21 @@ import java.util.List;
 public final class HitObjectStackEvaluator {
     private static final int stackDistance = 3;
 
+    private static final byte KIND_CIRCLE = 0;
+    private static final byte KIND_SLIDER = 1;
+    private static final byte KIND_SPINNER = 2;
+
+    /**
+     * The largest time window, in objects, that is scanned directly rather than through a spatial grid.
+     */
+    private static final int maxLinearWindow = 128;
+
     /**
      * Applies osu!standard note stacking to hit objects.
+     * <br><br>
+     * Unlike the ranged overload, this looks up nearby objects through a spatial grid instead of comparing
+     * every object in the stacking time window, which keeps dense streams with a high stack leniency from
+     * degrading towards quadratic time. The resulting stack heights are the same.
      *
      * @param formatVersion The format version of the beatmap containing the hit objects.
      * @param objects       The hit objects to apply stacking to.
@@ -25,7 +39,12 @@ public final class HitObjectStackEvaluator {
      */
     public static void applyStacking(int formatVersion, List<HitObject> objects, float ar,
                                      float stackLeniency) {
-        applyStacking(formatVersion, objects, ar, stackLeniency, 0, objects.size() - 1);
+        if (formatVersion < 6 || !isSorted(objects)) {
+            applyStacking(formatVersion, objects, ar, stackLeniency, 0, objects.size() - 1);
+            return;
+        }
+
+        applyStackingIndexed(objects, ar, stackLeniency);
     }
 
     /**
@@ -195,6 +214,185 @@ public final class HitObjectStackEvaluator {
         }
     }
 
+    /**
+     * Applies osu!standard note stacking to all hit objects, looking up stacking candidates through a spatial grid.
+     * <br><br>
+     * This mirrors the reverse pass of the ranged overload. Instead of walking back through every object in the
+     * stacking time window, the window is found by binary search on start times, and the walk jumps straight to
+     * the previous object that is close enough to the current one to possibly stack with it.
+     *
+     * @param objects The hit objects to apply stacking to, sorted by start time.
+     * @param ar The calculated approach rate of the beatmap.
+     * @param stackLeniency The multiplier for the threshold in time where hit objects
+     *                      placed close together stack, ranging from 0 to 1.
+     */
+    private static void applyStackingIndexed(List<HitObject> objects, float ar, float stackLeniency) {
+        double timePreempt = (ar <= 5) ? (1800 - 120 * ar) : (1950 - 150 * ar);
+        double stackThreshold = timePreempt * stackLeniency;
+
+        int count = objects.size();
+        HitObject[] hitObjects = objects.toArray(new HitObject[0]);
+        byte[] kinds = new byte[count];
+        double[] startTimes = new double[count];
+        double[] endTimes = new double[count];
+        float[] x = new float[count];
+        float[] y = new float[count];
+        float[] endX = new float[count];
+        float[] endY = new float[count];
+
+        for (int i = 0; i < count; ++i) {
+            HitObject object = hitObjects[i];
+
+            kinds[i] = object instanceof Spinner ? KIND_SPINNER : object instanceof Slider ? KIND_SLIDER : KIND_CIRCLE;
+            startTimes[i] = object.getStartTime();
+            endTimes[i] = object instanceof HitObjectWithDuration ? ((HitObjectWithDuration) object).getEndTime() : startTimes[i];
+            x[i] = object.getPosition().x;
+            y[i] = object.getPosition().y;
+            endX[i] = object.getEndPosition().x;
+            endY[i] = object.getEndPosition().y;
+        }
+
+        // Only built once a time window is large enough for it to pay off.
+        StackGrid grid = null;
+
+        for (int i = count - 1; i > 0; --i) {
+            if (hitObjects[i].getStackHeight() != 0 || kinds[i] == KIND_SPINNER) {
+                continue;
+            }
+
+            boolean isCircle = kinds[i] == KIND_CIRCLE;
+            int current = i;
+            int upper = i;
+            int lower = findWindowEnd(startTimes, endTimes, kinds, isCircle, startTimes[current], stackThreshold, upper);
+            boolean isGridPositioned = false;
+
+            while (true) {
+                int n;
+
+                if (upper - lower > maxLinearWindow) {
+                    if (grid == null) {
+                        grid = new StackGrid(x, y, endX, endY, kinds);
+                    }
+
+                    if (!isGridPositioned) {
+                        grid.seek(x[current], y[current], upper);
+                        isGridPositioned = true;
+                    }
+
+                    n = grid.next(lower);
+                } else {
+                    n = findLastNear(x, y, endX, endY, kinds, x[current], y[current], lower, upper);
+                    isGridPositioned = false;
+                }
+
+                if (n < 0) {
+                    break;
+                }
+
+                upper = n;
+
+                if (isCircle) {
+                    // See the ranged overload for the special case of hit circles under a slider.
+                    if (kinds[n] == KIND_SLIDER && distance(endX[n], endY[n], x[current], y[current]) < stackDistance) {
+                        int offset = hitObjects[current].getStackHeight() - hitObjects[n].getStackHeight() + 1;
+
+                        for (int j = n + 1; j <= i; ++j) {
+                            if (distance(endX[n], endY[n], x[j], y[j]) < stackDistance) {
+                                hitObjects[j].setStackHeight(hitObjects[j].getStackHeight() - offset);
+                            }
+                        }
+
+                        break;
+                    }
+
+                    if (distance(x[n], y[n], x[current], y[current]) >= stackDistance) {
+                        continue;
+                    }
+                } else if (distance(endX[n], endY[n], x[current], y[current]) >= stackDistance) {
+                    // From a slider on, objects always stack positively on the end of the previous object.
+                    continue;
+                }
+
+                hitObjects[n].setStackHeight(hitObjects[current].getStackHeight() + 1);
+                current = n;
+                lower = findWindowEnd(startTimes, endTimes, kinds, isCircle, startTimes[current], stackThreshold, upper);
+                isGridPositioned = false;
+            }
+        }
+    }
+
+    /**
+     * Finds the last object within an index range whose start or end position is within stacking distance
+     * of a point, skipping spinners.
+     *
+     * @return The index of the object, or -1 if there is none.
+     */
+    private static int findLastNear(float[] x, float[] y, float[] endX, float[] endY, byte[] kinds,
+                                    float pointX, float pointY, int lower, int upper) {
+        for (int n = upper - 1; n > lower; --n) {
+            if (kinds[n] == KIND_SPINNER) {
+                continue;
+            }
+
+            if (distance(x[n], y[n], pointX, pointY) < stackDistance ||
+                    (kinds[n] == KIND_SLIDER && distance(endX[n], endY[n], pointX, pointY) < stackDistance)) {
+                return n;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the index at which the backward walk from an object stops. This is the last object before
+     * <code>upper</code> that is not a spinner and is out of the stacking time window, which is measured
+     * from the end of previous objects for hit circles and from their start for sliders.
+     *
+     * @return The index, or -1 if the walk reaches the first object.
+     */
+    private static int findWindowEnd(double[] startTimes, double[] endTimes, byte[] kinds, boolean isCircle,
+                                     double time, double stackThreshold, int upper) {
+        // An object that ends before the window also starts before it, so only objects starting before
+        // the window need to be checked. Those form a prefix, as objects are sorted by start time.
+        int l = 0;
+        int r = upper;
+
+        while (l < r) {
+            int pivot = (l + r) >>> 1;
+
+            if (time - startTimes[pivot] > stackThreshold) {
+                l = pivot + 1;
+            } else {
+                r = pivot;
+            }
+        }
+
+        for (int n = l - 1; n >= 0; --n) {
+            if (kinds[n] != KIND_SPINNER && (!isCircle || time - endTimes[n] > stackThreshold)) {
+                return n;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Computes the distance between two points the same way as <code>Vector2.getDistance</code>.
+     */
+    private static float distance(float x1, float y1, float x2, float y2) {
+        return (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+    }
+
+    private static boolean isSorted(List<HitObject> objects) {
+        for (int i = 1; i < objects.size(); ++i) {
+            if (objects.get(i).getStartTime() < objects.get(i - 1).getStartTime()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Applies osu!standard note stacking to hit objects.
      * <br><br>
@@ -247,4 +445,200 @@ public final class HitObjectStackEvaluator {
             }
         }
     }
+
+    /**
+     * A uniform grid of the start positions of hit objects and the end positions of sliders, excluding spinners.
+     * <br><br>
+     * Every position within stacking distance of a point is in the cell of that point or one of its eight
+     * neighbors. The objects of each cell are stored in ascending order, so that a cursor can walk back
+     * through the neighboring cells of a point without visiting objects that are far from it.
+     */
+    private static final class StackGrid {
+        private final long[] tableKeys;
+        private final int[] tableCells;
+        private final int tableMask;
+        private final int[] cellStarts;
+        private final int[] indices;
+
+        /**
+         * The current position of the cursor in each neighboring cell, exclusive.
+         */
+        private final int[] cursorPositions = new int[9];
+
+        /**
+         * The first position of each neighboring cell.
+         */
+        private final int[] cursorStarts = new int[9];
+
+        private int cursorCellCount;
+        private int lastIndex;
+
+        private StackGrid(float[] x, float[] y, float[] endX, float[] endY, byte[] kinds) {
+            int count = x.length;
+            int capacity = Integer.highestOneBit(Math.max(count, 1) * 4 - 1) << 1;
+
+            tableKeys = new long[capacity];
+            tableCells = new int[capacity];
+            tableMask = capacity - 1;
+            Arrays.fill(tableCells, -1);
+
+            // Each object has up to two entries, one for its start position and one for its end position.
+            int[] entryCells = new int[count * 2];
+            int[] cellSizes = new int[count * 2];
+            int cellCount = 0;
+
+            for (int i = 0; i < count; ++i) {
+                entryCells[i * 2] = -1;
+                entryCells[i * 2 + 1] = -1;
+
+                if (kinds[i] == KIND_SPINNER) {
+                    continue;
+                }
+
+                long startKey = getKey(x[i], y[i]);
+                cellCount = addEntry(startKey, entryCells, cellSizes, i * 2, cellCount);
+
+                if (kinds[i] == KIND_SLIDER) {
+                    long endKey = getKey(endX[i], endY[i]);
+
+                    if (endKey != startKey) {
+                        cellCount = addEntry(endKey, entryCells, cellSizes, i * 2 + 1, cellCount);
+                    }
+                }
+            }
+
+            cellStarts = new int[cellCount + 1];
+
+            for (int i = 0; i < cellCount; ++i) {
+                cellStarts[i + 1] = cellStarts[i] + cellSizes[i];
+            }
+
+            indices = new int[cellStarts[cellCount]];
+            int[] cellFills = Arrays.copyOf(cellStarts, cellCount);
+
+            for (int i = 0; i < entryCells.length; ++i) {
+                if (entryCells[i] >= 0) {
+                    indices[cellFills[entryCells[i]]++] = i / 2;
+                }
+            }
+        }
+
+        /**
+         * Positions the cursor to walk back from an index through objects near a point.
+         *
+         * @param x The X coordinate of the point.
+         * @param y The Y coordinate of the point.
+         * @param upper The exclusive upper bound of the indices to walk through.
+         */
+        private void seek(float x, float y, int upper) {
+            int cellX = getCell(x);
+            int cellY = getCell(y);
+
+            cursorCellCount = 0;
+            lastIndex = upper;
+
+            for (int dx = -1; dx <= 1; ++dx) {
+                for (int dy = -1; dy <= 1; ++dy) {
+                    int cell = tableCells[findSlot(getKey(cellX + dx, cellY + dy))];
+
+                    if (cell < 0) {
+                        continue;
+                    }
+
+                    // Binary search the first object at or after the upper bound.
+                    int l = cellStarts[cell];
+                    int r = cellStarts[cell + 1];
+
+                    while (l < r) {
+                        int pivot = (l + r) >>> 1;
+
+                        if (indices[pivot] < upper) {
+                            l = pivot + 1;
+                        } else {
+                            r = pivot;
+                        }
+                    }
+
+                    cursorStarts[cursorCellCount] = cellStarts[cell];
+                    cursorPositions[cursorCellCount] = l;
+                    ++cursorCellCount;
+                }
+            }
+        }
+
+        /**
+         * Moves the cursor to the previous object that may be within stacking distance of the point.
+         * The distance must still be checked.
+         *
+         * @param lower The exclusive lower bound of the indices to walk through.
+         * @return The index of the object, or -1 if there is none above <code>lower</code>.
+         */
+        private int next(int lower) {
+            int result = -1;
+            int resultCell = -1;
+
+            for (int i = 0; i < cursorCellCount; ++i) {
+                int position = cursorPositions[i];
+
+                // Objects whose start and end positions are in different neighboring cells appear twice.
+                while (position > cursorStarts[i] && indices[position - 1] >= lastIndex) {
+                    --position;
+                }
+
+                cursorPositions[i] = position;
+
+                if (position > cursorStarts[i] && indices[position - 1] > result) {
+                    result = indices[position - 1];
+                    resultCell = i;
+                }
+            }
+
+            if (result <= lower) {
+                return -1;
+            }
+
+            --cursorPositions[resultCell];
+            lastIndex = result;
+
+            return result;
+        }
+
+        private int addEntry(long key, int[] entryCells, int[] cellSizes, int entry, int cellCount) {
+            int slot = findSlot(key);
+
+            if (tableCells[slot] < 0) {
+                tableKeys[slot] = key;
+                tableCells[slot] = cellCount++;
+            }
+
+            entryCells[entry] = tableCells[slot];
+            ++cellSizes[entryCells[entry]];
+
+            return cellCount;
+        }
+
+        private int findSlot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ (hash >>> 32)) & tableMask;
+
+            while (tableCells[slot] >= 0 && tableKeys[slot] != key) {
+                slot = (slot + 1) & tableMask;
+            }
+
+            return slot;
+        }
+
+        private static int getCell(float coordinate) {
+            // Divided in double precision so that a coordinate never lands in a cell next to its own.
+            return (int) Math.floor(coordinate / (double) stackDistance);
+        }
+
+        private static long getKey(float x, float y) {
+            return getKey(getCell(x), getCell(y));
+        }
+
+        private static long getKey(int cellX, int cellY) {
+            return (long) cellX << 32 | cellY & 0xFFFFFFFFL;
+        }
+    }
 }
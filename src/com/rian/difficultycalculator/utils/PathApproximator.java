@@ -1,14 +1,14 @@
 package com.rian.difficultycalculator.utils;
 
 import com.rian.difficultycalculator.math.Precision;
-import com.rian.difficultycalculator.math.Vector2;
 
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
 
 /**
  * Helper methods to approximate a path by interpolating a sequence of control points.
+ * <br><br>
+ * Points are read from and written to <code>PathPointList</code>s, and the buffers used to subdivide
+ * bezier curves are kept per thread, so that approximating a path does not allocate a vector per point.
  */
 public final class PathApproximator {
     /**
@@ -19,6 +19,13 @@ public final class PathApproximator {
     private static final float bezierTolerance = 0.25f;
     private static final float circularArcTolerance = 0.1f;
 
+    private static final ThreadLocal<BezierBuffers> bezierBuffers = new ThreadLocal<BezierBuffers>() {
+        @Override
+        protected BezierBuffers initialValue() {
+            return new BezierBuffers();
+        }
+    };
+
     private PathApproximator() {
         throw new UnsupportedOperationException();
     }
@@ -30,59 +37,67 @@ public final class PathApproximator {
      * the control points until their approximation error vanishes below a given threshold.
      *
      * @param controlPoints The anchor points of the slider.
+     * @param start The index of the first anchor point to approximate, inclusive.
+     * @param end The index of the last anchor point to approximate, exclusive.
+     * @param output The list to append the approximated points to.
      */
-    public static ArrayList<Vector2> approximateBezier(List<Vector2> controlPoints) {
-        ArrayList<Vector2> output = new ArrayList<>();
-        int count = controlPoints.size() - 1;
+    public static void approximateBezier(PathPointList controlPoints, int start, int end, PathPointList output) {
+        int count = end - start - 1;
 
         if (count < 0) {
-            return output;
+            return;
         }
 
+        int pointCount = count + 1;
+        BezierBuffers buffers = bezierBuffers.get();
+
         // "toFlatten" contains all the curves which are not yet approximated well enough.
         // We use a stack to emulate recursion without the risk of running into a stack overflow.
         // (More specifically, we iteratively and adaptively refine our curve with a
         // depth-first search (https://en.wikipedia.org/wiki/Depth-first_search)
         // over the tree resulting from the subdivisions we make.)
-        Stack<Vector2[]> toFlatten = new Stack<>();
-        Stack<Vector2[]> freeBuffers = new Stack<>();
+        ArrayList<float[]> toFlatten = buffers.toFlatten;
+        toFlatten.clear();
+
+        float[] points = buffers.obtain(pointCount);
+
+        for (int i = 0; i < pointCount; ++i) {
+            points[i * 2] = controlPoints.getX(start + i);
+            points[i * 2 + 1] = controlPoints.getY(start + i);
+        }
 
-        Vector2[] points = new Vector2[controlPoints.size()];
-        toFlatten.push(controlPoints.toArray(points));
+        toFlatten.add(points);
 
-        Vector2[] subdivisionBuffer1 = new Vector2[count + 1];
-        Vector2[] subdivisionBuffer2 = new Vector2[count * 2 + 1];
+        float[] subdivisionBuffer1 = buffers.getSubdivisionBuffer1(pointCount);
+        float[] subdivisionBuffer2 = buffers.getSubdivisionBuffer2(count * 2 + 1);
 
-        while (toFlatten.size() > 0) {
-            Vector2[] parent = toFlatten.pop();
+        while (!toFlatten.isEmpty()) {
+            float[] parent = toFlatten.remove(toFlatten.size() - 1);
 
-            if (bezierIsFlatEnough(parent)) {
+            if (bezierIsFlatEnough(parent, pointCount)) {
                 // If the control points we currently operate on are sufficiently "flat", we use
                 // an extension to De Casteljau's algorithm to obtain a piecewise-linear approximation
                 // of the bezier curve represented by our control points, consisting of the same amount
                 // of points as there are control points.
-                bezierApproximate(parent, output, subdivisionBuffer1, subdivisionBuffer2, count + 1);
-                freeBuffers.push(parent);
+                bezierApproximate(parent, output, subdivisionBuffer1, subdivisionBuffer2, pointCount);
+                buffers.free(parent);
                 continue;
             }
 
             // If we do not yet have a sufficiently "flat" (in other words, detailed) approximation we keep
             // subdividing the curve we are currently operating on.
-            Vector2[] rightChild = freeBuffers.size() > 0 ? freeBuffers.pop() : new Vector2[count + 1];
+            float[] rightChild = buffers.obtain(pointCount);
 
-            bezierSubdivide(parent, subdivisionBuffer2, rightChild, subdivisionBuffer1, count + 1);
+            bezierSubdivide(parent, subdivisionBuffer2, rightChild, subdivisionBuffer1, pointCount);
 
             // We re-use the buffer of the parent for one of the children, so that we save one allocation per iteration.
-            if (count + 1 >= 0) {
-                System.arraycopy(subdivisionBuffer2, 0, parent, 0, count + 1);
-            }
+            System.arraycopy(subdivisionBuffer2, 0, parent, 0, pointCount * 2);
 
-            toFlatten.push(rightChild);
-            toFlatten.push(parent);
+            toFlatten.add(rightChild);
+            toFlatten.add(parent);
         }
 
-        output.add(controlPoints.get(count));
-        return output;
+        output.add(controlPoints.getX(end - 1), controlPoints.getY(end - 1));
     }
 
     /**
@@ -91,23 +106,27 @@ public final class PathApproximator {
      * Creates a piecewise-linear approximation of a Catmull-Rom spline.
      *
      * @param controlPoints The anchor points of the slider.
+     * @param start The index of the first anchor point to approximate, inclusive.
+     * @param end The index of the last anchor point to approximate, exclusive.
+     * @param output The list to append the approximated points to.
      */
-    public static ArrayList<Vector2> approximateCatmull(List<Vector2> controlPoints) {
-        ArrayList<Vector2> result = new ArrayList<>();
-
-        for (int i = 0; i < controlPoints.size() - 1; ++i) {
-            Vector2 v1 = i > 0 ? controlPoints.get(i - 1) : controlPoints.get(i);
-            Vector2 v2 = controlPoints.get(i);
-            Vector2 v3 = controlPoints.get(i + 1);
-            Vector2 v4 = i < controlPoints.size() - 2 ? controlPoints.get(i + 2) : v3.add(v3).subtract(v2);
+    public static void approximateCatmull(PathPointList controlPoints, int start, int end, PathPointList output) {
+        for (int i = start; i < end - 1; ++i) {
+            int v1 = i > start ? i - 1 : i;
+            float v2X = controlPoints.getX(i);
+            float v2Y = controlPoints.getY(i);
+            float v3X = controlPoints.getX(i + 1);
+            float v3Y = controlPoints.getY(i + 1);
+            float v4X = i < end - 2 ? controlPoints.getX(i + 2) : v3X + v3X - v2X;
+            float v4Y = i < end - 2 ? controlPoints.getY(i + 2) : v3Y + v3Y - v2Y;
 
             for (int c = 0; c < catmullDetail; ++c) {
-                result.add(catmullFindPoint(v1, v2, v3, v4, (float) c / catmullDetail));
-                result.add(catmullFindPoint(v1, v2, v3, v4, (float) (c + 1) / catmullDetail));
+                catmullFindPoint(controlPoints.getX(v1), controlPoints.getY(v1), v2X, v2Y, v3X, v3Y, v4X, v4Y,
+                        (float) c / catmullDetail, output);
+                catmullFindPoint(controlPoints.getX(v1), controlPoints.getY(v1), v2X, v2Y, v3X, v3Y, v4X, v4Y,
+                        (float) (c + 1) / catmullDetail, output);
             }
         }
-
-        return result;
     }
 
     /**
@@ -116,36 +135,46 @@ public final class PathApproximator {
      * Creates a piecewise-linear approximation of a circular arc curve.
      *
      * @param controlPoints The anchor points of the slider.
+     * @param start The index of the first of the three anchor points describing the arc.
+     * @param output The list to append the approximated points to.
      */
-    public static ArrayList<Vector2> approximateCircularArc(List<Vector2> controlPoints) {
-        Vector2 a = controlPoints.get(0);
-        Vector2 b = controlPoints.get(1);
-        Vector2 c = controlPoints.get(2);
+    public static void approximateCircularArc(PathPointList controlPoints, int start, PathPointList output) {
+        float aX = controlPoints.getX(start);
+        float aY = controlPoints.getY(start);
+        float bX = controlPoints.getX(start + 1);
+        float bY = controlPoints.getY(start + 1);
+        float cX = controlPoints.getX(start + 2);
+        float cY = controlPoints.getY(start + 2);
 
         // If we have a degenerate triangle where a side-length is almost zero, then give up and fall
         // back to a more numerically stable method.
-        if (Precision.almostEqualsNumber(0, (b.y - a.y) * (c.x - a.x) - (b.x - a.x) * (c.y - a.y))) {
-            return approximateBezier(controlPoints);
+        if (Precision.almostEqualsNumber(0, (bY - aY) * (cX - aX) - (bX - aX) * (cY - aY))) {
+            approximateBezier(controlPoints, start, start + 3, output);
+            return;
         }
 
         // See: https://en.wikipedia.org/wiki/Circumscribed_circle#Cartesian_coordinates_2
-        float d = 2 * (float) (a.x * b.subtract(c).y + b.x * c.subtract(a).y + c.x * a.subtract(b).y);
-        float aSq = a.getLengthSquared();
-        float bSq = b.getLengthSquared();
-        float cSq = c.getLengthSquared();
+        float d = 2 * (aX * (bY - cY) + bX * (cY - aY) + cX * (aY - bY));
+        float aSq = aX * aX + aY * aY;
+        float bSq = bX * bX + bY * bY;
+        float cSq = cX * cX + cY * cY;
+
+        if (d == 0) {
+            throw new ArithmeticException("Division by 0");
+        }
 
-        Vector2 center = new Vector2(
-                aSq * b.subtract(c).y + bSq * c.subtract(a).y + cSq * a.subtract(b).y,
-                aSq * c.subtract(b).x + bSq * a.subtract(c).x + cSq * b.subtract(a).x
-        ).divide(d);
+        float centerX = (aSq * (bY - cY) + bSq * (cY - aY) + cSq * (aY - bY)) / d;
+        float centerY = (aSq * (cX - bX) + bSq * (aX - cX) + cSq * (bX - aX)) / d;
 
-        Vector2 dA = a.subtract(center);
-        Vector2 dC = c.subtract(center);
+        float dAX = aX - centerX;
+        float dAY = aY - centerY;
+        float dCX = cX - centerX;
+        float dCY = cY - centerY;
 
-        float radius = dA.getLength();
+        float radius = (float) Math.sqrt(dAX * dAX + dAY * dAY);
 
-        double thetaStart = Math.atan2(dA.y, dA.x);
-        double thetaEnd = Math.atan2(dC.y, dC.x);
+        double thetaStart = Math.atan2(dAY, dAX);
+        double thetaEnd = Math.atan2(dCY, dCX);
 
         while (thetaEnd < thetaStart) {
             thetaEnd += 2 * Math.PI;
@@ -156,9 +185,9 @@ public final class PathApproximator {
 
         // Decide in which direction to draw the circle, depending on which side of
         // AC B lies.
-        Vector2 orthoAtoC = c.subtract(a);
-        orthoAtoC = new Vector2(orthoAtoC.y, -orthoAtoC.x);
-        if (orthoAtoC.dot(b.subtract(a)) < 0) {
+        float orthoAtoCX = cY - aY;
+        float orthoAtoCY = -(cX - aX);
+        if (orthoAtoCX * (bX - aX) + orthoAtoCY * (bY - aY) < 0) {
             direction = -direction;
             thetaRange = 2 * Math.PI - thetaRange;
         }
@@ -172,28 +201,32 @@ public final class PathApproximator {
                 ? 2
                 : Math.max(2, (int) Math.ceil(thetaRange / (2 * Math.acos(1 - circularArcTolerance / radius))));
 
-        ArrayList<Vector2> output = new ArrayList<>();
-
         for (int i = 0; i < amountPoints; ++i) {
             double fraction = (double) i / (amountPoints - 1);
             double theta = thetaStart + direction * fraction * thetaRange;
-            Vector2 o = new Vector2((float) Math.cos(theta), (float) Math.sin(theta)).scale(radius);
-            output.add(center.add(o));
-        }
 
-        return output;
+            output.add(
+                    centerX + (float) Math.cos(theta) * radius,
+                    centerY + (float) Math.sin(theta) * radius
+            );
+        }
     }
 
     /**
      * Approximates a linear slider's path.
      * <br><br>
      * Creates a piecewise-linear approximation of a linear curve.
-     * Basically, returns the input.
+     * Basically, copies the input.
      *
      * @param controlPoints The anchor points of the slider.
+     * @param start The index of the first anchor point to approximate, inclusive.
+     * @param end The index of the last anchor point to approximate, exclusive.
+     * @param output The list to append the approximated points to.
      */
-    public static List<Vector2> approximateLinear(List<Vector2> controlPoints) {
-        return controlPoints;
+    public static void approximateLinear(PathPointList controlPoints, int start, int end, PathPointList output) {
+        for (int i = start; i < end; ++i) {
+            output.add(controlPoints.getX(i), controlPoints.getY(i));
+        }
     }
 
     /**
@@ -205,17 +238,15 @@ public final class PathApproximator {
      * checks (as the name suggests) whether our approximation is <i>locally</i> "flat". More curvy parts
      * need to have a denser approximation to be more "flat".
      *
-     * @param controlPoints The anchor points of the slider.
+     * @param controlPoints The anchor points of the slider, as interleaved coordinates.
+     * @param count The amount of anchor points.
      */
-    private static boolean bezierIsFlatEnough(Vector2[] controlPoints) {
-        for (int i = 1; i < controlPoints.length - 1; ++i) {
-            Vector2 prev = controlPoints[i - 1];
-            Vector2 current = controlPoints[i];
-            Vector2 next = controlPoints[i + 1];
-
-            Vector2 finalVec = prev.subtract(current.scale(2)).add(next);
+    private static boolean bezierIsFlatEnough(float[] controlPoints, int count) {
+        for (int i = 1; i < count - 1; ++i) {
+            float x = controlPoints[i * 2 - 2] - controlPoints[i * 2] * 2 + controlPoints[i * 2 + 2];
+            float y = controlPoints[i * 2 - 1] - controlPoints[i * 2 + 1] * 2 + controlPoints[i * 2 + 3];
 
-            if (Math.pow(finalVec.getLength(), 2) > Math.pow(bezierTolerance, 2) * 4) {
+            if (Math.pow((float) Math.sqrt(x * x + y * y), 2) > Math.pow(bezierTolerance, 2) * 4) {
                 return false;
             }
         }
@@ -229,30 +260,30 @@ public final class PathApproximator {
      * This uses <a href="https://en.wikipedia.org/wiki/De_Casteljau%27s_algorithm">De Casteljau's algorithm</a> to obtain an optimal
      * piecewise-linear approximation of the bezier curve with the same amount of points as there are control points.
      *
-     * @param controlPoints The control points describing the bezier curve to be approximated.
+     * @param controlPoints The control points describing the bezier curve to be approximated, as interleaved coordinates.
      * @param output The points representing the resulting piecewise-linear approximation.
      * @param subdivisionBuffer1 The first buffer containing the current subdivision state.
      * @param subdivisionBuffer2 The second buffer containing the current subdivision state.
      * @param count The number of control points in the original array.
      */
-    private static void bezierApproximate(Vector2[] controlPoints, ArrayList<Vector2> output,
-                                          Vector2[] subdivisionBuffer1, Vector2[] subdivisionBuffer2,
+    private static void bezierApproximate(float[] controlPoints, PathPointList output,
+                                          float[] subdivisionBuffer1, float[] subdivisionBuffer2,
                                           int count) {
         bezierSubdivide(controlPoints, subdivisionBuffer2, subdivisionBuffer1, subdivisionBuffer1, count);
 
         if (count - 1 >= 0) {
-            System.arraycopy(subdivisionBuffer1, 1, subdivisionBuffer2, count, count - 1);
+            System.arraycopy(subdivisionBuffer1, 2, subdivisionBuffer2, count * 2, (count - 1) * 2);
         }
 
-        output.add(controlPoints[0]);
+        output.add(controlPoints[0], controlPoints[1]);
 
         for (int i = 1; i < count - 1; ++i) {
-            int index = 2 * i;
-            Vector2 p = subdivisionBuffer2[index - 1]
-                    .add(subdivisionBuffer2[index].scale(2))
-                    .add(subdivisionBuffer2[index + 1])
-                    .scale(0.25f);
-            output.add(p);
+            int index = 4 * i;
+
+            output.add(
+                    (subdivisionBuffer2[index - 2] + subdivisionBuffer2[index] * 2 + subdivisionBuffer2[index + 2]) * 0.25f,
+                    (subdivisionBuffer2[index - 1] + subdivisionBuffer2[index + 1] * 2 + subdivisionBuffer2[index + 3]) * 0.25f
+            );
         }
     }
 
@@ -261,6 +292,8 @@ public final class PathApproximator {
      * control points, each describing a bezier curve equivalent to a half of the original curve.
      * Effectively this splits the original curve into 2 curves which result in the original curve
      * when pieced back together.
+     * <br><br>
+     * All buffers hold interleaved coordinates.
      *
      * @param controlPoints The anchor points of the slider.
      * @param l Parts of the slider for approximation.
@@ -268,48 +301,103 @@ public final class PathApproximator {
      * @param subdivisionBuffer Parts of the slider for approximation.
      * @param count The amount of anchor points in the slider.
      */
-    private static void bezierSubdivide(Vector2[] controlPoints, Vector2[] l, Vector2[] r,
-                                        Vector2[] subdivisionBuffer, int count) {
-        if (count >= 0) {
-            System.arraycopy(controlPoints, 0, subdivisionBuffer, 0, count);
-        }
+    private static void bezierSubdivide(float[] controlPoints, float[] l, float[] r,
+                                        float[] subdivisionBuffer, int count) {
+        System.arraycopy(controlPoints, 0, subdivisionBuffer, 0, count * 2);
 
         for (int i = 0; i < count; ++i) {
-            l[i] = subdivisionBuffer[0];
-            r[count - i - 1] = subdivisionBuffer[count - i - 1];
+            int last = (count - i - 1) * 2;
+
+            l[i * 2] = subdivisionBuffer[0];
+            l[i * 2 + 1] = subdivisionBuffer[1];
+            r[last] = subdivisionBuffer[last];
+            r[last + 1] = subdivisionBuffer[last + 1];
 
-            for (int j = 0; j < count - i - 1; ++j) {
-                subdivisionBuffer[j] = subdivisionBuffer[j].add(subdivisionBuffer[j + 1]).divide(2);
+            for (int j = 0; j < last; ++j) {
+                subdivisionBuffer[j] = (subdivisionBuffer[j] + subdivisionBuffer[j + 2]) / 2;
             }
         }
     }
 
     /**
-     * Finds a point on the spline at the position of a parameter.
+     * Finds a point on the spline at the position of a parameter and appends it to a list.
      *
-     * @param vec1 The first vector.
-     * @param vec2 The second vector.
-     * @param vec3 The third vector.
-     * @param vec4 The fourth vector.
+     * @param x1 The X coordinate of the first vector.
+     * @param y1 The Y coordinate of the first vector.
+     * @param x2 The X coordinate of the second vector.
+     * @param y2 The Y coordinate of the second vector.
+     * @param x3 The X coordinate of the third vector.
+     * @param y3 The Y coordinate of the third vector.
+     * @param x4 The X coordinate of the fourth vector.
+     * @param y4 The Y coordinate of the fourth vector.
      * @param t The parameter at which to find the point on the spline, in the range [0, 1].
+     * @param output The list to append the point to.
      */
-    private static Vector2 catmullFindPoint(Vector2 vec1, Vector2 vec2,
-                                            Vector2 vec3, Vector2 vec4, float t) {
+    private static void catmullFindPoint(float x1, float y1, float x2, float y2,
+                                         float x3, float y3, float x4, float y4,
+                                         float t, PathPointList output) {
         float t2 = (float) Math.pow(t, 2);
         float t3 = (float) Math.pow(t, 3);
 
-        return new Vector2(
+        output.add(
                 0.5f *
-                        (2 * vec2.x +
-                                (-vec1.x + vec3.x) * t +
-                                (2 * vec1.x - 5 * vec2.x + 4 * vec3.x - vec4.x) * t2 +
-                                (-vec1.x + 3 * vec2.x - 3 * vec3.x + vec4.x) * t3),
+                        (2 * x2 +
+                                (-x1 + x3) * t +
+                                (2 * x1 - 5 * x2 + 4 * x3 - x4) * t2 +
+                                (-x1 + 3 * x2 - 3 * x3 + x4) * t3),
                 0.5f *
-                        (2 * vec2.y +
-                                (-vec1.y + vec3.y) * t +
-                                (2 * vec1.y - 5 * vec2.y + 4 * vec3.y - vec4.y) * t2 +
-                                (-vec1.y + 3 * vec2.y - 3 * vec3.y + vec4.y) * t3)
+                        (2 * y2 +
+                                (-y1 + y3) * t +
+                                (2 * y1 - 5 * y2 + 4 * y3 - y4) * t2 +
+                                (-y1 + 3 * y2 - 3 * y3 + y4) * t3)
         );
     }
-}
 
+    /**
+     * Scratch storage for subdividing bezier curves, reused across approximations on the same thread.
+     */
+    private static final class BezierBuffers {
+        private final ArrayList<float[]> toFlatten = new ArrayList<>();
+        private final ArrayList<float[]> freeBuffers = new ArrayList<>();
+        private float[] subdivisionBuffer1 = new float[0];
+        private float[] subdivisionBuffer2 = new float[0];
+
+        /**
+         * Obtains a buffer that can hold a set of control points, reusing a freed one if possible.
+         *
+         * @param count The amount of control points.
+         */
+        private float[] obtain(int count) {
+            while (!freeBuffers.isEmpty()) {
+                float[] buffer = freeBuffers.remove(freeBuffers.size() - 1);
+
+                // Buffers freed by a curve with fewer control points are dropped.
+                if (buffer.length >= count * 2) {
+                    return buffer;
+                }
+            }
+
+            return new float[count * 2];
+        }
+
+        private void free(float[] buffer) {
+            freeBuffers.add(buffer);
+        }
+
+        private float[] getSubdivisionBuffer1(int count) {
+            if (subdivisionBuffer1.length < count * 2) {
+                subdivisionBuffer1 = new float[count * 2];
+            }
+
+            return subdivisionBuffer1;
+        }
+
+        private float[] getSubdivisionBuffer2(int count) {
+            if (subdivisionBuffer2.length < count * 2) {
+                subdivisionBuffer2 = new float[count * 2];
+            }
+
+            return subdivisionBuffer2;
+        }
+    }
+}
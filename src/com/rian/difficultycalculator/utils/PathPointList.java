@@ -0,0 +1,171 @@
+package com.rian.difficultycalculator.utils;
+
+import com.rian.difficultycalculator.math.Vector2;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of two-dimensional points, stored as interleaved <code>float</code> coordinates.
+ * <br><br>
+ * Used in place of <code>ArrayList&lt;Vector2&gt;</code> when approximating slider paths to avoid
+ * allocating a vector for every point.
+ */
+public final class PathPointList {
+    private float[] values;
+    private int size;
+
+    public PathPointList() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity The initial capacity of this list, in points.
+     */
+    public PathPointList(int initialCapacity) {
+        values = new float[Math.max(1, initialCapacity) * 2];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param source The source to copy from.
+     */
+    public PathPointList(PathPointList source) {
+        values = Arrays.copyOf(source.values, Math.max(2, source.size * 2));
+        size = source.size;
+    }
+
+    /**
+     * @param points The points to copy into this list.
+     */
+    public PathPointList(List<Vector2> points) {
+        this(points.size());
+
+        for (int i = 0; i < points.size(); ++i) {
+            Vector2 point = points.get(i);
+            add(point.x, point.y);
+        }
+    }
+
+    /**
+     * Gets the amount of points in this list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether this list holds no points.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the X coordinate of the point at an index.
+     *
+     * @param index The index.
+     * @return The X coordinate of the point at the index.
+     */
+    public float getX(int index) {
+        checkIndex(index);
+
+        return values[index * 2];
+    }
+
+    /**
+     * Gets the Y coordinate of the point at an index.
+     *
+     * @param index The index.
+     * @return The Y coordinate of the point at the index.
+     */
+    public float getY(int index) {
+        checkIndex(index);
+
+        return values[index * 2 + 1];
+    }
+
+    /**
+     * Gets the point at an index as a new vector.
+     *
+     * @param index The index.
+     * @return The point at the index.
+     */
+    public Vector2 get(int index) {
+        checkIndex(index);
+
+        return new Vector2(values[index * 2], values[index * 2 + 1]);
+    }
+
+    /**
+     * Sets the point at an index.
+     *
+     * @param index The index.
+     * @param x The new X coordinate.
+     * @param y The new Y coordinate.
+     */
+    public void set(int index, float x, float y) {
+        checkIndex(index);
+
+        values[index * 2] = x;
+        values[index * 2 + 1] = y;
+    }
+
+    /**
+     * Appends a point to the end of this list.
+     *
+     * @param x The X coordinate of the point.
+     * @param y The Y coordinate of the point.
+     */
+    public void add(float x, float y) {
+        ensureCapacity(size + 1);
+
+        values[size * 2] = x;
+        values[size * 2 + 1] = y;
+        ++size;
+    }
+
+    /**
+     * Removes the last point of this list.
+     */
+    public void removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+
+        --size;
+    }
+
+    /**
+     * Removes all points from an index onwards.
+     *
+     * @param size The amount of points to keep.
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", Current size: " + this.size);
+        }
+
+        this.size = size;
+    }
+
+    /**
+     * Removes all points from this list. The backing storage is kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity * 2 > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity * 2, values.length + (values.length >> 1)));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
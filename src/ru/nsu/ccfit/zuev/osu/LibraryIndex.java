@@ -0,0 +1,484 @@
+package ru.nsu.ccfit.zuev.osu;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, columnar binary index of the beatmap library.
+ * <br><br>
+ * Strings are deduplicated into a string table, and every field of <code>BeatmapInfo</code> and
+ * <code>TrackInfo</code> is stored as a fixed-width column, so any value can be located without reading
+ * the values before it. The file is memory-mapped when opened, and beatmap sets are only materialised
+ * when requested.
+ * <br><br>
+ * Layout (big-endian):
+ * <ul>
+ *     <li>Header: magic, format version, file count, string count, set count, track count, ignored folder count.</li>
+ *     <li>String table: <code>stringCount + 1</code> byte offsets, followed by UTF-8 string data.</li>
+ *     <li>Set columns: {@link #SET_INT_COLUMNS} int columns followed by the date column.</li>
+ *     <li>Track columns: {@link #TRACK_INT_COLUMNS} int (or float) columns followed by
+ *     {@link #TRACK_LONG_COLUMNS} long columns.</li>
+ *     <li>Ignored folder columns: the path column followed by the last modified column.</li>
+ * </ul>
+ * Missing strings are stored as string index <code>-1</code>.
+ * <br><br>
+ * The date of a beatmap set, the file size and last modified time of a track, and the ignored folders
+ * (folders without any importable beatmap) act as fingerprints to detect changes in the beatmap directory.
+ */
+final class LibraryIndex {
+    private static final int MAGIC = 0x4F444C49;
+
+    /**
+     * The format version of the index. Must be incremented whenever the layout changes.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+
+    // Set int columns.
+    private static final int SET_TITLE = 0;
+    private static final int SET_TITLE_UNICODE = 1;
+    private static final int SET_ARTIST = 2;
+    private static final int SET_ARTIST_UNICODE = 3;
+    private static final int SET_CREATOR = 4;
+    private static final int SET_PATH = 5;
+    private static final int SET_SOURCE = 6;
+    private static final int SET_TAGS = 7;
+    private static final int SET_MUSIC = 8;
+    private static final int SET_PREVIEW_TIME = 9;
+    private static final int SET_FIRST_TRACK = 10;
+    private static final int SET_TRACK_COUNT = 11;
+    private static final int SET_INT_COLUMNS = 12;
+
+    // Track int and float columns.
+    private static final int TRACK_FILENAME = 0;
+    private static final int TRACK_PUBLIC_NAME = 1;
+    private static final int TRACK_MODE = 2;
+    private static final int TRACK_CREATOR = 3;
+    private static final int TRACK_MD5 = 4;
+    private static final int TRACK_BACKGROUND = 5;
+    private static final int TRACK_BEATMAP_ID = 6;
+    private static final int TRACK_BEATMAP_SET_ID = 7;
+    private static final int TRACK_HIT_CIRCLE_COUNT = 8;
+    private static final int TRACK_SLIDER_COUNT = 9;
+    private static final int TRACK_SPINNER_COUNT = 10;
+    private static final int TRACK_TOTAL_HIT_OBJECT_COUNT = 11;
+    private static final int TRACK_MAX_COMBO = 12;
+    private static final int TRACK_DIFFICULTY = 13;
+    private static final int TRACK_HP_DRAIN = 14;
+    private static final int TRACK_OVERALL_DIFFICULTY = 15;
+    private static final int TRACK_APPROACH_RATE = 16;
+    private static final int TRACK_CIRCLE_SIZE = 17;
+    private static final int TRACK_BPM_MAX = 18;
+    private static final int TRACK_BPM_MIN = 19;
+    private static final int TRACK_INT_COLUMNS = 20;
+
+    // Track long columns.
+    private static final int TRACK_MUSIC_LENGTH = 0;
+    private static final int TRACK_FILE_SIZE = 1;
+    private static final int TRACK_FILE_LAST_MODIFIED = 2;
+    private static final int TRACK_LONG_COLUMNS = 3;
+
+    private final ByteBuffer buffer;
+    private final int fileCount;
+    private final int setCount;
+    private final int trackCount;
+    private final int ignoredFolderCount;
+
+    private final int stringOffsetsPosition;
+    private final int stringDataPosition;
+    private final int setColumnsPosition;
+    private final int setDatesPosition;
+    private final int trackColumnsPosition;
+    private final int trackLongColumnsPosition;
+    private final int ignoredFolderPathsPosition;
+    private final int ignoredFolderDatesPosition;
+
+    /**
+     * Strings that have been decoded so far. Shared by every materialised beatmap set.
+     */
+    private final String[] strings;
+
+    private LibraryIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        fileCount = buffer.getInt(2 * Integer.BYTES);
+        int stringCount = buffer.getInt(3 * Integer.BYTES);
+        setCount = buffer.getInt(4 * Integer.BYTES);
+        trackCount = buffer.getInt(5 * Integer.BYTES);
+        ignoredFolderCount = buffer.getInt(6 * Integer.BYTES);
+
+        if (stringCount < 0 || setCount < 0 || trackCount < 0 || ignoredFolderCount < 0) {
+            throw new IllegalStateException("Corrupted library index");
+        }
+
+        stringOffsetsPosition = HEADER_SIZE;
+        stringDataPosition = stringOffsetsPosition + (stringCount + 1) * Integer.BYTES;
+        setColumnsPosition = stringDataPosition + buffer.getInt(stringOffsetsPosition + stringCount * Integer.BYTES);
+        setDatesPosition = setColumnsPosition + SET_INT_COLUMNS * setCount * Integer.BYTES;
+        trackColumnsPosition = setDatesPosition + setCount * Long.BYTES;
+        trackLongColumnsPosition = trackColumnsPosition + TRACK_INT_COLUMNS * trackCount * Integer.BYTES;
+        ignoredFolderPathsPosition = trackLongColumnsPosition + TRACK_LONG_COLUMNS * trackCount * Long.BYTES;
+        ignoredFolderDatesPosition = ignoredFolderPathsPosition + ignoredFolderCount * Integer.BYTES;
+
+        if (ignoredFolderDatesPosition + (long) ignoredFolderCount * Long.BYTES != buffer.limit()) {
+            throw new IllegalStateException("Corrupted library index");
+        }
+
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Opens an index file.
+     *
+     * @param file The index file.
+     * @return The index, <code>null</code> if the file is not an index or was written in another format version.
+     * @throws IOException If the file could not be read.
+     * @throws IllegalStateException If the file is corrupted.
+     */
+    static LibraryIndex open(File file) throws IOException {
+        try (var raf = new RandomAccessFile(file, "r"); var channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            // The mapping stays valid after the channel is closed.
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+                return null;
+            }
+
+            return new LibraryIndex(buffer);
+        }
+    }
+
+    /**
+     * Gets the amount of files in the beatmap directory when this index was written.
+     */
+    int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Gets the amount of beatmap sets in this index.
+     */
+    int getBeatmapCount() {
+        return setCount;
+    }
+
+    /**
+     * Materialises a beatmap set of this index.
+     *
+     * @param index The index of the beatmap set.
+     * @return The beatmap set.
+     */
+    BeatmapInfo getBeatmap(int index) {
+        var info = new BeatmapInfo();
+
+        info.setTitle(getString(getSetInt(SET_TITLE, index)));
+        info.setTitleUnicode(getString(getSetInt(SET_TITLE_UNICODE, index)));
+        info.setArtist(getString(getSetInt(SET_ARTIST, index)));
+        info.setArtistUnicode(getString(getSetInt(SET_ARTIST_UNICODE, index)));
+        info.setCreator(getString(getSetInt(SET_CREATOR, index)));
+        info.setPath(getString(getSetInt(SET_PATH, index)));
+        info.setSource(getString(getSetInt(SET_SOURCE, index)));
+        info.setTags(getString(getSetInt(SET_TAGS, index)));
+        info.setMusic(getString(getSetInt(SET_MUSIC, index)));
+        info.setPreviewTime(getSetInt(SET_PREVIEW_TIME, index));
+        info.setDate(buffer.getLong(setDatesPosition + index * Long.BYTES));
+
+        int firstTrack = getSetInt(SET_FIRST_TRACK, index);
+        int trackCount = getSetInt(SET_TRACK_COUNT, index);
+
+        for (int i = firstTrack; i < firstTrack + trackCount; ++i) {
+            info.addTrack(getTrack(info, i));
+        }
+
+        return info;
+    }
+
+    /**
+     * Materialises every beatmap set of this index.
+     */
+    List<BeatmapInfo> getBeatmaps() {
+        var beatmaps = new ArrayList<BeatmapInfo>(setCount);
+
+        for (int i = 0; i < setCount; ++i) {
+            beatmaps.add(getBeatmap(i));
+        }
+
+        return beatmaps;
+    }
+
+    private TrackInfo getTrack(BeatmapInfo info, int index) {
+        var track = new TrackInfo(info);
+
+        track.setFilename(getString(getTrackInt(TRACK_FILENAME, index)));
+        track.setPublicName(getString(getTrackInt(TRACK_PUBLIC_NAME, index)));
+        track.setMode(getString(getTrackInt(TRACK_MODE, index)));
+        track.setCreator(getString(getTrackInt(TRACK_CREATOR, index)));
+        track.setMD5(getString(getTrackInt(TRACK_MD5, index)));
+        track.setBackground(getString(getTrackInt(TRACK_BACKGROUND, index)));
+        track.setBeatmapID(getTrackInt(TRACK_BEATMAP_ID, index));
+        track.setBeatmapSetID(getTrackInt(TRACK_BEATMAP_SET_ID, index));
+        track.setHitCircleCount(getTrackInt(TRACK_HIT_CIRCLE_COUNT, index));
+        track.setSliderCount(getTrackInt(TRACK_SLIDER_COUNT, index));
+        track.setSpinnerCount(getTrackInt(TRACK_SPINNER_COUNT, index));
+        track.setTotalHitObjectCount(getTrackInt(TRACK_TOTAL_HIT_OBJECT_COUNT, index));
+        track.setMaxCombo(getTrackInt(TRACK_MAX_COMBO, index));
+        track.setDifficulty(getTrackFloat(TRACK_DIFFICULTY, index));
+        track.setHpDrain(getTrackFloat(TRACK_HP_DRAIN, index));
+        track.setOverallDifficulty(getTrackFloat(TRACK_OVERALL_DIFFICULTY, index));
+        track.setApproachRate(getTrackFloat(TRACK_APPROACH_RATE, index));
+        track.setCircleSize(getTrackFloat(TRACK_CIRCLE_SIZE, index));
+        track.setBpmMax(getTrackFloat(TRACK_BPM_MAX, index));
+        track.setBpmMin(getTrackFloat(TRACK_BPM_MIN, index));
+        track.setMusicLength(getTrackLong(TRACK_MUSIC_LENGTH, index));
+        track.setFileSize(getTrackLong(TRACK_FILE_SIZE, index));
+        track.setFileLastModified(getTrackLong(TRACK_FILE_LAST_MODIFIED, index));
+
+        return track;
+    }
+
+    /**
+     * Gets the folders without any importable beatmap, mapped to their last modified time.
+     */
+    Map<String, Long> getIgnoredFolders() {
+        var folders = new HashMap<String, Long>(ignoredFolderCount);
+
+        for (int i = 0; i < ignoredFolderCount; ++i) {
+            folders.put(
+                    getString(buffer.getInt(ignoredFolderPathsPosition + i * Integer.BYTES)),
+                    buffer.getLong(ignoredFolderDatesPosition + i * Long.BYTES)
+            );
+        }
+
+        return folders;
+    }
+
+    private int getSetInt(int column, int index) {
+        return buffer.getInt(setColumnsPosition + (column * setCount + index) * Integer.BYTES);
+    }
+
+    private int getTrackInt(int column, int index) {
+        return buffer.getInt(trackColumnsPosition + (column * trackCount + index) * Integer.BYTES);
+    }
+
+    private float getTrackFloat(int column, int index) {
+        return buffer.getFloat(trackColumnsPosition + (column * trackCount + index) * Integer.BYTES);
+    }
+
+    private long getTrackLong(int column, int index) {
+        return buffer.getLong(trackLongColumnsPosition + (column * trackCount + index) * Long.BYTES);
+    }
+
+    private synchronized String getString(int index) {
+        if (index < 0) {
+            return null;
+        }
+
+        if (strings[index] == null) {
+            int start = buffer.getInt(stringOffsetsPosition + index * Integer.BYTES);
+            int end = buffer.getInt(stringOffsetsPosition + (index + 1) * Integer.BYTES);
+            var bytes = new byte[end - start];
+
+            var view = buffer.duplicate();
+            view.position(stringDataPosition + start);
+            view.get(bytes);
+
+            strings[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return strings[index];
+    }
+
+    /**
+     * Writes a beatmap library into an index file.
+     * <br><br>
+     * The index is written into a temporary file first, so that an interrupted write does not
+     * corrupt an existing index.
+     *
+     * @param file The index file.
+     * @param library The beatmap library.
+     * @param ignoredFolders The folders without any importable beatmap, mapped to their last modified time.
+     * @param fileCount The amount of files in the beatmap directory.
+     * @throws IOException If the file could not be written.
+     */
+    static void write(File file, List<BeatmapInfo> library, Map<String, Long> ignoredFolders,
+                      int fileCount) throws IOException {
+        var stringPool = new StringPool();
+        var tracks = new ArrayList<TrackInfo>();
+
+        int setCount = library.size();
+        var setColumns = new int[SET_INT_COLUMNS][setCount];
+
+        for (int i = 0; i < setCount; ++i) {
+            var info = library.get(i);
+
+            setColumns[SET_TITLE][i] = stringPool.add(info.getTitle());
+            setColumns[SET_TITLE_UNICODE][i] = stringPool.add(info.getTitleUnicode());
+            setColumns[SET_ARTIST][i] = stringPool.add(info.getArtist());
+            setColumns[SET_ARTIST_UNICODE][i] = stringPool.add(info.getArtistUnicode());
+            setColumns[SET_CREATOR][i] = stringPool.add(info.getCreator());
+            setColumns[SET_PATH][i] = stringPool.add(info.getPath());
+            setColumns[SET_SOURCE][i] = stringPool.add(info.getSource());
+            setColumns[SET_TAGS][i] = stringPool.add(info.getTags());
+            setColumns[SET_MUSIC][i] = stringPool.add(info.getMusic());
+            setColumns[SET_PREVIEW_TIME][i] = info.getPreviewTime();
+            setColumns[SET_FIRST_TRACK][i] = tracks.size();
+            setColumns[SET_TRACK_COUNT][i] = info.getCount();
+
+            tracks.addAll(info.getTracks());
+        }
+
+        int trackCount = tracks.size();
+        var trackColumns = new int[TRACK_INT_COLUMNS][trackCount];
+        var trackLongColumns = new long[TRACK_LONG_COLUMNS][trackCount];
+
+        for (int i = 0; i < trackCount; ++i) {
+            var track = tracks.get(i);
+
+            trackColumns[TRACK_FILENAME][i] = stringPool.add(track.getFilename());
+            trackColumns[TRACK_PUBLIC_NAME][i] = stringPool.add(track.getPublicName());
+            trackColumns[TRACK_MODE][i] = stringPool.add(track.getMode());
+            trackColumns[TRACK_CREATOR][i] = stringPool.add(track.getCreator());
+            trackColumns[TRACK_MD5][i] = stringPool.add(track.getMD5());
+            trackColumns[TRACK_BACKGROUND][i] = stringPool.add(track.getBackground());
+            trackColumns[TRACK_BEATMAP_ID][i] = track.getBeatmapID();
+            trackColumns[TRACK_BEATMAP_SET_ID][i] = track.getBeatmapSetID();
+            trackColumns[TRACK_HIT_CIRCLE_COUNT][i] = track.getHitCircleCount();
+            trackColumns[TRACK_SLIDER_COUNT][i] = track.getSliderCount();
+            trackColumns[TRACK_SPINNER_COUNT][i] = track.getSpinnerCount();
+            trackColumns[TRACK_TOTAL_HIT_OBJECT_COUNT][i] = track.getTotalHitObjectCount();
+            trackColumns[TRACK_MAX_COMBO][i] = track.getMaxCombo();
+            trackColumns[TRACK_DIFFICULTY][i] = Float.floatToIntBits(track.getDifficulty());
+            trackColumns[TRACK_HP_DRAIN][i] = Float.floatToIntBits(track.getHpDrain());
+            trackColumns[TRACK_OVERALL_DIFFICULTY][i] = Float.floatToIntBits(track.getOverallDifficulty());
+            trackColumns[TRACK_APPROACH_RATE][i] = Float.floatToIntBits(track.getApproachRate());
+            trackColumns[TRACK_CIRCLE_SIZE][i] = Float.floatToIntBits(track.getCircleSize());
+            trackColumns[TRACK_BPM_MAX][i] = Float.floatToIntBits(track.getBpmMax());
+            trackColumns[TRACK_BPM_MIN][i] = Float.floatToIntBits(track.getBpmMin());
+
+            trackLongColumns[TRACK_MUSIC_LENGTH][i] = track.getMusicLength();
+            trackLongColumns[TRACK_FILE_SIZE][i] = track.getFileSize();
+            trackLongColumns[TRACK_FILE_LAST_MODIFIED][i] = track.getFileLastModified();
+        }
+
+        int ignoredFolderCount = ignoredFolders.size();
+        var ignoredFolderPaths = new int[ignoredFolderCount];
+        var ignoredFolderDates = new long[ignoredFolderCount];
+        int ignoredFolderIndex = 0;
+
+        for (var entry : ignoredFolders.entrySet()) {
+            ignoredFolderPaths[ignoredFolderIndex] = stringPool.add(entry.getKey());
+            ignoredFolderDates[ignoredFolderIndex] = entry.getValue();
+            ++ignoredFolderIndex;
+        }
+
+        var tempFile = new File(file.getPath() + ".tmp");
+
+        try (var ostream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            ostream.writeInt(MAGIC);
+            ostream.writeInt(FORMAT_VERSION);
+            ostream.writeInt(fileCount);
+            ostream.writeInt(stringPool.strings.size());
+            ostream.writeInt(setCount);
+            ostream.writeInt(trackCount);
+            ostream.writeInt(ignoredFolderCount);
+
+            stringPool.write(ostream);
+
+            for (var column : setColumns) {
+                for (int value : column) {
+                    ostream.writeInt(value);
+                }
+            }
+
+            for (var info : library) {
+                ostream.writeLong(info.getDate());
+            }
+
+            for (var column : trackColumns) {
+                for (int value : column) {
+                    ostream.writeInt(value);
+                }
+            }
+
+            for (var column : trackLongColumns) {
+                for (long value : column) {
+                    ostream.writeLong(value);
+                }
+            }
+
+            for (int value : ignoredFolderPaths) {
+                ostream.writeInt(value);
+            }
+
+            for (long value : ignoredFolderDates) {
+                ostream.writeLong(value);
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException("Unable to replace " + file.getPath());
+        }
+    }
+
+    /**
+     * A pool of unique strings used while writing an index.
+     */
+    private static final class StringPool {
+        private final HashMap<String, Integer> indices = new HashMap<>();
+        private final ArrayList<byte[]> strings = new ArrayList<>();
+
+        /**
+         * Adds a string to this pool.
+         *
+         * @param string The string. Can be <code>null</code>.
+         * @return The index of the string in the string table, <code>-1</code> if the string is <code>null</code>.
+         */
+        private int add(String string) {
+            if (string == null) {
+                return -1;
+            }
+
+            var index = indices.get(string);
+
+            if (index == null) {
+                index = strings.size();
+                indices.put(string, index);
+                strings.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+
+            return index;
+        }
+
+        private void write(DataOutputStream ostream) throws IOException {
+            int offset = 0;
+            ostream.writeInt(offset);
+
+            for (var bytes : strings) {
+                offset += bytes.length;
+                ostream.writeInt(offset);
+            }
+
+            for (var bytes : strings) {
+                ostream.write(bytes);
+            }
+        }
+    }
+}
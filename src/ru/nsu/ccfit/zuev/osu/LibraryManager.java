@@ -1,40 +1,52 @@
 package ru.nsu.ccfit.zuev.osu;
 
-import android.os.Build;
 import com.reco1l.legacy.engine.VideoTexture;
 import org.anddev.andengine.util.Debug;
 import org.jetbrains.annotations.Nullable;
 import ru.nsu.ccfit.zuev.osu.beatmap.BeatmapData;
 import ru.nsu.ccfit.zuev.osu.beatmap.parser.BeatmapParser;
+import ru.nsu.ccfit.zuev.osu.game.GameHelper;
+import ru.nsu.ccfit.zuev.osu.helper.BeatmapDifficultyCalculator;
 import ru.nsu.ccfit.zuev.osu.helper.FileUtils;
+import ru.nsu.ccfit.zuev.osu.helper.SliderPathCache;
 import ru.nsu.ccfit.zuev.osu.helper.StringTable;
+import ru.nsu.ccfit.zuev.osu.menu.SongMenu;
+import ru.nsu.ccfit.zuev.osu.scoring.ReplayIndex;
 import ru.nsu.ccfit.zuev.osuplus.R;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public enum LibraryManager {
     INSTANCE;
-    private static final String VERSION = "library4.1";
+    private static final String VERSION = "library5";
+    private static final String LEGACY_VERSION = "library4.1";
     private static final List<BeatmapInfo> library = Collections.synchronizedList(new ArrayList<>());
+    // Folders without any importable beatmap, mapped to their last modified time.
+    private static final Map<String, Long> ignoredFolders = new ConcurrentHashMap<>();
     private Integer fileCount = 0;
     private int currentIndex = 0;
 
     private static boolean isCaching = true;
+    private static volatile LibraryCacheManager activeManager;
+    // Calculates the star ratings that library scans leave out, one beatmap at a time.
+    private static final ExecutorService difficultyExecutor = Executors.newSingleThreadExecutor();
 
     public File getLibraryCacheFile() {
         return new File(GlobalManager.getInstance().getMainActivity().getFilesDir(), String.format("library.%s.dat", VERSION));
     }
 
-    @SuppressWarnings("unchecked")
     public boolean loadLibraryCache(boolean forceUpdate) {
         synchronized (library) {
             library.clear();
         }
+        ignoredFolders.clear();
 
         ToastLogger.addToLog("Loading library...");
         if (!FileUtils.canUseSD()) {
@@ -52,6 +64,15 @@ public enum LibraryManager {
             createNoMediaFile(replayDir);
         }
 
+        // Only replays that changed since the last start are opened.
+        ReplayIndex.getInstance().refresh();
+
+        // The Java-serialized library cache has been superseded by LibraryIndex.
+        final File legacyLib = new File(GlobalManager.getInstance().getMainActivity().getFilesDir(), String.format("library.%s.dat", LEGACY_VERSION));
+        if (legacyLib.exists() && legacyLib.delete()) {
+            Debug.i("LibraryManager: deleted legacy library cache file");
+        }
+
         final File lib = getLibraryCacheFile();
         final File dir = new File(Config.getBeatmapPath());
         if (!dir.exists()) {
@@ -67,32 +88,31 @@ public enum LibraryManager {
             Debug.e("LibraryManager: " + e.getMessage(), e);
         }
 
-        try (final ObjectInputStream istream = new ObjectInputStream(new FileInputStream(lib))) {
-            Object obj = istream.readObject();
-            if (obj instanceof String) {
-                if (!obj.equals(VERSION)) {
-                    return false;
-                }
+        try {
+            final LibraryIndex index = LibraryIndex.open(lib);
 
-                obj = istream.readObject();
-                if (obj instanceof Integer) {
-                    fileCount = (Integer) obj;
+            if (index != null) {
+                fileCount = index.getFileCount();
 
-                    obj = istream.readObject();
-                    if (obj instanceof Collection<?>) {
-                        synchronized (library) {
-                            library.addAll((Collection<? extends BeatmapInfo>) obj);
-                        }
+                final List<BeatmapInfo> beatmaps = index.getBeatmaps();
+                // Star ratings may have been calculated after the beatmaps were scanned.
+                for (final BeatmapInfo info : beatmaps) {
+                    sortTracks(info);
+                }
 
-                        ToastLogger.addToLog("Library loaded");
-                        if (forceUpdate) {
-                            checkLibrary();
-                        }
-                        return true;
-                    }
+                synchronized (library) {
+                    library.addAll(beatmaps);
                 }
+                ignoredFolders.putAll(index.getIgnoredFolders());
+
+                ToastLogger.addToLog("Library loaded");
+                if (forceUpdate) {
+                    checkLibrary();
+                }
+                calculateMissingDifficulties();
+                return true;
             }
-        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+        } catch (final IOException | RuntimeException e) {
             Debug.e("LibraryManager: " + e.getMessage(), e);
         }
         ToastLogger.addToLog("Cannot load library!");
@@ -102,15 +122,65 @@ public enum LibraryManager {
     private void checkLibrary() {
         final File dir = new File(Config.getBeatmapPath());
         final File[] files = FileUtils.listFiles(dir);
-        if (files.length == fileCount) {
+
+        final HashMap<String, BeatmapInfo> cachedBeatmaps = new HashMap<>();
+        synchronized (library) {
+            for (final BeatmapInfo info : library) {
+                cachedBeatmaps.put(info.getPath(), info);
+            }
+        }
+
+        // Only folders that were added, removed, or changed since the last scan are touched.
+        final HashSet<String> existingPaths = new HashSet<>();
+        final HashSet<String> stalePaths = new HashSet<>();
+        final List<File> changedFolders = new ArrayList<>();
+
+        for (final File file : files) {
+            if (!file.isDirectory()) {
+                continue;
+            }
+
+            final String path = file.getPath();
+            existingPaths.add(path);
+
+            final BeatmapInfo info = cachedBeatmaps.get(path);
+            final boolean changed = info != null ? isFolderChanged(info, file) : isIgnoredFolderChanged(file);
+
+            if (changed) {
+                stalePaths.add(path);
+                changedFolders.add(file);
+            }
+        }
+
+        for (final String path : cachedBeatmaps.keySet()) {
+            if (!existingPaths.contains(path)) {
+                stalePaths.add(path);
+                SliderPathCache.getInstance().delete(path);
+            }
+        }
+
+        ignoredFolders.keySet().retainAll(existingPaths);
+        this.fileCount = files.length;
+
+        if (stalePaths.isEmpty()) {
             return;
         }
 
         ToastLogger.showText(StringTable.get(R.string.message_lib_update), true);
 
-        final int fileCount = files.length;
-        LibraryCacheManager manager = new LibraryCacheManager(fileCount, files);
-        manager.addUncachedBeatmaps();
+        synchronized (library) {
+            final Iterator<BeatmapInfo> iterator = library.iterator();
+
+            while (iterator.hasNext()) {
+                if (stalePaths.contains(iterator.next().getPath())) {
+                    iterator.remove();
+                }
+            }
+        }
+        ignoredFolders.keySet().removeAll(stalePaths);
+
+        LibraryCacheManager manager = new LibraryCacheManager(changedFolders.size(), changedFolders.toArray(new File[0]));
+        manager.start();
 
         while (isCaching) {
             try {
@@ -122,13 +192,50 @@ public enum LibraryManager {
         }
         isCaching = true;
 
-        this.fileCount = files.length;
         saveToCache();
     }
 
+    /**
+     * Checks whether a beatmap folder has changed since it was scanned.
+     *
+     * @param info The <code>BeatmapInfo</code> of the folder when it was scanned.
+     * @param folder The folder.
+     * @return Whether the folder has changed.
+     */
+    private static boolean isFolderChanged(final BeatmapInfo info, final File folder) {
+        // Adding, removing, or renaming files changes the folder's last modified time.
+        if (folder.lastModified() != info.getDate()) {
+            return true;
+        }
+
+        // Editing a file in place does not, so each beatmap file has to be checked as well.
+        for (final TrackInfo track : info.getTracks()) {
+            final File file = new File(track.getFilename());
+
+            if (file.length() != track.getFileSize() || file.lastModified() != track.getFileLastModified()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether a folder that is not in the library has changed since it was scanned.
+     *
+     * @param folder The folder.
+     * @return Whether the folder has changed, or has never been scanned.
+     */
+    private static boolean isIgnoredFolderChanged(final File folder) {
+        final Long lastModified = ignoredFolders.get(folder.getPath());
+
+        return lastModified == null || lastModified != folder.lastModified();
+    }
+
     public synchronized void scanLibrary() {
         ToastLogger.addToLog("Caching library...");
         library.clear();
+        ignoredFolders.clear();
 
         final File dir = new File(Config.getBeatmapPath());
         // Creating Osu directory if it doesn't exist
@@ -166,6 +273,7 @@ public enum LibraryManager {
         ToastLogger.showText(
                 StringTable.format(R.string.message_lib_complete, manager.getTotalMaps()),
                 true);
+        calculateMissingDifficulties();
     }
 
     private void createNoMediaFile(File dir) {
@@ -203,6 +311,7 @@ public enum LibraryManager {
     public void deleteMap(final BeatmapInfo info) {
         final File dir = new File(info.getPath());
         deleteDir(dir);
+        SliderPathCache.getInstance().delete(info.getPath());
 
         synchronized (library) {
             library.remove(info);
@@ -213,15 +322,16 @@ public enum LibraryManager {
         if (library.isEmpty()) {
             return;
         }
-        final File lib = getLibraryCacheFile();
-        try (final ObjectOutputStream ostream = new ObjectOutputStream(
-                new FileOutputStream(lib))) {
-            lib.createNewFile();
-            ostream.writeObject(VERSION);
-            ostream.writeObject(fileCount);
+        writeLibraryIndex();
+        shuffleLibrary();
+        currentIndex = 0;
+    }
 
+    private void writeLibraryIndex() {
+        final File lib = getLibraryCacheFile();
+        try {
             synchronized (library) {
-                ostream.writeObject(library);
+                LibraryIndex.write(lib, library, ignoredFolders, fileCount);
             }
         } catch (final IOException e) {
             ToastLogger.showText(
@@ -229,8 +339,6 @@ public enum LibraryManager {
                     false);
             Debug.e("LibraryManager: " + e.getMessage(), e);
         }
-        shuffleLibrary();
-        currentIndex = 0;
     }
 
     public void clearCache() {
@@ -276,8 +384,11 @@ public enum LibraryManager {
             final TrackInfo track = new TrackInfo(info);
             track.setFilename(file.getPath());
             track.setCreator("unknown");
+            track.setFileSize(file.length());
+            track.setFileLastModified(file.lastModified());
 
-            final BeatmapData data = parser.parse(true);
+            // Hit objects are only aggregated here, as materialising them is only needed for star rating.
+            final BeatmapData data = parser.parseSummary();
             if (data == null || !data.populateMetadata(info) || !data.populateMetadata(track)) {
                 if (Config.isDeleteUnimportedBeatmaps()) {
                     file.delete();
@@ -297,6 +408,7 @@ public enum LibraryManager {
                     e.printStackTrace();
                 }
             }
+            populateDifficulty(track);
             info.addTrack(track);
         }
 
@@ -304,9 +416,110 @@ public enum LibraryManager {
             deleteDir(dir);
         }
 
+        sortTracks(info);
+    }
+
+    private static void sortTracks(final BeatmapInfo info) {
         Collections.sort(info.getTracks(), (object1, object2) -> Float.compare(object1.getDifficulty(), object2.getDifficulty()));
     }
 
+    /**
+     * Populates the star rating of a <code>TrackInfo</code> from the difficulty cache.
+     * <br><br>
+     * Calculating a star rating requires the hit objects of the beatmap to be materialised, which scans avoid.
+     * If the star rating is not cached, it is left as <code>TrackInfo.DIFFICULTY_UNKNOWN</code> and calculated
+     * by <code>calculateMissingDifficulties</code> once the scan has finished.
+     *
+     * @param track The <code>TrackInfo</code> to populate.
+     */
+    private static void populateDifficulty(final TrackInfo track) {
+        var attributes = BeatmapDifficultyCalculator.getCachedDifficulty(track.getMD5());
+
+        track.setDifficulty(attributes != null ? GameHelper.Round(attributes.starRating, 2) : TrackInfo.DIFFICULTY_UNKNOWN);
+    }
+
+    /**
+     * Calculates the star rating of every track in the library whose star rating is not known yet
+     * in the background, and saves the library and notifies the song menu once done.
+     * <br><br>
+     * Beatmaps are parsed one at a time, so that at most one beatmap is held in memory. Tracks that cannot be
+     * parsed are given a star rating of 0, so that they are not parsed again on every library load. Their star
+     * rating is still calculated when they are selected, and they are scanned again once their file changes.
+     */
+    private void calculateMissingDifficulties() {
+        difficultyExecutor.execute(() -> {
+            final List<TrackInfo> tracks = new ArrayList<>();
+
+            synchronized (library) {
+                for (final BeatmapInfo info : library) {
+                    for (final TrackInfo track : info.getTracks()) {
+                        if (track.getDifficulty() == TrackInfo.DIFFICULTY_UNKNOWN) {
+                            tracks.add(track);
+                        }
+                    }
+                }
+            }
+
+            if (tracks.isEmpty()) {
+                return;
+            }
+
+            int calculated = 0;
+            int failed = 0;
+
+            for (final TrackInfo track : tracks) {
+                // The track may have been selected, and thus calculated, in the meantime.
+                if (track.getDifficulty() != TrackInfo.DIFFICULTY_UNKNOWN) {
+                    continue;
+                }
+
+                try {
+                    var attributes = BeatmapDifficultyCalculator.getCachedDifficulty(track.getMD5());
+
+                    if (attributes == null) {
+                        final BeatmapParser parser = new BeatmapParser(track.getFilename());
+                        parser.setPersistSliderPaths(false);
+
+                        final BeatmapData data = parser.parse(true);
+
+                        if (data == null || data.hitObjects.getObjects().isEmpty()) {
+                            track.setDifficulty(0);
+                            ++failed;
+                            continue;
+                        }
+
+                        attributes = BeatmapDifficultyCalculator.calculateDifficulty(data);
+                    }
+
+                    track.setDifficulty(GameHelper.Round(attributes.starRating, 2));
+                    ++calculated;
+                } catch (final RuntimeException e) {
+                    Debug.e("LibraryManager: " + e.getMessage(), e);
+                    track.setDifficulty(0);
+                    ++failed;
+                }
+            }
+
+            Debug.i("LibraryManager: calculated " + calculated + " of " + tracks.size() + " missing star ratings, " +
+                    failed + " failed");
+
+            if (calculated == 0 && failed == 0) {
+                return;
+            }
+
+            // Tracks are sorted by star rating when the library is loaded next, as the song menu may be
+            // iterating them right now.
+            writeLibraryIndex();
+
+            final MainActivity activity = GlobalManager.getInstance().getMainActivity();
+            final SongMenu songMenu = GlobalManager.getInstance().getSongMenu();
+
+            if (activity != null && songMenu != null) {
+                activity.runOnUpdateThread(songMenu::onStarRatingsChanged);
+            }
+        });
+    }
+
     public List<BeatmapInfo> getLibrary() {
         synchronized (library) {
             return library;
@@ -432,184 +645,134 @@ public enum LibraryManager {
         saveToCache();
     }
 
+    /**
+     * Cancels the library scan that is currently running, if any.
+     * <br><br>
+     * Folders that have already been scanned are kept, so that the next library check only has to
+     * scan the remaining folders.
+     */
+    public void cancelScanning() {
+        final LibraryCacheManager manager = activeManager;
+
+        if (manager != null) {
+            manager.cancel();
+        }
+    }
+
     private static final class LibraryCacheManager {
         private final int fileCount;
-        private final ExecutorService executors;
         private final List<File> files;
-        private volatile int fileCached = 0;
-        private volatile int totalMaps = 0;
+        private final AtomicInteger fileCached = new AtomicInteger();
+        private final AtomicInteger totalMaps = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        // Each folder writes only its own slot, so results need no locking and keep the folder order.
+        private final BeatmapInfo[] results;
 
         private LibraryCacheManager(final int fileCount, final File[] files) {
             this.fileCount = fileCount;
             this.files = Arrays.asList(files);
-            this.executors = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            this.results = new BeatmapInfo[files.length];
         }
 
         public void start() {
-            int optimalChunkSize = (int) Math.ceil((double) fileCount / Runtime.getRuntime().availableProcessors());
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                // Split list into chunks of N elements per M sublist, N being number of files and M being number of processors
-                List<List<File>> sub_files = new ArrayList<>(files.stream()
-                        .collect(Collectors.groupingBy(s -> files.indexOf(s) / optimalChunkSize))
-                        .values());
-                sub_files.parallelStream().forEach(this::submitToExecutor);
-            } else {
-                // Android versions below N don't support streams, so we have to do it the old-fashioned way
-                for (int i = 0; i < files.size(); i += optimalChunkSize) {
-                    submitToExecutor(files.subList(i, Math.min(i + optimalChunkSize, files.size())));
-                }
-            }
+            // Folders are split down to single folders, so idle workers can steal from one that is stuck in a huge folder.
+            final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            activeManager = this;
 
-            executors.shutdown();
             try {
-                if (executors.awaitTermination(1, TimeUnit.HOURS)) {
-                    Debug.i("Library Cache: " + totalMaps + " maps loaded");
-                    isCaching = false;
-
-                    synchronized (LibraryManager.class) {
-                        LibraryManager.class.notify();
-                    }
-                } else {
-                    Debug.e("Library Cache: Timeout");
-                }
-            } catch (InterruptedException e) {
-                Debug.e(e);
+                pool.invoke(new ScanTask(0, files.size()));
+            } finally {
+                pool.shutdown();
+                activeManager = null;
             }
-        }
 
-        public void addUncachedBeatmaps() {
-            int optimalChunkSize = (int) Math.ceil((double) fileCount / Runtime.getRuntime().availableProcessors());
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                List<List<File>> sub_files = new ArrayList<>(files.stream()
-                        .collect(Collectors.groupingBy(s -> files.indexOf(s) / optimalChunkSize))
-                        .values());
-                sub_files.parallelStream().forEach(this::submitToExecutorCheckCached);
-            } else {
-                for (int i = 0; i < files.size(); i += optimalChunkSize) {
-                    submitToExecutorCheckCached(files.subList(i, Math.min(i + optimalChunkSize, files.size())));
+            final List<BeatmapInfo> scanned = new ArrayList<>(results.length);
+            for (final BeatmapInfo info : results) {
+                if (info != null) {
+                    scanned.add(info);
                 }
             }
 
-            executors.shutdown();
-            try {
-                if (executors.awaitTermination(1, TimeUnit.HOURS)) {
-                    Debug.i("Library Cache Updated");
-                    isCaching = false;
-
-                    synchronized (LibraryManager.class) {
-                        LibraryManager.class.notify();
-                    }
-                } else {
-                    Debug.e("Library Cache: Timeout");
-                }
-            } catch (InterruptedException e) {
-                Debug.e(e);
-            }
-
-            // Remove all beatmaps that are no longer in the library
             synchronized (library) {
-                var iterator = library.iterator();
+                library.addAll(scanned);
+            }
 
-                while (iterator.hasNext()) {
-                    var beatmap = iterator.next();
+            Debug.i("Library Cache: " + totalMaps.get() + " maps loaded" + (cancelled ? " (cancelled)" : ""));
+            isCaching = false;
 
-                    if (!files.contains(new File(beatmap.getPath()))) {
-                        iterator.remove();
-                    }
-                }
+            synchronized (LibraryManager.class) {
+                LibraryManager.class.notify();
             }
         }
 
-        private void submitToExecutorCheckCached(List<File> files) {
-            executors.submit(() -> {
-                for (final File file : files) {
-                    GlobalManager.getInstance().setLoadingProgress(50 + 50 * fileCached / fileCount);
-                    ToastLogger.setPercentage(fileCached * 100f / fileCount);
-
-                    synchronized (this) {
-                        fileCached++;
-                    }
+        public void cancel() {
+            cancelled = true;
+        }
 
-                    if (!file.isDirectory()) {
-                        continue;
-                    }
+        private void scan(final int index) {
+            final File file = files.get(index);
+            final int cached = fileCached.getAndIncrement();
 
-                    final BeatmapInfo info = new BeatmapInfo();
-                    info.setPath(file.getPath());
-
-                    synchronized (library) {
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                            if (library.stream().anyMatch(i -> i.getPath().equals(info.getPath()))) {
-                                continue;
-                            }
-                        } else {
-                            boolean found = false;
-                            for (final BeatmapInfo i : library) {
-                                if (i.getPath().equals(info.getPath())) {
-                                    found = true;
-                                    break;
-                                }
-                            }
-
-                            if (found) {
-                                continue;
-                            }
-                        }
-                    }
+            GlobalManager.getInstance().setLoadingProgress(50 + 50 * cached / fileCount);
+            ToastLogger.setPercentage(cached * 100f / fileCount);
 
-                    GlobalManager.getInstance().setInfo("Loading " + file.getName() + " ...");
+            if (!file.isDirectory()) {
+                return;
+            }
 
-                    scanFolder(info);
-                    if (info.getCount() < 1) {
-                        continue;
-                    }
+            GlobalManager.getInstance().setInfo("Loading " + file.getName() + "...");
+            final BeatmapInfo info = new BeatmapInfo();
+            info.setPath(file.getPath());
 
-                    fillEmptyFields(info);
+            try {
+                scanFolder(info);
+            } catch (Exception e) {
+                // A broken folder must not abort the scan of the others.
+                Debug.e("Library Cache: " + e.getMessage(), e);
+                return;
+            }
 
-                    synchronized (library) {
-                        library.add(info);
-                    }
-                }
-            });
-        }
+            if (info.getCount() < 1) {
+                ignoredFolders.put(info.getPath(), info.getDate());
+                return;
+            }
 
-        private void submitToExecutor(List<File> files) {
-            executors.submit(() -> {
-                for (File file : files) {
-                    GlobalManager.getInstance().setLoadingProgress(50 + 50 * fileCached / fileCount);
-                    ToastLogger.setPercentage(fileCached * 100f / fileCount);
+            fillEmptyFields(info);
 
-                    synchronized (this) {
-                        fileCached++;
-                    }
+            results[index] = info;
+            totalMaps.addAndGet(info.getCount());
+        }
 
-                    if (!file.isDirectory()) {
-                        continue;
-                    }
+        public int getTotalMaps() {
+            return totalMaps.get();
+        }
 
-                    GlobalManager.getInstance().setInfo("Loading " + file.getName() + "...");
-                    final BeatmapInfo info = new BeatmapInfo();
-                    info.setPath(file.getPath());
-                    scanFolder(info);
-                    if (info.getCount() < 1) {
-                        continue;
-                    }
+        private final class ScanTask extends RecursiveAction {
+            private final int start;
+            private final int end;
 
-                    fillEmptyFields(info);
+            private ScanTask(final int start, final int end) {
+                this.start = start;
+                this.end = end;
+            }
 
-                    synchronized (library) {
-                        library.add(info);
-                    }
+            @Override
+            protected void compute() {
+                if (cancelled) {
+                    return;
+                }
 
-                    synchronized (this) {
-                        totalMaps += info.getCount();
-                    }
+                if (end - start == 1) {
+                    scan(start);
+                    return;
                 }
-            });
-        }
 
-        public synchronized int getTotalMaps() {
-            return totalMaps;
+                if (end - start > 1) {
+                    final int middle = (start + end) >>> 1;
+                    invokeAll(new ScanTask(start, middle), new ScanTask(middle, end));
+                }
+            }
         }
     }
 }
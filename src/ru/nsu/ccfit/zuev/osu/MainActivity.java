@@ -85,12 +85,14 @@ import ru.nsu.ccfit.zuev.osu.game.SpritePool;
 import ru.nsu.ccfit.zuev.osu.helper.BeatmapDifficultyCalculator;
 import ru.nsu.ccfit.zuev.osu.helper.FileUtils;
 import ru.nsu.ccfit.zuev.osu.helper.InputManager;
+import ru.nsu.ccfit.zuev.osu.helper.SliderPathCache;
 import ru.nsu.ccfit.zuev.osu.helper.StringTable;
 import ru.nsu.ccfit.zuev.osu.menu.FilterMenu;
 import ru.nsu.ccfit.zuev.osu.menu.LoadingScreen;
 import ru.nsu.ccfit.zuev.osu.menu.ModMenu;
 import ru.nsu.ccfit.zuev.osu.menu.SplashScene;
 import ru.nsu.ccfit.zuev.osu.online.OnlineManager;
+import ru.nsu.ccfit.zuev.osu.scoring.ScoreLibrary;
 import ru.nsu.ccfit.zuev.osuplus.BuildConfig;
 import ru.nsu.ccfit.zuev.osuplus.R;
 
@@ -360,6 +362,8 @@ public class MainActivity extends BaseGameActivity implements
                 scheduledExecutor.scheduleAtFixedRate(() -> {
                     AccessibilityDetector.check(MainActivity.this);
                     BeatmapDifficultyCalculator.invalidateExpiredCache();
+                    BeatmapDifficultyCalculator.savePersistentCache(false);
+                    SliderPathCache.getInstance().save(false);
                 }, 0, 1000, TimeUnit.MILLISECONDS);
 
                 if (roomInviteLink != null) {
@@ -710,6 +714,10 @@ public class MainActivity extends BaseGameActivity implements
     public void onStop() {
         super.onStop();
         activityVisible = false;
+        scheduledExecutor.execute(() -> {
+            BeatmapDifficultyCalculator.savePersistentCache(true);
+            SliderPathCache.getInstance().save(true);
+        });
     }
 
     @Override
@@ -924,6 +932,8 @@ public class MainActivity extends BaseGameActivity implements
 
     @Override
     protected void onDestroy() {
+        LibraryManager.INSTANCE.cancelScanning();
+        ScoreLibrary.getInstance().shutdown();
         NotificationManagerCompat.from(getApplicationContext()).cancelAll();
         super.onDestroy();
     }
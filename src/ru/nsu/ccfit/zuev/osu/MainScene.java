@@ -43,6 +43,7 @@ import org.anddev.andengine.util.modifier.ease.EaseCubicOut;
 import org.anddev.andengine.util.modifier.ease.EaseElasticOut;
 import org.anddev.andengine.util.modifier.ease.EaseExponentialOut;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -67,7 +68,8 @@ import ru.nsu.ccfit.zuev.osu.helper.ModifierFactory;
 import ru.nsu.ccfit.zuev.osu.online.OnlineManager;
 import ru.nsu.ccfit.zuev.osu.online.OnlinePanel;
 import ru.nsu.ccfit.zuev.osu.online.OnlineScoring;
-import ru.nsu.ccfit.zuev.osu.scoring.Replay;
+import ru.nsu.ccfit.zuev.osu.scoring.ReplayHeader;
+import ru.nsu.ccfit.zuev.osu.scoring.ReplayIndex;
 import ru.nsu.ccfit.zuev.osu.scoring.ScoringScene;
 import ru.nsu.ccfit.zuev.osu.scoring.StatisticV2;
 import ru.nsu.ccfit.zuev.osuplus.BuildConfig;
@@ -89,7 +91,6 @@ public class MainScene implements IUpdateHandler {
     private float[] peakLevel = new float[120];
     private float[] peakDownRate = new float[120];
     private float[] peakAlpha = new float[120];
-    private Replay replay = null;
     private TrackInfo selectedTrack;
     private BeatmapData beatmapData;
     private List<TimingPoint> timingPoints;
@@ -908,8 +909,8 @@ public class MainScene implements IUpdateHandler {
             beatmapData = parser.parse(false);
             if (beatmapData != null) {
                 timingPoints = new LinkedList<>();
-                for (final String s : beatmapData.rawTimingPoints) {
-                    final TimingPoint tp = new TimingPoint(s.split("[,]"), currentTimingPoint);
+                for (int i = 0; i < beatmapData.timingPointsData.size(); ++i) {
+                    final TimingPoint tp = new TimingPoint(beatmapData.timingPointsData, i, currentTimingPoint);
                     timingPoints.add(tp);
                     if (!tp.wasInderited() || currentTimingPoint == null) {
                         currentTimingPoint = tp;
@@ -1021,22 +1022,25 @@ public class MainScene implements IUpdateHandler {
     }
 
     public void watchReplay(String replayFile) {
-        replay = new Replay();
-        if (replay.loadInfo(replayFile)) {
-            if (replay.replayVersion >= 3) {
-                //replay
-                ScoringScene scorescene = GlobalManager.getInstance().getScoring();
-                StatisticV2 stat = replay.getStat();
-                TrackInfo track = LibraryManager.INSTANCE.findTrackByFileNameAndMD5(replay.getMapFile(), replay.getMd5());
-                if (track != null) {
-                    GlobalManager.getInstance().getMainScene().setBeatmap(track.getBeatmap());
-                    GlobalManager.getInstance().getSongMenu().select();
-                    ResourceManager.getInstance().loadBackground(track.getBackground());
-                    GlobalManager.getInstance().getSongService().preLoad(track.getBeatmap().getMusic());
-                    GlobalManager.getInstance().getSongService().play();
-                    scorescene.load(stat, null, ru.nsu.ccfit.zuev.osu.GlobalManager.getInstance().getSongService(), replayFile, null, track);
-                    GlobalManager.getInstance().getEngine().setScene(scorescene.getScene());
-                }
+        ReplayHeader header = ReplayIndex.getInstance().get(new File(replayFile));
+        if (header == null) {
+            ToastLogger.showTextId(R.string.replay_corrupted, true);
+            return;
+        }
+
+        if (header.hasStatistics) {
+            //replay
+            ScoringScene scorescene = GlobalManager.getInstance().getScoring();
+            StatisticV2 stat = header.toStatistic();
+            TrackInfo track = LibraryManager.INSTANCE.findTrackByFileNameAndMD5(header.mapFile, header.md5);
+            if (track != null) {
+                GlobalManager.getInstance().getMainScene().setBeatmap(track.getBeatmap());
+                GlobalManager.getInstance().getSongMenu().select();
+                ResourceManager.getInstance().loadBackground(track.getBackground());
+                GlobalManager.getInstance().getSongService().preLoad(track.getBeatmap().getMusic());
+                GlobalManager.getInstance().getSongService().play();
+                scorescene.load(stat, null, ru.nsu.ccfit.zuev.osu.GlobalManager.getInstance().getSongService(), replayFile, null, track);
+                GlobalManager.getInstance().getEngine().setScene(scorescene.getScene());
             }
         }
     }
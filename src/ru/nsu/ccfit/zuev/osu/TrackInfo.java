@@ -5,6 +5,9 @@ import java.io.Serializable;
 public class TrackInfo implements Serializable {
     private static final long serialVersionUID = 2049627581836712912L;
 
+    // The star rating of a track whose star rating has not been calculated yet.
+    public static final float DIFFICULTY_UNKNOWN = -1;
+
     private String filename;
 
     private String publicName;
@@ -14,7 +17,8 @@ public class TrackInfo implements Serializable {
     private String background = null;
     private int beatmapID = 0;
     private int beatmapSetID = 0;
-    private float difficulty;
+    // Volatile, as star ratings missing from a scan are calculated in the background.
+    private volatile float difficulty;
     private float hpDrain;
     private float overallDifficulty;
     private float approachRate;
@@ -27,6 +31,8 @@ public class TrackInfo implements Serializable {
     private int spinnerCount = 0;
     private int totalHitObjectCount = 0;
     private int maxCombo = 0;
+    private long fileSize = 0;
+    private long fileLastModified = 0;
 
     private BeatmapInfo beatmap;
 
@@ -210,6 +216,22 @@ public class TrackInfo implements Serializable {
         return md5;
     }
 
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getFileLastModified() {
+        return fileLastModified;
+    }
+
+    public void setFileLastModified(long fileLastModified) {
+        this.fileLastModified = fileLastModified;
+    }
+
     // Sometimes when the library is reloaded there can be 2 instances for the same beatmap so checking its MD5 is the
     // proper way to compare
     @Override
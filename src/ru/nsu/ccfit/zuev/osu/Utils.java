@@ -81,6 +81,20 @@ public class Utils {
         }
     }
 
+    public static void changeRealToTrackCoords(final PointF coords) {
+        final float width = Config.getRES_WIDTH();
+        final float height = Config.getRES_HEIGHT();
+        if (GameHelper.isHardrock()) {
+            coords.y -= height / 2;
+            coords.y *= -1;
+            coords.y += height / 2;
+        }
+        coords.y -= (height - toRes(Constants.MAP_ACTUAL_HEIGHT)) / 2f;
+        coords.x -= (width - toRes(Constants.MAP_ACTUAL_WIDTH)) / 2f;
+        coords.x *= Constants.MAP_WIDTH / toRes((float) Constants.MAP_ACTUAL_WIDTH);
+        coords.y *= Constants.MAP_HEIGHT / toRes((float) Constants.MAP_ACTUAL_HEIGHT);
+    }
+
     public static PointF realToTrackCoords(final PointF coords) {
         return realToTrackCoords(coords, Config.getRES_WIDTH(), Config.getRES_HEIGHT(), false);
     }
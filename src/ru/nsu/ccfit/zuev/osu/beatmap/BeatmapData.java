@@ -18,7 +18,9 @@ import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapColor;
 import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapDifficulty;
 import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapEvents;
 import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapGeneral;
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapHitObjectsSummary;
 import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapMetadata;
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapTimingPoints;
 import ru.nsu.ccfit.zuev.osu.game.GameHelper;
 import ru.nsu.ccfit.zuev.osu.helper.BeatmapDifficultyCalculator;
 import ru.nsu.ccfit.zuev.osu.helper.StringTable;
@@ -54,9 +56,9 @@ public class BeatmapData {
     public final BeatmapColor colors;
 
     /**
-     * Raw timing points data in this beatmap.
+     * The timing points of this beatmap as written in the beatmap file, used by gameplay and effects.
      */
-    public final ArrayList<String> rawTimingPoints = new ArrayList<>();
+    public final BeatmapTimingPoints timingPointsData;
 
     /**
      * The manager of timing points in this beatmap.
@@ -64,15 +66,22 @@ public class BeatmapData {
     public final BeatmapControlPointsManager timingPoints;
 
     /**
-     * Raw hit objects data in this beatmap.
+     * Raw hit objects data in this beatmap, as the comma-separated fields of each hit object line.
      */
-    public final ArrayList<String> rawHitObjects = new ArrayList<>();
+    public final ArrayList<String[]> rawHitObjects = new ArrayList<>();
 
     /**
      * The manager of hit objects in this beatmap.
      */
     public final BeatmapHitObjectsManager hitObjects;
 
+    /**
+     * Aggregated information about the hit objects in this beatmap.
+     * <br><br>
+     * Only filled when this beatmap was parsed without materialising its hit objects.
+     */
+    public final BeatmapHitObjectsSummary hitObjectsSummary;
+
     /**
      * The path of parent folder of this beatmap.
      */
@@ -93,6 +102,11 @@ public class BeatmapData {
      */
     private int formatVersion = 14;
 
+    /**
+     * Whether the slider paths of this beatmap are persisted by <code>SliderPathCache</code>.
+     */
+    private boolean persistSliderPaths = true;
+
     public BeatmapData() {
         general = new BeatmapGeneral();
         metadata = new BeatmapMetadata();
@@ -100,7 +114,9 @@ public class BeatmapData {
         events = new BeatmapEvents();
         colors = new BeatmapColor();
         timingPoints = new BeatmapControlPointsManager();
+        timingPointsData = new BeatmapTimingPoints();
         hitObjects = new BeatmapHitObjectsManager();
+        hitObjectsSummary = new BeatmapHitObjectsSummary();
     }
 
     /**
@@ -113,6 +129,7 @@ public class BeatmapData {
         filename = source.filename;
         formatVersion = source.formatVersion;
         md5 = source.md5;
+        persistSliderPaths = source.persistSliderPaths;
 
         general = source.general.deepClone();
         metadata = source.metadata.deepClone();
@@ -120,9 +137,10 @@ public class BeatmapData {
         events = source.events.deepClone();
         colors = source.colors.deepClone();
         timingPoints = source.timingPoints.deepClone();
+        timingPointsData = source.timingPointsData.deepClone();
         hitObjects = source.hitObjects.deepClone();
+        hitObjectsSummary = source.hitObjectsSummary.deepClone();
 
-        rawTimingPoints.addAll(source.rawTimingPoints);
         rawHitObjects.addAll(source.rawHitObjects);
     }
 
@@ -214,6 +232,23 @@ public class BeatmapData {
         this.formatVersion = formatVersion;
     }
 
+    /**
+     * Gets the path of the folder whose persisted slider paths are used for this beatmap,
+     * <code>null</code> if slider paths of this beatmap are not persisted.
+     */
+    public String getSliderPathFolder() {
+        return persistSliderPaths ? folder : null;
+    }
+
+    /**
+     * Sets whether the slider paths of this beatmap are persisted by <code>SliderPathCache</code>.
+     *
+     * @param persistSliderPaths Whether the slider paths of this beatmap are persisted.
+     */
+    public void setPersistSliderPaths(boolean persistSliderPaths) {
+        this.persistSliderPaths = persistSliderPaths;
+    }
+
     /**
      * Returns a time combined with beatmap-wide time offset.
      * <br>
@@ -335,7 +370,7 @@ public class BeatmapData {
 
         // Hit objects
         if (hitObjects.getObjects().isEmpty()) {
-            return false;
+            return populateHitObjectsSummary(track);
         }
 
         track.setTotalHitObjectCount(hitObjects.getObjects().size());
@@ -351,4 +386,28 @@ public class BeatmapData {
 
         return true;
     }
+
+    /**
+     * Populates the hit object information of a <code>TrackInfo</code> from the hit objects summary
+     * of this <code>BeatmapData</code>.
+     * <br><br>
+     * The star rating is not populated, as calculating it requires the hit objects to be materialised.
+     *
+     * @param track The <code>TrackInfo</code> to populate.
+     * @return Whether the given <code>TrackInfo</code> was successfully populated.
+     */
+    private boolean populateHitObjectsSummary(final TrackInfo track) {
+        if (hitObjectsSummary.getObjectCount() == 0) {
+            return false;
+        }
+
+        track.setTotalHitObjectCount(hitObjectsSummary.getObjectCount());
+        track.setHitCircleCount(hitObjectsSummary.circleCount);
+        track.setSliderCount(hitObjectsSummary.sliderCount);
+        track.setSpinnerCount(hitObjectsSummary.spinnerCount);
+        track.setMusicLength(hitObjectsSummary.getDuration());
+        track.setMaxCombo(hitObjectsSummary.maxCombo);
+
+        return true;
+    }
 }
@@ -11,6 +11,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import okio.BufferedSource;
+import okio.HashingSource;
 import okio.Okio;
 import ru.nsu.ccfit.zuev.osu.ToastLogger;
 import ru.nsu.ccfit.zuev.osu.Utils;
@@ -22,8 +23,8 @@ import ru.nsu.ccfit.zuev.osu.beatmap.parser.sections.BeatmapDifficultyParser;
 import ru.nsu.ccfit.zuev.osu.beatmap.parser.sections.BeatmapEventsParser;
 import ru.nsu.ccfit.zuev.osu.beatmap.parser.sections.BeatmapGeneralParser;
 import ru.nsu.ccfit.zuev.osu.beatmap.parser.sections.BeatmapHitObjectsParser;
+import ru.nsu.ccfit.zuev.osu.beatmap.parser.sections.BeatmapHitObjectsSummaryParser;
 import ru.nsu.ccfit.zuev.osu.beatmap.parser.sections.BeatmapMetadataParser;
-import ru.nsu.ccfit.zuev.osu.helper.FileUtils;
 import ru.nsu.ccfit.zuev.osu.helper.StringTable;
 import ru.nsu.ccfit.zuev.osuplus.R;
 
@@ -41,11 +42,21 @@ public class BeatmapParser {
      */
     private BufferedSource source;
 
+    /**
+     * The <code>HashingSource</code> that computes the MD5 hash of the beatmap file as it is being read.
+     */
+    private HashingSource hashingSource;
+
     /**
      * The format version of the beatmap.
      */
     private int beatmapFormatVersion = 14;
 
+    /**
+     * Whether the slider paths of the beatmap are persisted by <code>SliderPathCache</code>.
+     */
+    private boolean persistSliderPaths = true;
+
     /**
      * @param file The <code>.osu</code> file.
      */
@@ -67,6 +78,7 @@ public class BeatmapParser {
     private static final BeatmapControlPointsParser controlPointsParser = new BeatmapControlPointsParser();
     private static final BeatmapColorParser colorParser = new BeatmapColorParser();
     private static final BeatmapHitObjectsParser hitObjectsParser = new BeatmapHitObjectsParser();
+    private static final BeatmapHitObjectsSummaryParser hitObjectsSummaryParser = new BeatmapHitObjectsSummaryParser();
 
     /**
      * Attempts to open the beatmap file.
@@ -75,9 +87,12 @@ public class BeatmapParser {
      */
     public boolean openFile() {
         try {
-            source = Okio.buffer(Okio.source(file));
+            // Hash the file while it is being read, so that it does not have to be read twice.
+            hashingSource = HashingSource.md5(Okio.source(file));
+            source = Okio.buffer(hashingSource);
         } catch (final IOException e) {
             Log.e("BeatmapParser.openFile", e.getMessage());
+            hashingSource = null;
             source = null;
             return false;
         }
@@ -105,6 +120,18 @@ public class BeatmapParser {
         return true;
     }
 
+    /**
+     * Sets whether the slider paths of the beatmap are persisted by <code>SliderPathCache</code>.
+     * <br><br>
+     * Beatmaps that are parsed in bulk, such as when calculating the star rating of a whole library,
+     * should not persist them, as most of them will not be played soon.
+     *
+     * @param persistSliderPaths Whether to persist the slider paths of the beatmap.
+     */
+    public void setPersistSliderPaths(boolean persistSliderPaths) {
+        this.persistSliderPaths = persistSliderPaths;
+    }
+
     /**
      * Parses the <code>.osu</code> file.
      *
@@ -113,6 +140,23 @@ public class BeatmapParser {
      * <code>null</code> if the beatmap file cannot be opened or a line could not be parsed.
      */
     public BeatmapData parse(boolean withHitObjects) {
+        return parse(withHitObjects, false);
+    }
+
+    /**
+     * Parses the <code>.osu</code> file without materialising its hit objects.
+     * <br><br>
+     * Hit objects are only aggregated into <code>BeatmapData.hitObjectsSummary</code>, which is enough
+     * to populate a <code>TrackInfo</code> except for its star rating.
+     *
+     * @return A <code>BeatmapData</code> containing relevant information of the beatmap file,
+     * <code>null</code> if the beatmap file cannot be opened or a line could not be parsed.
+     */
+    public BeatmapData parseSummary() {
+        return parse(false, true);
+    }
+
+    private BeatmapData parse(boolean withHitObjects, boolean withHitObjectsSummary) {
         String fileName = file.getName().substring(0, file.getName().length() - 4);
 
         if (source == null && !openFile()) {
@@ -126,10 +170,10 @@ public class BeatmapParser {
         BeatmapSection currentSection = null;
         BeatmapData data = new BeatmapData();
 
-        data.setMD5(FileUtils.getMD5Checksum(file));
         data.setFolder(file.getParent());
         data.setFilename(file.getPath());
         data.setFormatVersion(beatmapFormatVersion);
+        data.setPersistSliderPaths(persistSliderPaths);
 
         String s;
 
@@ -187,6 +231,8 @@ public class BeatmapParser {
                         case hitObjects:
                             if (withHitObjects) {
                                 hitObjectsParser.parse(data, s);
+                            } else if (withHitObjectsSummary) {
+                                hitObjectsSummaryParser.parse(data, s);
                             }
                             break;
                     }
@@ -195,8 +241,14 @@ public class BeatmapParser {
                 }
             }
 
+            // The whole file has been read at this point, so the hash is complete.
+            data.setMD5(hashingSource.hash().hex());
+
             closeSource();
-            populateObjectData(data);
+
+            if (withHitObjects) {
+                populateObjectData(data);
+            }
         } catch (IOException e) {
             Log.e("BeatmapParser.parse", e.getMessage());
             return null;
@@ -230,6 +282,7 @@ public class BeatmapParser {
             } catch (IOException ignored) {}
 
             source = null;
+            hashingSource = null;
         }
     }
 }
@@ -5,6 +5,7 @@ import com.rian.difficultycalculator.beatmap.timings.DifficultyControlPoint;
 import com.rian.difficultycalculator.beatmap.timings.TimingControlPoint;
 
 import ru.nsu.ccfit.zuev.osu.beatmap.BeatmapData;
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapTimingPoints;
 
 /**
  * A parser for parsing a beatmap's timing points section.
@@ -18,7 +19,8 @@ public class BeatmapControlPointsParser extends BeatmapSectionParser {
             throw new UnsupportedOperationException("Malformed timing point");
         }
 
-        double time = data.getOffsetTime(parseDouble(pars[0].trim()));
+        double rawTime = parseDouble(pars[0].trim());
+        double time = data.getOffsetTime(rawTime);
 
         // msPerBeat is allowed to be NaN to handle an edge case in which some
         // beatmaps use NaN slider velocity to disable slider tick generation.
@@ -55,6 +57,33 @@ public class BeatmapControlPointsParser extends BeatmapSectionParser {
                 !Double.isNaN(msPerBeat)
         ));
 
-        data.rawTimingPoints.add(line);
+        // Fields below are only used by gameplay and effects, which fall back to defaults instead of skipping
+        // the timing point when they are malformed.
+        data.timingPointsData.add(
+                rawTime,
+                msPerBeat,
+                timeSignature,
+                parseOptionalInt(pars, 3, BeatmapTimingPoints.DEFAULT_SAMPLE_TYPE),
+                parseOptionalInt(pars, 4, 0),
+                parseOptionalInt(pars, 5, 100),
+                parseOptionalInt(pars, 7, 0)
+        );
+    }
+
+    /**
+     * Parses an optional integer field of a timing point.
+     *
+     * @return The parsed field, or the default value if the field is missing or malformed.
+     */
+    private int parseOptionalInt(String[] pars, int index, int defaultValue) {
+        if (pars.length <= index) {
+            return defaultValue;
+        }
+
+        try {
+            return parseInt(pars[index].trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 }
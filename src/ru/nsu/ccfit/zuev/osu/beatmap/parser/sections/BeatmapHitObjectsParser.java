@@ -15,6 +15,7 @@ import java.util.ArrayList;
 
 import ru.nsu.ccfit.zuev.osu.beatmap.BeatmapData;
 import ru.nsu.ccfit.zuev.osu.beatmap.constants.HitObjectType;
+import ru.nsu.ccfit.zuev.osu.helper.SliderPathCache;
 
 /**
  * A parser for parsing a beatmap's hit objects section.
@@ -46,7 +47,7 @@ public class BeatmapHitObjectsParser extends BeatmapSectionParser {
             object = createSpinner(data, time, pars);
         }
 
-        data.rawHitObjects.add(line);
+        data.rawHitObjects.add(pars);
         data.hitObjects.add(object);
     }
 
@@ -103,7 +104,7 @@ public class BeatmapHitObjectsParser extends BeatmapSectionParser {
             }
         }
 
-        SliderPath path = new SliderPath(sliderType, curvePoints, rawLength);
+        SliderPath path = SliderPathCache.getInstance().get(data.getSliderPathFolder(), sliderType, curvePoints, rawLength);
         TimingControlPoint timingControlPoint = data.timingPoints.timing.controlPointAt(time);
         DifficultyControlPoint difficultyControlPoint = data.timingPoints.difficulty.controlPointAt(time);
 
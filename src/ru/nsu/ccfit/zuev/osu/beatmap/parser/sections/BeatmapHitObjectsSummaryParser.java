@@ -0,0 +1,116 @@
+package ru.nsu.ccfit.zuev.osu.beatmap.parser.sections;
+
+import com.rian.difficultycalculator.beatmap.timings.DifficultyControlPoint;
+import com.rian.difficultycalculator.beatmap.timings.TimingControlPoint;
+import com.rian.difficultycalculator.math.MathUtils;
+
+import ru.nsu.ccfit.zuev.osu.beatmap.BeatmapData;
+import ru.nsu.ccfit.zuev.osu.beatmap.constants.HitObjectType;
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapHitObjectsSummary;
+
+/**
+ * A parser for parsing a beatmap's hit objects section into a <code>BeatmapHitObjectsSummary</code>.
+ * <br><br>
+ * Unlike <code>BeatmapHitObjectsParser</code>, no hit objects are created. Slider paths are not approximated,
+ * as the duration and nested object count of a slider only depend on its expected distance.
+ */
+public class BeatmapHitObjectsSummaryParser extends BeatmapSectionParser {
+    @Override
+    public void parse(BeatmapData data, String line) {
+        final String[] pars = line.split(",");
+
+        if (pars.length < 4) {
+            throw new UnsupportedOperationException("Malformed hit object");
+        }
+
+        double time = data.getOffsetTime(parseDouble(pars[2]));
+
+        HitObjectType type = HitObjectType.valueOf(parseInt(pars[3]) % 16);
+
+        // Validate the position the same way as BeatmapHitObjectsParser, so that both parsers skip the same lines.
+        parseFloat(pars[0], maxCoordinateValue);
+        parseFloat(pars[1], maxCoordinateValue);
+
+        BeatmapHitObjectsSummary summary = data.hitObjectsSummary;
+        double endTime;
+
+        if (type == HitObjectType.Normal || type == HitObjectType.NormalNewCombo) {
+            endTime = time;
+
+            ++summary.circleCount;
+            ++summary.maxCombo;
+        } else if (type == HitObjectType.Slider || type == HitObjectType.SliderNewCombo) {
+            endTime = summarizeSlider(data, time, pars);
+        } else {
+            endTime = data.getOffsetTime(parseInt(pars[5]));
+
+            ++summary.spinnerCount;
+            ++summary.maxCombo;
+        }
+
+        // Hit objects are stably sorted by start time, so the last object is the last one with the latest start time.
+        if (time >= summary.lastObjectStartTime) {
+            summary.lastObjectStartTime = time;
+            summary.lastObjectEndTime = endTime;
+        }
+    }
+
+    /**
+     * Adds a slider to the summary of a beatmap.
+     * <br><br>
+     * This mirrors the end time and nested object generation of <code>Slider</code>.
+     *
+     * @return The end time of the slider.
+     */
+    private double summarizeSlider(BeatmapData data, double time, String[] pars)
+            throws UnsupportedOperationException {
+        if (pars.length < 8) {
+            throw new UnsupportedOperationException("Malformed slider");
+        }
+
+        int repeat = parseInt(pars[6]);
+        double expectedDistance = Math.max(0, parseDouble(pars[7], maxCoordinateValue));
+
+        if (repeat > 9000) {
+            throw new UnsupportedOperationException("Repeat count is way too high");
+        }
+
+        TimingControlPoint timingControlPoint = data.timingPoints.timing.controlPointAt(time);
+        DifficultyControlPoint difficultyControlPoint = data.timingPoints.difficulty.controlPointAt(time);
+
+        double scoringDistance = 100 * data.difficulty.sliderMultiplier * difficultyControlPoint.speedMultiplier;
+        double velocity = scoringDistance / timingControlPoint.msPerBeat;
+
+        // Prior to v8, speed multipliers don't adjust for how many ticks are generated over the same distance.
+        double tickDistanceMultiplier = data.getFormatVersion() < 8 ? 1 / difficultyControlPoint.speedMultiplier : 1;
+
+        double length = Math.min(100000, expectedDistance);
+        double tickDistance = MathUtils.clamp(scoringDistance / data.difficulty.sliderTickRate * tickDistanceMultiplier, 0, length);
+
+        // Head and tail.
+        int nestedObjectCount = 2;
+
+        if (tickDistance != 0 && difficultyControlPoint.generateTicks) {
+            double minDistanceFromEnd = velocity * 10;
+            int tickCount = 0;
+
+            for (double d = tickDistance; d <= length; d += tickDistance) {
+                if (d >= length - minDistanceFromEnd) {
+                    break;
+                }
+
+                ++tickCount;
+            }
+
+            // Every span has the same ticks, and there is a repeat point between each span.
+            nestedObjectCount += Math.max(0, repeat) * tickCount + Math.max(0, repeat - 1);
+        }
+
+        BeatmapHitObjectsSummary summary = data.hitObjectsSummary;
+
+        ++summary.sliderCount;
+        summary.maxCombo += nestedObjectCount;
+
+        return time + repeat * expectedDistance / velocity;
+    }
+}
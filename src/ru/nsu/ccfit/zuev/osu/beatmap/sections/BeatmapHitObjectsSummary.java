@@ -0,0 +1,78 @@
+package ru.nsu.ccfit.zuev.osu.beatmap.sections;
+
+/**
+ * Contains aggregated information about a beatmap's hit objects.
+ * <br><br>
+ * This is filled when a beatmap is parsed without materialising its hit objects,
+ * such as during library scanning.
+ */
+public class BeatmapHitObjectsSummary {
+    /**
+     * The amount of circles in this beatmap.
+     */
+    public int circleCount;
+
+    /**
+     * The amount of sliders in this beatmap.
+     */
+    public int sliderCount;
+
+    /**
+     * The amount of spinners in this beatmap.
+     */
+    public int spinnerCount;
+
+    /**
+     * The maximum combo of this beatmap.
+     */
+    public int maxCombo;
+
+    /**
+     * The start time of the last hit object in this beatmap, in milliseconds.
+     */
+    public double lastObjectStartTime = Double.NEGATIVE_INFINITY;
+
+    /**
+     * The end time of the last hit object in this beatmap, in milliseconds.
+     */
+    public double lastObjectEndTime;
+
+    public BeatmapHitObjectsSummary() {}
+
+    /**
+     * Copy constructor.
+     *
+     * @param source The source to copy from.
+     */
+    private BeatmapHitObjectsSummary(BeatmapHitObjectsSummary source) {
+        circleCount = source.circleCount;
+        sliderCount = source.sliderCount;
+        spinnerCount = source.spinnerCount;
+        maxCombo = source.maxCombo;
+        lastObjectStartTime = source.lastObjectStartTime;
+        lastObjectEndTime = source.lastObjectEndTime;
+    }
+
+    /**
+     * Gets the amount of hit objects in this beatmap.
+     */
+    public int getObjectCount() {
+        return circleCount + sliderCount + spinnerCount;
+    }
+
+    /**
+     * Gets the duration of this beatmap in milliseconds.
+     */
+    public int getDuration() {
+        return getObjectCount() > 0 ? (int) lastObjectEndTime : 0;
+    }
+
+    /**
+     * Deep clones this instance.
+     *
+     * @return The deep cloned instance.
+     */
+    public BeatmapHitObjectsSummary deepClone() {
+        return new BeatmapHitObjectsSummary(this);
+    }
+}
@@ -0,0 +1,148 @@
+package ru.nsu.ccfit.zuev.osu.beatmap.sections;
+
+import java.util.Arrays;
+
+/**
+ * Contains the timing points of a beatmap as written in its <code>[TimingPoints]</code> section.
+ * <br><br>
+ * Every field of a timing point is parsed once and stored in a primitive column, so that gameplay and effects
+ * can build their own timing models without splitting the raw lines again. Times are not offset by
+ * <code>BeatmapData.getOffsetTime</code>.
+ */
+public class BeatmapTimingPoints {
+    /**
+     * The value of <code>getSampleType</code> for timing points that do not specify a sample type.
+     */
+    public static final int DEFAULT_SAMPLE_TYPE = -1;
+
+    private int count;
+    private double[] times;
+    private double[] beatLengths;
+    private int[] meters;
+    private int[] sampleTypes;
+    private int[] sampleIndices;
+    private int[] volumes;
+    private int[] effects;
+
+    public BeatmapTimingPoints() {
+        allocate(16);
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param source The source to copy from.
+     */
+    private BeatmapTimingPoints(BeatmapTimingPoints source) {
+        count = source.count;
+        times = Arrays.copyOf(source.times, count);
+        beatLengths = Arrays.copyOf(source.beatLengths, count);
+        meters = Arrays.copyOf(source.meters, count);
+        sampleTypes = Arrays.copyOf(source.sampleTypes, count);
+        sampleIndices = Arrays.copyOf(source.sampleIndices, count);
+        volumes = Arrays.copyOf(source.volumes, count);
+        effects = Arrays.copyOf(source.effects, count);
+    }
+
+    /**
+     * Adds a timing point. Only used while parsing.
+     *
+     * @param time The time of the timing point, in milliseconds.
+     * @param beatLength The beat length of the timing point. Negative for inherited timing points.
+     * @param meter The amount of beats in a measure.
+     * @param sampleType The sample type, or <code>DEFAULT_SAMPLE_TYPE</code> if not specified.
+     * @param sampleIndex The custom sample index.
+     * @param volume The volume percentage.
+     * @param effect The effect flags.
+     */
+    public void add(double time, double beatLength, int meter, int sampleType, int sampleIndex, int volume, int effect) {
+        if (count == times.length) {
+            allocate(count * 2);
+        }
+
+        times[count] = time;
+        beatLengths[count] = beatLength;
+        meters[count] = meter;
+        sampleTypes[count] = sampleType;
+        sampleIndices[count] = sampleIndex;
+        volumes[count] = volume;
+        effects[count] = effect;
+        ++count;
+    }
+
+    /**
+     * Gets the amount of timing points.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the time of a timing point, in milliseconds.
+     */
+    public double getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Gets the beat length of a timing point. Negative values are slider velocity multipliers of inherited
+     * timing points, and the beat length may be NaN.
+     */
+    public double getBeatLength(int index) {
+        return beatLengths[index];
+    }
+
+    /**
+     * Gets the amount of beats in a measure of a timing point.
+     */
+    public int getMeter(int index) {
+        return meters[index];
+    }
+
+    /**
+     * Gets the sample type of a timing point, <code>DEFAULT_SAMPLE_TYPE</code> if not specified.
+     */
+    public int getSampleType(int index) {
+        return sampleTypes[index];
+    }
+
+    /**
+     * Gets the custom sample index of a timing point.
+     */
+    public int getSampleIndex(int index) {
+        return sampleIndices[index];
+    }
+
+    /**
+     * Gets the volume percentage of a timing point.
+     */
+    public int getVolume(int index) {
+        return volumes[index];
+    }
+
+    /**
+     * Gets the effect flags of a timing point.
+     */
+    public int getEffects(int index) {
+        return effects[index];
+    }
+
+    /**
+     * Deep clones this instance.
+     *
+     * @return The deep cloned instance.
+     */
+    public BeatmapTimingPoints deepClone() {
+        return new BeatmapTimingPoints(this);
+    }
+
+    private void allocate(int size) {
+        times = times == null ? new double[size] : Arrays.copyOf(times, size);
+        beatLengths = beatLengths == null ? new double[size] : Arrays.copyOf(beatLengths, size);
+        meters = meters == null ? new int[size] : Arrays.copyOf(meters, size);
+        sampleTypes = sampleTypes == null ? new int[size] : Arrays.copyOf(sampleTypes, size);
+        sampleIndices = sampleIndices == null ? new int[size] : Arrays.copyOf(sampleIndices, size);
+        volumes = volumes == null ? new int[size] : Arrays.copyOf(volumes, size);
+        effects = effects == null ? new int[size] : Arrays.copyOf(effects, size);
+    }
+}
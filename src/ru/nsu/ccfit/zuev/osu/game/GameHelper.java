@@ -95,30 +95,37 @@ public class GameHelper {
         gameid = (new Random().nextInt(233333333) + 1);
     }
 
-    public static SliderPath calculatePath(final PointF pos,
-                                           final String[] data, final float maxLength, final float offset) {
+    /**
+     * Calculates the path of a slider.
+     *
+     * @param pos The position of the slider, in osu!pixels.
+     * @param type The curve type of the slider.
+     * @param curveX The x coordinates of the curve points of the slider, in osu!pixels.
+     * @param curveY The y coordinates of the curve points of the slider, in osu!pixels.
+     * @param maxLength The length to cut the path at.
+     * @param offset The stacking offset of the slider.
+     */
+    public static SliderPath calculatePath(final PointF pos, final char type, final float[] curveX,
+                                           final float[] curveY, final float maxLength, final float offset) {
         final ArrayList<ArrayList<PointF>> points = new ArrayList<>();
         points.add(new ArrayList<>());
         int lastIndex = 0;
         points.get(lastIndex).add(pos);
 
         final SliderPath path = newPath();
+        final boolean catmull = type == 'C';
+        curveType = Spline.getCurveType(type);
 
-        for (final String s : data) {
-            if (s.equals(data[0])) {
-                curveType = Spline.getCurveType(s.charAt(0));
-                continue;
-            }
-            final String[] nums = s.split(":");
+        for (int i = 0; i < curveX.length; i++) {
             final PointF point = newPointF();
-            point.set(Integer.parseInt(nums[0]), Integer.parseInt(nums[1]));
+            point.set((int) curveX[i], (int) curveY[i]);
             point.x += offset;
             point.y += offset;
             final PointF ppoint = points.get(lastIndex).get(
                     points.get(lastIndex).size() - 1);
             if (point.x == ppoint.x && point.y == ppoint.y
-                    || data[0].equals("C")) {
-                if (data[0].equals("C")) {
+                    || catmull) {
+                if (catmull) {
                     points.get(lastIndex).add(point);
                 }
                 points.add(new ArrayList<>());
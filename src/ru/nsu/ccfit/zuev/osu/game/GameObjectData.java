@@ -3,36 +3,110 @@ package ru.nsu.ccfit.zuev.osu.game;
 import android.graphics.PointF;
 
 import ru.nsu.ccfit.zuev.osu.Utils;
+import ru.nsu.ccfit.zuev.osu.game.GameHelper.SliderPath;
 
 public class GameObjectData {
     private final int time;
     private final int comboCode;
-    private final String[] rawdata;
+    private final int sound;
+    private final String tempSound;
     // private SliderHelper.SliderPath path = null;
     private final PointF pos;
     private float posOffset;
 
-    public GameObjectData(final String line) {
-        String[] data = line.split("[,]");
+    /**
+     * The end time of a spinner, in milliseconds.
+     */
+    private int endTime;
 
+    private int repeats;
+    private float length;
+    private String soundSpec;
+
+    /**
+     * The curve type of a slider, followed by its curve points.
+     */
+    private char curveType;
+    private float[] curveX;
+    private float[] curveY;
+
+    /**
+     * The path of a slider, once it has been calculated.
+     */
+    private SliderPath path;
+
+    /**
+     * @param data The comma-separated fields of the hit object, as split by <code>BeatmapHitObjectsParser</code>.
+     */
+    public GameObjectData(final String[] data) {
         //Ignoring v10 features
         int dataSize = data.length;
-        while (dataSize > 0 && data[dataSize - 1].matches("([0-9][:][0-9][|]?)+")) {
+        while (dataSize > 0 && isEdgeSampleList(data[dataSize - 1])) {
             dataSize--;
         }
-        if (dataSize < data.length) {
-            rawdata = new String[dataSize];
-            for (int i = 0; i < rawdata.length; i++) {
-                rawdata[i] = data[i];
-            }
-        } else
-            rawdata = data;
 
-        time = Integer.parseInt(rawdata[2]);
-        comboCode = Integer.parseInt(rawdata[3]);
-        pos = Utils.trackToRealCoords(new PointF(Float.parseFloat(rawdata[0]),
-                Float.parseFloat(rawdata[1])));
+        time = Integer.parseInt(data[2]);
+        comboCode = Integer.parseInt(data[3]);
+        pos = Utils.trackToRealCoords(new PointF(Float.parseFloat(data[0]),
+                Float.parseFloat(data[1])));
         posOffset = 0;
+        sound = dataSize > 4 ? Integer.parseInt(data[4]) : 0;
+
+        if ((comboCode & 1) > 0) {
+            tempSound = dataSize > 5 ? data[5] : null;
+        } else if ((comboCode & 8) > 0) {
+            endTime = Integer.parseInt(data[5]);
+            tempSound = dataSize > 6 ? data[6] : null;
+        } else if ((comboCode & 2) > 0) {
+            repeats = Integer.parseInt(data[6]);
+            length = Float.parseFloat(data[7]);
+            soundSpec = dataSize > 8 ? data[8] : null;
+            tempSound = dataSize > 9 ? data[9] : null;
+            parseCurve(data[5]);
+        } else {
+            tempSound = null;
+        }
+    }
+
+    /**
+     * Determines whether a field matches <code>([0-9][:][0-9][|]?)+</code>, which is the form of the edge sample
+     * list of a slider.
+     */
+    private static boolean isEdgeSampleList(final String field) {
+        final int length = field.length();
+        int i = 0;
+
+        while (i < length) {
+            if (i + 2 >= length || !isDigit(field.charAt(i)) || field.charAt(i + 1) != ':'
+                    || !isDigit(field.charAt(i + 2))) {
+                return false;
+            }
+            i += 3;
+
+            if (i < length && field.charAt(i) == '|') {
+                i++;
+            }
+        }
+
+        return length > 0;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void parseCurve(final String curve) {
+        final String[] points = curve.split("[|]");
+        curveType = points[0].charAt(0);
+        curveX = new float[points.length - 1];
+        curveY = new float[points.length - 1];
+
+        for (int i = 1; i < points.length; i++) {
+            final String point = points[i];
+            final int separator = point.indexOf(':');
+            curveX[i - 1] = Float.parseFloat(point.substring(0, separator));
+            curveY[i - 1] = Float.parseFloat(point.substring(separator + 1));
+        }
     }
 
     public PointF getPos() {
@@ -48,21 +122,12 @@ public class GameObjectData {
     }
 
     public PointF getEnd() {
-        if (rawdata.length >= 8) {
-            final int repeats = Integer.parseInt(rawdata[6]);
-            if ((repeats % 2) != 1) {
+        if (curveX != null) {
+            if ((repeats % 2) != 1 || curveX.length == 0) {
                 return pos;
             }
-            final String[] endP = rawdata[5].substring(
-                    rawdata[5].lastIndexOf('|') + 1).split("[:]");
-            PointF end;
-            try {
-                end = Utils.trackToRealCoords(new PointF(Float
-                        .parseFloat(endP[0]), Float.parseFloat(endP[1])));
-            } catch (final NumberFormatException e) {
-                end = pos;
-            }
-            return end;
+            final int last = curveX.length - 1;
+            return Utils.trackToRealCoords(new PointF(curveX[last], curveY[last]));
         }
         return pos;
     }
@@ -79,7 +144,50 @@ public class GameObjectData {
         return time;
     }
 
-    public String[] getData() {
-        return rawdata;
+    /**
+     * Gets the type of this hit object along with its new combo flags, as written in the beatmap.
+     */
+    public int getComboCode() {
+        return comboCode;
+    }
+
+    public int getSound() {
+        return sound;
+    }
+
+    public String getTempSound() {
+        return tempSound;
+    }
+
+    /**
+     * Gets the end time of a spinner, in seconds.
+     */
+    public float getEndTime() {
+        return endTime / 1000.0f;
+    }
+
+    public int getRepeats() {
+        return repeats;
+    }
+
+    public float getLength() {
+        return length;
+    }
+
+    public String getSoundSpec() {
+        return soundSpec;
+    }
+
+    /**
+     * Gets the path of a slider, calculating it on first use.
+     * <br><br>
+     * The path depends on the position offset of the slider, so it must not be requested before stacking.
+     */
+    public SliderPath getPath() {
+        if (path == null) {
+            path = GameHelper.calculatePath(Utils.realToTrackCoords(pos), curveType, curveX, curveY,
+                    Math.max(0, length), posOffset);
+        }
+        return path;
     }
 }
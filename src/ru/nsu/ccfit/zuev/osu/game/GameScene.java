@@ -76,7 +76,7 @@ import ru.nsu.ccfit.zuev.osu.beatmap.BeatmapData;
 import ru.nsu.ccfit.zuev.osu.beatmap.constants.BeatmapCountdown;
 import ru.nsu.ccfit.zuev.osu.beatmap.constants.SampleBank;
 import ru.nsu.ccfit.zuev.osu.beatmap.parser.BeatmapParser;
-import ru.nsu.ccfit.zuev.osu.game.GameHelper.SliderPath;
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapTimingPoints;
 import ru.nsu.ccfit.zuev.osu.game.cursor.flashlight.FlashLightEntity;
 import ru.nsu.ccfit.zuev.osu.game.cursor.main.AutoCursor;
 import ru.nsu.ccfit.zuev.osu.game.cursor.main.Cursor;
@@ -170,6 +170,7 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
     private FlashLightEntity flashlightSprite;
     private int mainCursorId = -1;
     private Replay replay;
+    private final PointF replayTouchPoint = new PointF();
     private boolean replaying;
     private String replayFile;
     private float avgOffset;
@@ -182,8 +183,6 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
     private ComboBurst comboBurst;
     private int failcount = 0;
     private float lastObjectHitTime = 0;
-    private SliderPath[] sliderPaths = null;
-    private int sliderIndex = 0;
 
     private StoryboardSprite storyboardSprite;
     private ProxySprite storyboardOverlayProxy;
@@ -479,8 +478,8 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
 
         // Parsing hit objects
         objects = new LinkedList<>();
-        for (final String s : beatmapData.rawHitObjects) {
-            objects.add(new GameObjectData(s));
+        for (final String[] data : beatmapData.rawHitObjects) {
+            objects.add(new GameObjectData(data));
         }
 
         if (objects.size() <= 0) {
@@ -527,26 +526,24 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
         activeTimingPoints = new LinkedList<>();
 
         // Find the first uninherited timing point.
+        final BeatmapTimingPoints timingPointsData = beatmapData.timingPointsData;
         currentTimingPoint = new TimingPoint(
                 // This is the default uninherited timing point.
                 // If there are no uninherited timing points, this will be used.
                 // Reference: https://osu.ppy.sh/wiki/en/Client/File_formats/Osu_%28file_format%29#timing-points
-                new String[] {"0", "1000", "4", "0", "0", "100", "1", "0"},
+                0, 1000, 4, 0, 0, 100, 0,
                 null
         );
 
-        for (final String s : beatmapData.rawTimingPoints) {
-            final TimingPoint tp = new TimingPoint(s.split("[,]"),
-                    currentTimingPoint);
-            if (!tp.wasInderited()) {
-                currentTimingPoint = tp;
+        for (int i = 0; i < timingPointsData.size(); ++i) {
+            if (!(timingPointsData.getBeatLength(i) < 0)) {
+                currentTimingPoint = new TimingPoint(timingPointsData, i, currentTimingPoint);
                 break;
             }
         }
 
-        for (final String s : beatmapData.rawTimingPoints) {
-            final TimingPoint tp = new TimingPoint(s.split("[,]"),
-                    currentTimingPoint);
+        for (int i = 0; i < timingPointsData.size(); ++i) {
+            final TimingPoint tp = new TimingPoint(timingPointsData, i, currentTimingPoint);
             timingPoints.add(tp);
             if (!tp.wasInderited()) {
                 currentTimingPoint = tp;
@@ -554,7 +551,7 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
         }
 
         GameHelper.controlPoints = new ControlPoints();
-        GameHelper.controlPoints.load(TimingPoints.parse(beatmapData.rawTimingPoints));
+        GameHelper.controlPoints.load(TimingPoints.of(timingPointsData));
         currentTimingPoint = timingPoints.peek();
         firstTimingPoint = currentTimingPoint;
         soundTimingPoint = currentTimingPoint;
@@ -1398,17 +1395,22 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
                     break;
                 }
 
+                final Replay.MoveArray moves = replay.cursorMoves.get(i);
                 cIndex = replay.cursorIndex[i];
-                Replay.ReplayMovement movement = null;
+                // The first movement that has not been emulated yet, or the last emulated one if none is left
+                int movementIndex = -1;
 
                 // Emulating moves
-                while (
-                        cIndex < replay.cursorMoves.get(i).size &&
-                        (movement = replay.cursorMoves.get(i).movements[cIndex]).getTime() <= (secPassed + dt / 4) * 1000
-                ) {
-                    float mx = movement.getPoint().x;
-                    float my = movement.getPoint().y;
-                    if (movement.getTouchType() == TouchType.DOWN) {
+                while (cIndex < moves.size) {
+                    movementIndex = cIndex;
+                    if (moves.getTime(cIndex) > (secPassed + dt / 4) * 1000) {
+                        break;
+                    }
+
+                    float mx = moves.getX(cIndex);
+                    float my = moves.getY(cIndex);
+                    final TouchType touchType = moves.getTouchType(cIndex);
+                    if (touchType == TouchType.DOWN) {
                         cursors[i].mouseDown = true;
                         for (int j = 0; j < replay.cursorIndex.length; j++) {
                             cursors[j].mouseOldDown = false;
@@ -1417,7 +1419,7 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
                         cursors[i].mousePos.y = my;
 
                         replay.lastMoveIndex[i] = -1;
-                    } else if (movement.getTouchType() == TouchType.MOVE) {
+                    } else if (touchType == TouchType.MOVE) {
                         cursors[i].mousePos.x = mx;
                         cursors[i].mousePos.y = my;
                         replay.lastMoveIndex[i] = cIndex;
@@ -1428,12 +1430,11 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
                     cIndex++;
                 }
                 // Interpolating cursor movements
-                if (movement != null && movement.getTouchType() == TouchType.MOVE && replay.lastMoveIndex[i] >= 0) {
+                if (movementIndex >= 0 && moves.getTouchType(movementIndex) == TouchType.MOVE && replay.lastMoveIndex[i] >= 0) {
                     final int lIndex = replay.lastMoveIndex[i];
-                    final Replay.ReplayMovement lastMovement = replay.cursorMoves.get(i).movements[lIndex];
-                    float t = (secPassed * 1000 - movement.getTime()) / (lastMovement.getTime() - movement.getTime());
-                    cursors[i].mousePos.x = lastMovement.getPoint().x * t + movement.getPoint().x * (1 - t);
-                    cursors[i].mousePos.y = lastMovement.getPoint().y * t + movement.getPoint().y * (1 - t);
+                    float t = (secPassed * 1000 - moves.getTime(movementIndex)) / (moves.getTime(lIndex) - moves.getTime(movementIndex));
+                    cursors[i].mousePos.x = moves.getX(lIndex) * t + moves.getX(movementIndex) * (1 - t);
+                    cursors[i].mousePos.y = moves.getY(lIndex) * t + moves.getY(movementIndex) * (1 - t);
                 }
             }
         }
@@ -1699,11 +1700,10 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
                 && secPassed + approachRate > objects.peek().getTime()) {
             gameStarted = true;
             final GameObjectData data = objects.poll();
-            final String[] params = data.getData();
 
             final PointF pos = data.getPos();
             // Fix matching error on new beatmaps
-            final int objDefine = Integer.parseInt(params[3]);
+            final int objDefine = data.getComboCode();
 
             final float time = data.getRawTime();
             if (time > totalLength) {
@@ -1759,14 +1759,10 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
             if ((objDefine & 1) > 0) {
                 final RGBColor col = getComboColor(comboNum);
                 final HitCircle circle = GameObjectPool.getInstance().getCircle();
-                String tempSound = null;
-                if (params.length > 5) {
-                    tempSound = params[5];
-                }
 
                 circle.init(this, mgScene, pos, data.getTime() - secPassed,
                         col.r(), col.g(), col.b(), scale, currentComboNum,
-                        Integer.parseInt(params[4]), tempSound, isFirst);
+                        data.getSound(), data.getTempSound(), isFirst);
                 circle.setEndsCombo(objects.isEmpty()
                         || objects.peek().isNewCombo());
                 addObject(circle);
@@ -1802,16 +1798,12 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
                 }
 
             } else if ((objDefine & 8) > 0) {
-                final float endTime = Integer.parseInt(params[5]) / 1000.0f;
+                final float endTime = data.getEndTime();
                 final float rps = 2 + 2 * overallDifficulty / 10f;
                 final Spinner spinner = GameObjectPool.getInstance().getSpinner();
-                String tempSound = null;
-                if (params.length > 6) {
-                    tempSound = params[6];
-                }
                 spinner.init(this, bgScene, (data.getTime() - secPassed) / timeMultiplier,
-                        (endTime - data.getTime()) / timeMultiplier, rps, Integer.parseInt(params[4]),
-                        tempSound, stat);
+                        (endTime - data.getTime()) / timeMultiplier, rps, data.getSound(),
+                        data.getTempSound(), stat);
                 spinner.setEndsCombo(objects.isEmpty()
                         || objects.peek().isNewCombo());
                 addObject(spinner);
@@ -1829,31 +1821,13 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
 
             } else if ((objDefine & 2) > 0) {
                 final RGBColor col = getComboColor(comboNum);
-                final String soundspec = params.length > 8 ? params[8] : null;
                 final Slider slider = GameObjectPool.getInstance().getSlider();
-                String tempSound = null;
-                if (params.length > 9) {
-                    tempSound = params[9];
-                }
-                if (Config.isCalculateSliderPathInGameStart()){
-                    SliderPath sliderPath = getSliderPath(sliderIndex);
-                    slider.init(this, mgScene, pos, data.getPosOffset(), data.getTime() - secPassed,
+                // The path is already calculated if Config.isCalculateSliderPathInGameStart().
+                slider.init(this, mgScene, pos, data.getTime() - secPassed,
                         col.r(), col.g(), col.b(), scale, currentComboNum,
-                        Integer.parseInt(params[4]),
-                        Integer.parseInt(params[6]),
-                        Float.parseFloat(params[7]), params[5],
-                        currentTimingPoint, soundspec, tempSound, isFirst, Double.parseDouble(params[2]),
-                        sliderPath);
-                    sliderIndex++;
-                }
-                else{
-                    slider.init(this, mgScene, pos, data.getPosOffset(), data.getTime() - secPassed,
-                    col.r(), col.g(), col.b(), scale, currentComboNum,
-                    Integer.parseInt(params[4]),
-                    Integer.parseInt(params[6]),
-                    Float.parseFloat(params[7]), params[5],
-                    currentTimingPoint, soundspec, tempSound, isFirst, Double.parseDouble(params[2]));
-                }
+                        data.getSound(), data.getRepeats(), data.getLength(),
+                        currentTimingPoint, data.getSoundSpec(), data.getTempSound(), isFirst, data.getRawTime(),
+                        data.getPath());
                 slider.setEndsCombo(objects.isEmpty()
                         || objects.peek().isNewCombo());
                 addObject(slider);
@@ -2546,19 +2520,21 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
             cursors[i].mouseDownOffsetMS = (pSceneTouchEvent.getMotionEvent().getEventTime() - previousFrameTime) * timeMultiplier;
             for (int j = 0; j < cursors.length; j++)
                 cursors[j].mouseOldDown = false;
-            PointF gamePoint = Utils.realToTrackCoords(new PointF(pTouchX, pTouchY));
             cursors[i].mousePos.x = pTouchX;
             cursors[i].mousePos.y = pTouchY;
             if (replay != null) {
-                replay.addPress(secPassed, gamePoint, i);
+                replayTouchPoint.set(pTouchX, pTouchY);
+                Utils.changeRealToTrackCoords(replayTouchPoint);
+                replay.addPress(secPassed, replayTouchPoint, i);
             }
             cursorIIsDown[i] = true;
         } else if (pSceneTouchEvent.isActionMove()) {
-            PointF gamePoint = Utils.realToTrackCoords(new PointF(pTouchX, pTouchY));
             cursors[i].mousePos.x = pTouchX;
             cursors[i].mousePos.y = pTouchY;
             if (replay != null) {
-                replay.addMove(secPassed, gamePoint, i);
+                replayTouchPoint.set(pTouchX, pTouchY);
+                Utils.changeRealToTrackCoords(replayTouchPoint);
+                replay.addMove(secPassed, replayTouchPoint, i);
             }
         } else if (pSceneTouchEvent.isActionUp()) {
             cursors[i].mouseDown = false;
@@ -2900,8 +2876,7 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
         int i = 0;
         for (GameObjectData data : objects){
             final PointF pos = data.getPos();
-            final String[] params = data.getData();
-            final int objDefine = Integer.parseInt(params[3]);
+            final int objDefine = data.getComboCode();
             if (objects.isEmpty() == false && (objDefine & 1) > 0 && i + 1 < objects.size()) {
                 if (objects.get(i + 1).getTime() - data.getTime() < 2f * GameHelper.getStackLeniency()
                         && Utils.squaredDistance(pos, objects.get(i + 1).getPos()) < scale) {
@@ -2914,51 +2889,14 @@ public class GameScene implements IUpdateHandler, GameObjectListener,
     }
 
     private void calculateAllSliderPaths(){
-        if (objects.isEmpty()){
-            return;
-        }
-        else {
-            if (lastTrack.getSliderCount() <= 0){
-                return;
-            }
-            sliderPaths = new SliderPath[lastTrack.getSliderCount()];
-            for (SliderPath path : sliderPaths){
-                path = null;
-            }
-            int i = 0;
-            sliderIndex = 0;
-            for (GameObjectData data : objects){
-                final String[] params = data.getData();
-                final int objDefine = Integer.parseInt(params[3]);
-                //is slider
-                if ((objDefine & 2) > 0) {
-                    final PointF pos = data.getPos();
-                    final float length = Float.parseFloat(params[7]);
-                    final float offset = data.getPosOffset();
-                    pos.x += data.getPosOffset();
-                    pos.y += data.getPosOffset();
-                    if (length < 0){
-                        sliderPaths[sliderIndex] = GameHelper.calculatePath(Utils.realToTrackCoords(pos),
-                        params[5].split("[|]"), 0, offset);
-                    }
-                    else{
-                        sliderPaths[sliderIndex] = GameHelper.calculatePath(Utils.realToTrackCoords(pos),
-                        params[5].split("[|]"), length, offset);
-                    }
-                    sliderIndex++;
-                }
-                i++;
+        for (GameObjectData data : objects){
+            //is slider
+            if ((data.getComboCode() & 2) > 0) {
+                final PointF pos = data.getPos();
+                pos.x += data.getPosOffset();
+                pos.y += data.getPosOffset();
+                data.getPath();
             }
-            sliderIndex = 0;
-        }
-    }
-
-    private SliderPath getSliderPath(int index){
-        if (sliderPaths != null && index < sliderPaths.length && index >= 0){
-            return sliderPaths[index];
-        }
-        else {
-            return null;
         }
     }
 
@@ -93,17 +93,9 @@ public class Slider extends GameObject {
     }
 
     public void init(final GameObjectListener listener, final Scene scene,
-                     final PointF pos, final float offset, final float time, final float r, final float g,
+                     final PointF pos, final float time, final float r, final float g,
                      final float b, final float scale, int num, final int sound, final int repeats,
-                     final float length, final String data, final TimingPoint timing,
-                     final String customSound, final String tempSound, final boolean isFirstNote, final double realTime) {
-        init(listener, scene, pos, offset, time, r, g, b, scale, num, sound, repeats, length, data, timing, customSound, tempSound, isFirstNote, realTime, null);
-    }
-
-    public void init(final GameObjectListener listener, final Scene scene,
-                     final PointF pos, final float offset, final float time, final float r, final float g,
-                     final float b, final float scale, int num, final int sound, final int repeats,
-                     final float length, final String data, final TimingPoint timing,
+                     final float length, final TimingPoint timing,
                      final String customSound, final String tempSound, final boolean isFirstNote, final double realTime,
                      SliderPath sliderPath) {
         this.listener = listener;
@@ -113,10 +105,7 @@ public class Slider extends GameObject {
         this.pos = pos;
         passedTime = -time;
         preTime = time;
-        path = sliderPath != null ?
-                sliderPath :
-                GameHelper.calculatePath(Utils.realToTrackCoords(pos),
-                        data.split("[|]"), Math.max(0, length), offset);
+        path = sliderPath;
 
         num += 1;
         if (OsuSkin.get().isLimitComboTextLength()) {
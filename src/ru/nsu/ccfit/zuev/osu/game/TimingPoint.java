@@ -1,6 +1,7 @@
 package ru.nsu.ccfit.zuev.osu.game;
 
 import ru.nsu.ccfit.zuev.osu.Constants;
+import ru.nsu.ccfit.zuev.osu.beatmap.sections.BeatmapTimingPoints;
 
 public class TimingPoint {
     private static String defaultSound = "normal";
@@ -14,53 +15,49 @@ public class TimingPoint {
     boolean kiai;
     private final double speed;
 
-    public TimingPoint(final String[] data, final TimingPoint prevData) {
-        time = Float.parseFloat(data[0]) / 1000.0f;
-        beatLength = Double.parseDouble(data[1]);
+    /**
+     * Creates a timing point from a timing point of a beatmap.
+     *
+     * @param points The timing points of the beatmap.
+     * @param index The index of the timing point.
+     * @param prevData The last uninherited timing point, <code>null</code> if there is none.
+     */
+    public TimingPoint(final BeatmapTimingPoints points, final int index, final TimingPoint prevData) {
+        this(points.getTime(index), points.getBeatLength(index), points.getMeter(index), points.getSampleType(index),
+                points.getSampleIndex(index), points.getVolume(index), points.getEffects(index), prevData);
+    }
+
+    public TimingPoint(final double time, final double beatLength, final int meter, final int sampleType,
+                       final int customSound, final int volume, final int effects, final TimingPoint prevData) {
+        this.time = (float) time / 1000.0f;
+        this.beatLength = beatLength;
         if (beatLength < 0 && prevData != null) {
             inherited = true;
             speed = -100.0f / beatLength;
-            beatLength = -prevData.getBeatLength() * (beatLength / 100.0f);
+            this.beatLength = -prevData.getBeatLength() * (beatLength / 100.0f);
         } else {
-            beatLength /= 1000.0f;
+            this.beatLength /= 1000.0f;
             speed = 1.0f;
         }
         //beatLength = FMath.clamp(beatLength, 0.006f, 60);
         //speed = FMath.clamp(speed, 0.1f, 10);
 
-        if (data.length > 2) {
-            if ("4".equals(data[2])) {
-                signature = 4;
-            }
-            if ("3".equals(data[2])) {
-                signature = 3;
-            }
+        if (meter == 3) {
+            signature = 3;
         }
 
-        if (data.length > 3) {
-            if (data[3].equals("1")) {
-                hitSound = Constants.SAMPLE_PREFIX[1];
-            } else if (data[3].equals("3")) {
-                hitSound = Constants.SAMPLE_PREFIX[3];
-            } else {
-                hitSound = Constants.SAMPLE_PREFIX[2];
-            }
-        } else {
+        if (sampleType == 1) {
+            hitSound = Constants.SAMPLE_PREFIX[1];
+        } else if (sampleType == 3) {
+            hitSound = Constants.SAMPLE_PREFIX[3];
+        } else if (sampleType == BeatmapTimingPoints.DEFAULT_SAMPLE_TYPE) {
             hitSound = getDefaultSound();
-        }
-        if (data.length > 4) {
-            customSound = Integer.parseInt(data[4]);
-        }
-        if (data.length > 5) {
-            volume = Integer.parseInt(data[5]) / 100f;
-        } else {
-            volume = 1;
-        }
-        if (data.length > 7) {
-            kiai = (!data[7].equals("0"));
         } else {
-            kiai = false;
+            hitSound = Constants.SAMPLE_PREFIX[2];
         }
+        this.customSound = customSound;
+        this.volume = volume / 100f;
+        kiai = effects != 0;
     }
 
     public static String getDefaultSound() {
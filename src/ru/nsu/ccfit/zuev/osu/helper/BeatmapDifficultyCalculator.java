@@ -10,9 +10,12 @@ import com.rian.difficultycalculator.calculator.DifficultyCalculator;
 import com.rian.difficultycalculator.calculator.PerformanceCalculationParameters;
 import com.rian.difficultycalculator.calculator.PerformanceCalculator;
 
-import java.util.HashMap;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+import ru.nsu.ccfit.zuev.osu.GlobalManager;
 import ru.nsu.ccfit.zuev.osu.beatmap.BeatmapData;
 import ru.nsu.ccfit.zuev.osu.scoring.StatisticV2;
 
@@ -25,7 +28,13 @@ public final class BeatmapDifficultyCalculator {
     /**
      * Cache of difficulty calculations, mapped by MD5 hash of a beatmap.
      */
-    private static final HashMap<String, BeatmapDifficultyCacheManager> difficultyCacheManager = new HashMap<>();
+    private static final ConcurrentHashMap<String, BeatmapDifficultyCacheManager> difficultyCacheManager =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Persistent cache of difficulty calculations, which survives restarts.
+     */
+    private static PersistentDifficultyCache persistentCache;
 
     /**
      * Constructs a <code>DifficultyCalculationParameters</code> from a <code>StatisticV2</code>.
@@ -107,20 +116,103 @@ public final class BeatmapDifficultyCalculator {
      */
     public static DifficultyAttributes calculateDifficulty(
             final BeatmapData beatmap, final DifficultyCalculationParameters parameters) {
-        var cacheManager = difficultyCacheManager.get(beatmap.getMD5());
+        var md5 = beatmap.getMD5();
+        var cacheKey = DifficultyCacheKey.from(parameters, difficultyCalculator.difficultyAdjustmentMods);
+        var cacheManager = md5 != null ? difficultyCacheManager.get(md5) : null;
 
         if (cacheManager != null) {
-            var attributes = cacheManager.getDifficultyCache(parameters);
+            var attributes = cacheManager.getDifficultyCache(cacheKey);
 
             if (attributes != null) {
                 return attributes;
             }
         }
 
-        var attributes = difficultyCalculator.calculate(
+        var attributes = getPersistentCache().get(md5, cacheKey);
+
+        if (attributes != null) {
+            addCache(beatmap, cacheKey, attributes);
+            return attributes;
+        }
+
+        attributes = difficultyCalculator.calculate(
                 constructDifficultyBeatmap(beatmap), parameters);
 
-        addCache(beatmap, parameters, attributes);
+        addCache(beatmap, cacheKey, attributes);
+        getPersistentCache().put(md5, cacheKey, attributes);
+
+        return attributes;
+    }
+
+    /**
+     * Retrieves the cached difficulty of a beatmap without parameters, without calculating it.
+     *
+     * @param md5 The MD5 hash of the beatmap.
+     * @return A structure describing the difficulty of the beatmap, <code>null</code> if it has not been calculated.
+     */
+    public static DifficultyAttributes getCachedDifficulty(final String md5) {
+        var cacheManager = md5 != null ? difficultyCacheManager.get(md5) : null;
+
+        if (cacheManager != null) {
+            var attributes = cacheManager.getDifficultyCache(DifficultyCacheKey.NONE);
+
+            if (attributes != null) {
+                return attributes;
+            }
+        }
+
+        return getPersistentCache().get(md5, DifficultyCacheKey.NONE);
+    }
+
+    /**
+     * Calculates the difficulty of a <code>BeatmapData</code> for multiple calculation parameters at once.
+     * <br><br>
+     * Cached results are reused, and the remaining calculations share the same beatmap.
+     *
+     * @param beatmap The <code>BeatmapData</code> to calculate.
+     * @param parameters The parameters of the calculations. <code>null</code> entries are treated as no mods.
+     * @return Structures describing the difficulty of the <code>BeatmapData</code>, in the same order
+     * as <code>parameters</code>.
+     */
+    public static List<DifficultyAttributes> calculateDifficulties(
+            final BeatmapData beatmap, final List<DifficultyCalculationParameters> parameters) {
+        var md5 = beatmap.getMD5();
+        var cacheManager = md5 != null ? difficultyCacheManager.get(md5) : null;
+
+        var attributes = new ArrayList<DifficultyAttributes>(parameters.size());
+        var uncachedParameters = new ArrayList<DifficultyCalculationParameters>();
+        var uncachedIndices = new ArrayList<Integer>();
+
+        for (int i = 0; i < parameters.size(); ++i) {
+            var cacheKey = DifficultyCacheKey.from(parameters.get(i), difficultyCalculator.difficultyAdjustmentMods);
+            var cached = cacheManager != null ? cacheManager.getDifficultyCache(cacheKey) : null;
+
+            if (cached == null) {
+                cached = getPersistentCache().get(md5, cacheKey);
+            }
+
+            if (cached == null) {
+                uncachedParameters.add(parameters.get(i));
+                uncachedIndices.add(i);
+            }
+
+            attributes.add(cached);
+        }
+
+        if (uncachedParameters.isEmpty()) {
+            return attributes;
+        }
+
+        var calculated = difficultyCalculator.calculateBatch(
+                constructDifficultyBeatmap(beatmap), uncachedParameters);
+
+        for (int i = 0; i < calculated.size(); ++i) {
+            var cacheKey = DifficultyCacheKey.from(uncachedParameters.get(i), difficultyCalculator.difficultyAdjustmentMods);
+
+            attributes.set(uncachedIndices.get(i), calculated.get(i));
+            addCache(beatmap, cacheKey, calculated.get(i));
+            getPersistentCache().put(md5, cacheKey, calculated.get(i));
+        }
 
         return attributes;
     }
@@ -166,10 +258,12 @@ public final class BeatmapDifficultyCalculator {
      */
     public static List<TimedDifficultyAttributes> calculateTimedDifficulty(
             final BeatmapData beatmap, final DifficultyCalculationParameters parameters) {
-        var cacheManager = difficultyCacheManager.get(beatmap.getMD5());
+        var md5 = beatmap.getMD5();
+        var cacheKey = DifficultyCacheKey.from(parameters, difficultyCalculator.difficultyAdjustmentMods);
+        var cacheManager = md5 != null ? difficultyCacheManager.get(md5) : null;
 
         if (cacheManager != null) {
-            var attributes = cacheManager.getTimedDifficultyCache(parameters);
+            var attributes = cacheManager.getTimedDifficultyCache(cacheKey);
 
             if (attributes != null) {
                 return attributes;
@@ -179,7 +273,7 @@ public final class BeatmapDifficultyCalculator {
         var attributes = difficultyCalculator.calculateTimed(
                 constructDifficultyBeatmap(beatmap), parameters);
 
-        addCache(beatmap, parameters, attributes);
+        addCache(beatmap, cacheKey, attributes);
 
         return attributes;
     }
@@ -238,6 +332,28 @@ public final class BeatmapDifficultyCalculator {
         }
     }
 
+    /**
+     * Saves the persistent difficulty cache to disk if it has been modified.
+     *
+     * @param force Whether to save regardless of when the cache was last saved.
+     */
+    public static void savePersistentCache(boolean force) {
+        getPersistentCache().save(force);
+    }
+
+    /**
+     * Gets the persistent difficulty cache, creating it if needed.
+     */
+    private static synchronized PersistentDifficultyCache getPersistentCache() {
+        if (persistentCache == null) {
+            persistentCache = new PersistentDifficultyCache(
+                    new File(GlobalManager.getInstance().getMainActivity().getFilesDir(), "difficulty.cache.dat")
+            );
+        }
+
+        return persistentCache;
+    }
+
     /**
      * Constructs a <code>DifficultyBeatmap</code> from a <code>BeatmapData</code>.
      *
@@ -264,94 +380,111 @@ public final class BeatmapDifficultyCalculator {
      * Adds a cache to the difficulty cache.
      *
      * @param beatmap The beatmap to cache.
-     * @param parameters The difficulty calculation parameters to cache.
+     * @param cacheKey The key of the difficulty calculation parameters to cache.
      * @param attributes The difficulty attributes to cache.
      */
-    private static void addCache(BeatmapData beatmap, DifficultyCalculationParameters parameters,
+    private static void addCache(BeatmapData beatmap, DifficultyCacheKey cacheKey,
                                  DifficultyAttributes attributes) {
         var md5 = beatmap.getMD5();
-        var cacheManager = difficultyCacheManager.get(md5);
 
-        if (cacheManager == null) {
-            cacheManager = new BeatmapDifficultyCacheManager();
-            difficultyCacheManager.put(md5, cacheManager);
+        if (md5 == null) {
+            return;
         }
 
-        cacheManager.addCache(parameters, attributes, 60 * 1000);
+        getCacheManager(md5).addCache(cacheKey, attributes, 60 * 1000);
     }
 
     /**
      * Adds a cache to the difficulty cache.
      *
      * @param beatmap The beatmap to cache.
-     * @param parameters The difficulty calculation parameters to cache.
+     * @param cacheKey The key of the difficulty calculation parameters to cache.
      * @param attributes The timed difficulty attributes to cache.
      */
-    private static void addCache(BeatmapData beatmap, DifficultyCalculationParameters parameters,
+    private static void addCache(BeatmapData beatmap, DifficultyCacheKey cacheKey,
                                  List<TimedDifficultyAttributes> attributes) {
         var md5 = beatmap.getMD5();
+
+        if (md5 == null) {
+            return;
+        }
+
+        // Allow a maximum of 5 minutes of living cache.
+        getCacheManager(md5).addCache(cacheKey, attributes, Math.min(beatmap.getDuration(), 5 * 60 * 1000));
+    }
+
+    /**
+     * Gets the cache manager of a beatmap, creating it if needed.
+     *
+     * @param md5 The MD5 hash of the beatmap.
+     * @return The cache manager of the beatmap.
+     */
+    private static BeatmapDifficultyCacheManager getCacheManager(String md5) {
         var cacheManager = difficultyCacheManager.get(md5);
 
         if (cacheManager == null) {
-            cacheManager = new BeatmapDifficultyCacheManager();
-            difficultyCacheManager.put(md5, cacheManager);
+            var newCacheManager = new BeatmapDifficultyCacheManager();
+
+            cacheManager = difficultyCacheManager.putIfAbsent(md5, newCacheManager);
+
+            if (cacheManager == null) {
+                cacheManager = newCacheManager;
+            }
         }
 
-        // Allow a maximum of 5 minutes of living cache.
-        cacheManager.addCache(parameters, attributes, Math.min(beatmap.getDuration(), 5 * 60 * 1000));
+        return cacheManager;
     }
 
     /**
      * A cache holder for a beatmap.
      */
     private static final class BeatmapDifficultyCacheManager {
-        private final HashMap<DifficultyCalculationParameters, BeatmapDifficultyCache<DifficultyAttributes>>
-                attributeCache = new HashMap<>();
-        private final HashMap<DifficultyCalculationParameters, BeatmapDifficultyCache<List<TimedDifficultyAttributes>>>
-                timedAttributeCache = new HashMap<>();
+        private final ConcurrentHashMap<DifficultyCacheKey, BeatmapDifficultyCache<DifficultyAttributes>>
+                attributeCache = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<DifficultyCacheKey, BeatmapDifficultyCache<List<TimedDifficultyAttributes>>>
+                timedAttributeCache = new ConcurrentHashMap<>();
 
         /**
          * Adds a difficulty attributes cache.
          *
-         * @param parameters The difficulty parameters of the difficulty attributes.
+         * @param cacheKey The key of the difficulty parameters of the difficulty attributes.
          * @param attributes The difficulty attributes to cache.
          * @param timeToLive The duration at which this cache is allowed to live, in milliseconds.
          */
-        public void addCache(DifficultyCalculationParameters parameters, DifficultyAttributes attributes,
-                             long timeToLive) {
-            addCache(parameters, attributes, attributeCache, timeToLive);
+        public void addCache(DifficultyCacheKey cacheKey, DifficultyAttributes attributes, long timeToLive) {
+            attributeCache.put(cacheKey, new BeatmapDifficultyCache<>(attributes, timeToLive));
         }
 
         /**
          * Adds a difficulty attributes cache.
          *
-         * @param parameters The difficulty parameters of the difficulty attributes.
+         * @param cacheKey The key of the difficulty parameters of the difficulty attributes.
          * @param attributes The timed difficulty attributes to cache.
          * @param timeToLive The duration at which this cache is allowed to live, in milliseconds.
          */
-        public void addCache(DifficultyCalculationParameters parameters, List<TimedDifficultyAttributes> attributes,
+        public void addCache(DifficultyCacheKey cacheKey, List<TimedDifficultyAttributes> attributes,
                              long timeToLive) {
-            addCache(parameters, attributes, timedAttributeCache, timeToLive);
+            timedAttributeCache.put(cacheKey, new BeatmapDifficultyCache<>(attributes, timeToLive));
         }
 
         /**
          * Retrieves the difficulty attributes cache of a calculation parameter.
          *
-         * @param parameters The difficulty calculation parameter to retrieve.
+         * @param cacheKey The key of the difficulty calculation parameter to retrieve.
          * @return The difficulty attributes, <code>null</code> if not found.
          */
-        public DifficultyAttributes getDifficultyCache(DifficultyCalculationParameters parameters) {
-            return getCache(parameters, attributeCache);
+        public DifficultyAttributes getDifficultyCache(DifficultyCacheKey cacheKey) {
+            return getCache(cacheKey, attributeCache);
         }
 
         /**
          * Retrieves the timed difficulty attributes cache of a calculation parameter.
          *
-         * @param parameters The difficulty calculation parameter to retrieve.
+         * @param cacheKey The key of the difficulty calculation parameter to retrieve.
          * @return The timed difficulty attributes, <code>null</code> if not found.
          */
-        public List<TimedDifficultyAttributes> getTimedDifficultyCache(DifficultyCalculationParameters parameters) {
-            return getCache(parameters, timedAttributeCache);
+        public List<TimedDifficultyAttributes> getTimedDifficultyCache(DifficultyCacheKey cacheKey) {
+            return getCache(cacheKey, timedAttributeCache);
         }
 
         /**
@@ -371,99 +504,28 @@ public final class BeatmapDifficultyCalculator {
             invalidateExpiredCache(currentTime, timedAttributeCache);
         }
 
-        /**
-         * Invalidates all expired cache of a cache map in this manager.
-         *
-         * @param currentTime The time to invalidate the cache against, in milliseconds.
-         * @param cacheMap The map.
-         */
         private <T> void invalidateExpiredCache(long currentTime,
-                                                HashMap<DifficultyCalculationParameters, BeatmapDifficultyCache<T>> cacheMap) {
-            for (var iterator = cacheMap.entrySet().iterator(); iterator.hasNext();) {
-                var entry = iterator.next().getValue();
-
-                if (entry.isExpired(currentTime)) {
+                                                ConcurrentHashMap<DifficultyCacheKey, BeatmapDifficultyCache<T>> cacheMap) {
+            for (var iterator = cacheMap.values().iterator(); iterator.hasNext();) {
+                if (iterator.next().isExpired(currentTime)) {
                     iterator.remove();
                 }
             }
         }
 
-        /**
-         * Adds a difficulty attributes cache to a cache map.
-         *
-         * @param parameters The difficulty calculation parameter to cache.
-         * @param cache The difficulty attributes cache to add.
-         * @param cacheMap The map to add the cache to.
-         * @param timeToLive The duration at which this cache is allowed to live, in milliseconds.
-         * @param <T> The difficulty attributes cache type.
-         */
-        private <T> void addCache(DifficultyCalculationParameters parameters, T cache,
-                                  HashMap<DifficultyCalculationParameters, BeatmapDifficultyCache<T>> cacheMap,
-                                  long timeToLive) {
-            if (parameters != null) {
-                // Copy the parameter for caching.
-                parameters = parameters.copy();
-                parameters.mods.retainAll(difficultyCalculator.difficultyAdjustmentMods);
-            } else {
-                parameters = new DifficultyCalculationParameters();
-            }
-
-            cacheMap.put(parameters, new BeatmapDifficultyCache<>(cache, timeToLive));
-        }
-
         /**
          * Gets the cache of difficulty attributes of a calculation parameter.
          *
-         * @param parameters The difficulty calculation parameter to retrieve.
+         * @param cacheKey The key of the difficulty calculation parameter to retrieve.
          * @param cacheMap The map containing the cache to lookup for.
          * @return The difficulty attributes, <code>null</code> if not found.
          * @param <T> The difficulty attributes cache type.
          */
-        private <T> T getCache(DifficultyCalculationParameters parameters,
-                               HashMap<DifficultyCalculationParameters, BeatmapDifficultyCache<T>> cacheMap) {
-            if (parameters != null) {
-                // Copy the parameter for caching.
-                parameters = parameters.copy();
-                parameters.mods.retainAll(difficultyCalculator.difficultyAdjustmentMods);
-            } else {
-                parameters = new DifficultyCalculationParameters();
-            }
-
-            for (var cache : cacheMap.entrySet()) {
-                if (isParameterEqual(cache.getKey(), parameters)) {
-                    return cache.getValue().cache;
-                }
-            }
-
-            return null;
-        }
-
-        /**
-         * Determines if two calculation parameters are equal.
-         *
-         * @param parameter1 The first parameter.
-         * @param parameter2 The second parameter.
-         * @return Whether both calculation parameters are equal.
-         */
-        private boolean isParameterEqual(DifficultyCalculationParameters parameter1,
-                                         DifficultyCalculationParameters parameter2) {
-            if (parameter1.customSpeedMultiplier != parameter2.customSpeedMultiplier) {
-                return false;
-            }
-
-            if (parameter1.isForceAR() != parameter2.isForceAR()) {
-                return false;
-            }
-
-            // If both parameters enable force AR, check for equality.
-            if (parameter1.isForceAR() && parameter2.isForceAR()
-                    && parameter1.forcedAR != parameter2.forcedAR) {
-                return false;
-            }
+        private <T> T getCache(DifficultyCacheKey cacheKey,
+                               ConcurrentHashMap<DifficultyCacheKey, BeatmapDifficultyCache<T>> cacheMap) {
+            var cache = cacheMap.get(cacheKey);
 
-            // Check whether mods are equal.
-            return parameter1.mods.size() == parameter2.mods.size() &&
-                    parameter1.mods.containsAll(parameter2.mods);
+            return cache != null ? cache.cache : null;
         }
     }
 
@@ -498,7 +560,7 @@ public final class BeatmapDifficultyCalculator {
          * @return Whether the cache has expired.
          */
         public boolean isExpired(long time) {
-            return generatedTime + timeToLive > time;
+            return generatedTime + timeToLive < time;
         }
     }
-}
\ No newline at end of file
+}
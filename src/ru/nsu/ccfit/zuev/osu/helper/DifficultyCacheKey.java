@@ -0,0 +1,139 @@
+package ru.nsu.ccfit.zuev.osu.helper;
+
+import com.rian.difficultycalculator.calculator.DifficultyCalculationParameters;
+
+import java.util.EnumSet;
+
+import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
+
+/**
+ * An immutable, hashable key describing the difficulty-affecting part of a
+ * <code>DifficultyCalculationParameters</code>.
+ * <br><br>
+ * Mods that cannot alter difficulty are dropped, so two parameters that yield the same
+ * difficulty attributes always produce equal keys.
+ */
+public final class DifficultyCacheKey {
+    /**
+     * The key of calculations without parameters.
+     */
+    public static final DifficultyCacheKey NONE = new DifficultyCacheKey(0, 1, Float.NaN);
+
+    /**
+     * The mod bits in the upper 32 bits, and the raw bits of the custom speed multiplier in the lower 32 bits.
+     */
+    private final long packed;
+
+    /**
+     * The raw bits of the forced AR.
+     */
+    private final int forcedARBits;
+
+    private DifficultyCacheKey(int modBits, float customSpeedMultiplier, float forcedAR) {
+        packed = (long) modBits << 32 | Float.floatToIntBits(customSpeedMultiplier) & 0xFFFFFFFFL;
+
+        // floatToIntBits collapses every NaN into a single canonical value.
+        forcedARBits = Float.floatToIntBits(forcedAR);
+    }
+
+    /**
+     * Creates a key from a <code>DifficultyCalculationParameters</code>.
+     *
+     * @param parameters The parameters. Can be <code>null</code>.
+     * @param difficultyAdjustmentMods Mods that can alter difficulty.
+     * @return The key of the parameters.
+     */
+    public static DifficultyCacheKey from(DifficultyCalculationParameters parameters,
+                                          EnumSet<GameMod> difficultyAdjustmentMods) {
+        if (parameters == null) {
+            return NONE;
+        }
+
+        int modBits = 0;
+
+        for (GameMod mod : parameters.mods) {
+            if (difficultyAdjustmentMods.contains(mod)) {
+                modBits |= 1 << mod.ordinal();
+            }
+        }
+
+        return new DifficultyCacheKey(modBits, parameters.customSpeedMultiplier, parameters.forcedAR);
+    }
+
+    /**
+     * Creates a key from its components.
+     *
+     * @param mods The mods, which are expected to only contain mods that can alter difficulty.
+     * @param customSpeedMultiplier The custom speed multiplier.
+     * @param forcedAR The forced AR, <code>Float.NaN</code> if disabled.
+     * @return The key.
+     */
+    public static DifficultyCacheKey of(EnumSet<GameMod> mods, float customSpeedMultiplier, float forcedAR) {
+        int modBits = 0;
+
+        for (GameMod mod : mods) {
+            modBits |= 1 << mod.ordinal();
+        }
+
+        return new DifficultyCacheKey(modBits, customSpeedMultiplier, forcedAR);
+    }
+
+    /**
+     * Gets the mod bits of this key, indexed by <code>GameMod</code> ordinal.
+     * <br><br>
+     * Ordinals change when <code>GameMod</code> is reordered, so these bits must not be persisted.
+     */
+    public int getModBits() {
+        return (int) (packed >>> 32);
+    }
+
+    /**
+     * Gets the mods of this key.
+     */
+    public EnumSet<GameMod> getMods() {
+        EnumSet<GameMod> mods = EnumSet.noneOf(GameMod.class);
+        int modBits = getModBits();
+
+        for (GameMod mod : GameMod.values()) {
+            if ((modBits & 1 << mod.ordinal()) != 0) {
+                mods.add(mod);
+            }
+        }
+
+        return mods;
+    }
+
+    /**
+     * Gets the custom speed multiplier of this key.
+     */
+    public float getCustomSpeedMultiplier() {
+        return Float.intBitsToFloat((int) packed);
+    }
+
+    /**
+     * Gets the forced AR of this key, <code>Float.NaN</code> if disabled.
+     */
+    public float getForcedAR() {
+        return Float.intBitsToFloat(forcedARBits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof DifficultyCacheKey)) {
+            return false;
+        }
+
+        DifficultyCacheKey other = (DifficultyCacheKey) o;
+
+        return packed == other.packed && forcedARBits == other.forcedARBits;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (packed ^ (packed >>> 32)) + forcedARBits;
+    }
+}
@@ -0,0 +1,361 @@
+package ru.nsu.ccfit.zuev.osu.helper;
+
+import com.rian.difficultycalculator.attributes.DifficultyAttributes;
+import com.rian.difficultycalculator.calculator.DifficultyCalculator;
+
+import org.anddev.andengine.util.Debug;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
+
+/**
+ * A persistent, size-bounded store of difficulty attributes that survives restarts.
+ * <br><br>
+ * Entries are keyed by beatmap MD5 hash and <code>DifficultyCacheKey</code>. The whole store is discarded when
+ * <code>DifficultyCalculator.VERSION</code> changes.
+ * <br><br>
+ * Mods are persisted by name rather than by ordinal, so that changes to <code>GameMod</code> cannot make an entry
+ * describe different mods than it was calculated with. The store is written to a temporary file which then replaces
+ * the previous one, so that an interrupted save does not lose every entry.
+ * <br><br>
+ * The file is only read and written outside the lock that guards the entries, so that lookups do not wait on disk.
+ */
+public final class PersistentDifficultyCache {
+    private static final String HEADER = "difficultycache";
+
+    /**
+     * The version of the on-disk format, which is independent of <code>DifficultyCalculator.VERSION</code>.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * The maximum amount of entries held by the store. Least recently used entries are evicted first.
+     */
+    private static final int MAX_ENTRIES = 50000;
+
+    /**
+     * The minimum interval between two non-forced saves, in milliseconds.
+     */
+    private static final long SAVE_INTERVAL = 10 * 1000;
+
+    private final File file;
+
+    private final LinkedHashMap<Key, DifficultyAttributes> entries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, DifficultyAttributes> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    /**
+     * Held while the file is being read, so that lookups wait for the store to be loaded.
+     */
+    private final Object loadLock = new Object();
+
+    /**
+     * Held while the file is being written, so that two saves do not write the temporary file at once.
+     */
+    private final Object saveLock = new Object();
+
+    private volatile boolean loaded;
+    private boolean dirty;
+    private long lastSaveTime;
+
+    /**
+     * @param file The file to persist the store to.
+     */
+    public PersistentDifficultyCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Retrieves the difficulty attributes of a beatmap.
+     *
+     * @param md5 The MD5 hash of the beatmap.
+     * @param cacheKey The key of the difficulty calculation parameters.
+     * @return The difficulty attributes, <code>null</code> if not found.
+     */
+    public DifficultyAttributes get(String md5, DifficultyCacheKey cacheKey) {
+        if (md5 == null) {
+            return null;
+        }
+
+        ensureLoaded();
+
+        synchronized (this) {
+            return entries.get(new Key(md5, cacheKey));
+        }
+    }
+
+    /**
+     * Stores the difficulty attributes of a beatmap.
+     *
+     * @param md5 The MD5 hash of the beatmap.
+     * @param cacheKey The key of the difficulty calculation parameters.
+     * @param attributes The difficulty attributes to store.
+     */
+    public void put(String md5, DifficultyCacheKey cacheKey, DifficultyAttributes attributes) {
+        if (md5 == null) {
+            return;
+        }
+
+        ensureLoaded();
+
+        synchronized (this) {
+            entries.put(new Key(md5, cacheKey), attributes);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Saves the store to disk if it has been modified.
+     *
+     * @param force Whether to ignore the minimum interval between saves.
+     */
+    public void save(boolean force) {
+        if (!loaded) {
+            return;
+        }
+
+        synchronized (saveLock) {
+            ArrayList<Key> keys;
+            ArrayList<DifficultyAttributes> values;
+
+            synchronized (this) {
+                long currentTime = System.currentTimeMillis();
+
+                if (!dirty || (!force && currentTime - lastSaveTime < SAVE_INTERVAL)) {
+                    return;
+                }
+
+                // Also set on failure, so that a failing save is not retried on every call.
+                lastSaveTime = currentTime;
+
+                // Cleared before writing, so that entries stored while writing mark the store as modified again.
+                dirty = false;
+
+                // Iteration order is least to most recently used, which is preserved on load.
+                keys = new ArrayList<>(entries.keySet());
+                values = new ArrayList<>(entries.values());
+            }
+
+            if (!write(keys, values)) {
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes entries to a temporary file, which then replaces the file of the store.
+     *
+     * @param keys The keys of the entries.
+     * @param values The difficulty attributes of the entries.
+     * @return Whether the entries were written.
+     */
+    private boolean write(ArrayList<Key> keys, ArrayList<DifficultyAttributes> values) {
+        var tempFile = new File(file.getPath() + ".tmp");
+
+        try (var ostream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            ostream.writeUTF(HEADER);
+            ostream.writeInt(FORMAT_VERSION);
+            ostream.writeInt(DifficultyCalculator.VERSION);
+            ostream.writeInt(keys.size());
+
+            for (int i = 0; i < keys.size(); ++i) {
+                writeEntry(ostream, keys.get(i), values.get(i));
+            }
+        } catch (IOException e) {
+            Debug.e("PersistentDifficultyCache: " + e.getMessage(), e);
+
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return false;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            Debug.e("PersistentDifficultyCache: Unable to replace " + file.getPath());
+
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Loads the store from disk if it has not been loaded yet.
+     * <br><br>
+     * The file is read outside the lock that guards the entries, and merged into them once read.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (loadLock) {
+            if (loaded) {
+                return;
+            }
+
+            var loadedEntries = new LinkedHashMap<Key, DifficultyAttributes>();
+            boolean stale = false;
+
+            if (file.exists()) {
+                try (var istream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    if (!HEADER.equals(istream.readUTF()) || istream.readInt() != FORMAT_VERSION ||
+                            istream.readInt() != DifficultyCalculator.VERSION) {
+                        // Written in an older format or calculated with an older version of the calculator,
+                        // so every entry is stale.
+                        stale = true;
+                    } else {
+                        int count = istream.readInt();
+
+                        for (int i = 0; i < count; ++i) {
+                            stale |= !readEntry(istream, loadedEntries);
+                        }
+                    }
+                } catch (IOException e) {
+                    Debug.e("PersistentDifficultyCache: " + e.getMessage(), e);
+
+                    loadedEntries.clear();
+                    stale = true;
+                }
+            }
+
+            synchronized (this) {
+                // Nothing can be stored before loading finishes, so the loaded entries are the only ones.
+                entries.putAll(loadedEntries);
+                dirty |= stale;
+            }
+
+            loaded = true;
+        }
+    }
+
+    private void writeEntry(DataOutputStream ostream, Key key, DifficultyAttributes attributes) throws IOException {
+        var mods = key.cacheKey.getMods();
+
+        ostream.writeUTF(key.md5);
+        ostream.writeByte(mods.size());
+
+        for (var mod : mods) {
+            ostream.writeUTF(mod.name());
+        }
+
+        ostream.writeFloat(key.cacheKey.getCustomSpeedMultiplier());
+        ostream.writeFloat(key.cacheKey.getForcedAR());
+
+        ostream.writeDouble(attributes.starRating);
+        ostream.writeInt(attributes.maxCombo);
+        ostream.writeDouble(attributes.aimDifficulty);
+        ostream.writeDouble(attributes.speedDifficulty);
+        ostream.writeDouble(attributes.flashlightDifficulty);
+        ostream.writeDouble(attributes.speedNoteCount);
+        ostream.writeDouble(attributes.aimSliderFactor);
+        ostream.writeDouble(attributes.approachRate);
+        ostream.writeDouble(attributes.overallDifficulty);
+        ostream.writeInt(attributes.hitCircleCount);
+        ostream.writeInt(attributes.sliderCount);
+        ostream.writeInt(attributes.spinnerCount);
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param istream The stream to read from.
+     * @param target The map to put the entry in.
+     * @return Whether the entry could be keyed. Entries that cannot are skipped.
+     * @throws IOException If reading from the stream failed.
+     */
+    private boolean readEntry(DataInputStream istream, Map<Key, DifficultyAttributes> target) throws IOException {
+        var md5 = istream.readUTF();
+        var mods = EnumSet.noneOf(GameMod.class);
+        int modCount = istream.readByte();
+        boolean hasUnknownMod = false;
+
+        for (int i = 0; i < modCount; ++i) {
+            var name = istream.readUTF();
+
+            try {
+                mods.add(GameMod.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                hasUnknownMod = true;
+            }
+        }
+
+        var cacheKey = DifficultyCacheKey.of(mods, istream.readFloat(), istream.readFloat());
+        var attributes = new DifficultyAttributes();
+
+        attributes.mods = cacheKey.getMods();
+
+        attributes.starRating = istream.readDouble();
+        attributes.maxCombo = istream.readInt();
+        attributes.aimDifficulty = istream.readDouble();
+        attributes.speedDifficulty = istream.readDouble();
+        attributes.flashlightDifficulty = istream.readDouble();
+        attributes.speedNoteCount = istream.readDouble();
+        attributes.aimSliderFactor = istream.readDouble();
+        attributes.approachRate = istream.readDouble();
+        attributes.overallDifficulty = istream.readDouble();
+        attributes.hitCircleCount = istream.readInt();
+        attributes.sliderCount = istream.readInt();
+        attributes.spinnerCount = istream.readInt();
+
+        if (hasUnknownMod) {
+            // Calculated with a mod that no longer exists, so the entry cannot be keyed.
+            return false;
+        }
+
+        target.put(new Key(md5, cacheKey), attributes);
+        return true;
+    }
+
+    /**
+     * The key of an entry in the store.
+     */
+    private static final class Key {
+        private final String md5;
+        private final DifficultyCacheKey cacheKey;
+
+        private Key(String md5, DifficultyCacheKey cacheKey) {
+            this.md5 = md5;
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+
+            return md5.equals(other.md5) && cacheKey.equals(other.cacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * md5.hashCode() + cacheKey.hashCode();
+        }
+    }
+}
@@ -0,0 +1,582 @@
+package ru.nsu.ccfit.zuev.osu.helper;
+
+import com.rian.difficultycalculator.beatmap.hitobject.SliderPath;
+import com.rian.difficultycalculator.beatmap.hitobject.SliderPathType;
+import com.rian.difficultycalculator.math.Vector2;
+import com.rian.difficultycalculator.utils.DoubleList;
+import com.rian.difficultycalculator.utils.PathPointList;
+
+import org.anddev.andengine.util.Debug;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ru.nsu.ccfit.zuev.osu.Config;
+
+/**
+ * A cache of approximated slider paths, keyed by the content that determines them: the path type,
+ * control points, and expected distance of a slider.
+ * <br><br>
+ * Difficulties in the same beatmap set often share slider shapes, and the same beatmap is parsed again when it is
+ * selected, played, and retried. Paths are kept in a size-bounded in-memory store, and optionally persisted in one
+ * file per beatmap folder so that they survive restarts.
+ * <br><br>
+ * Cached paths are shared between sliders and must not be modified.
+ */
+public final class SliderPathCache {
+    private static final String HEADER = "sliderpathcache";
+
+    /**
+     * The version of the on-disk format. This must be bumped whenever slider path approximation changes,
+     * as that makes every persisted path stale.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The maximum amount of paths held in memory. Least recently used paths are evicted first.
+     */
+    private static final int MAX_ENTRIES = 5000;
+
+    /**
+     * The maximum amount of beatmap folders whose persisted paths are held in memory.
+     */
+    private static final int MAX_FOLDERS = 8;
+
+    /**
+     * The minimum interval between two non-forced saves, in milliseconds.
+     */
+    private static final long SAVE_INTERVAL = 10 * 1000;
+
+    private static SliderPathCache instance;
+
+    /**
+     * The directory to persist paths to, <code>null</code> if paths are only held in memory.
+     */
+    private final File directory;
+
+    private final LinkedHashMap<Key, SliderPath> entries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, SliderPath> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private final LinkedHashMap<String, FolderStore> folders =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FolderStore> eldest) {
+                    if (size() <= MAX_FOLDERS) {
+                        return false;
+                    }
+
+                    // Saved by the caller once the lock is released, so that lookups do not wait on disk writes.
+                    evictedFolders.add(eldest.getValue());
+                    return true;
+                }
+            };
+
+    private final ArrayList<FolderStore> evictedFolders = new ArrayList<>();
+
+    private long hitCount;
+    private long diskHitCount;
+    private long missCount;
+    private long lastSaveTime;
+
+    /**
+     * @param directory The directory to persist paths to, <code>null</code> to only hold paths in memory.
+     */
+    public SliderPathCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the shared instance of this cache, which persists paths in the cache directory of the game.
+     */
+    public static synchronized SliderPathCache getInstance() {
+        if (instance == null) {
+            var cachePath = Config.getCachePath();
+
+            instance = new SliderPathCache(cachePath != null ? new File(cachePath, "sliderpaths") : null);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Retrieves a slider path, calculating it if it is not cached.
+     *
+     * @param folder The path of the folder of the beatmap containing the slider, <code>null</code> to not
+     *               persist the slider path.
+     * @param type The path type of the slider.
+     * @param controlPoints The control points (anchor points) of the slider.
+     * @param expectedDistance The distance that is expected when calculating slider path.
+     * @return The slider path.
+     */
+    public SliderPath get(String folder, SliderPathType type, ArrayList<Vector2> controlPoints,
+                          double expectedDistance) {
+        var key = new Key(type, controlPoints, expectedDistance);
+        var folderStore = getFolderStore(folder);
+        SliderPath path;
+
+        synchronized (this) {
+            path = entries.get(key);
+
+            if (path != null) {
+                ++hitCount;
+            }
+        }
+
+        if (path == null && folderStore != null && (path = folderStore.get(key)) != null) {
+            synchronized (this) {
+                ++diskHitCount;
+                entries.put(key, path);
+            }
+        }
+
+        if (path != null) {
+            if (folderStore != null) {
+                folderStore.put(key, path);
+            }
+
+            return path;
+        }
+
+        synchronized (this) {
+            ++missCount;
+        }
+
+        // Calculated outside the lock, so that beatmaps parsed in parallel do not wait on each other.
+        path = new SliderPath(type, controlPoints, expectedDistance);
+
+        synchronized (this) {
+            entries.put(key, path);
+        }
+
+        if (folderStore != null) {
+            folderStore.put(key, path);
+        }
+
+        return path;
+    }
+
+    /**
+     * Deletes the persisted paths of a beatmap folder, such as when the beatmap set is deleted.
+     *
+     * @param folder The path of the beatmap folder.
+     */
+    public void delete(String folder) {
+        if (directory == null || folder == null) {
+            return;
+        }
+
+        FolderStore folderStore;
+
+        synchronized (this) {
+            folderStore = folders.remove(folder);
+        }
+
+        if (folderStore != null) {
+            folderStore.delete();
+        } else {
+            var file = getFolderFile(folder);
+
+            if (file.exists() && !file.delete()) {
+                Debug.e("SliderPathCache: Unable to delete " + file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of lookups that were served from memory.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the amount of lookups that were served from paths persisted on disk.
+     */
+    public synchronized long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * Gets the amount of lookups that required calculating a path.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the ratio of lookups that did not require calculating a path, ranging from 0 to 1.
+     */
+    public synchronized double getHitRate() {
+        long total = hitCount + diskHitCount + missCount;
+
+        return total == 0 ? 0 : (double) (hitCount + diskHitCount) / total;
+    }
+
+    /**
+     * Saves the paths of every loaded beatmap folder that has been modified to disk.
+     *
+     * @param force Whether to ignore the minimum interval between saves.
+     */
+    public void save(boolean force) {
+        long currentTime = System.currentTimeMillis();
+        ArrayList<FolderStore> folderStores;
+
+        synchronized (this) {
+            if (!force && currentTime - lastSaveTime < SAVE_INTERVAL) {
+                return;
+            }
+
+            lastSaveTime = currentTime;
+            folderStores = new ArrayList<>(folders.values());
+        }
+
+        // Written outside the lock, so that lookups do not wait on disk writes.
+        boolean saved = false;
+
+        for (var folderStore : folderStores) {
+            saved |= folderStore.save();
+        }
+
+        if (saved) {
+            synchronized (this) {
+                Debug.i("SliderPathCache: " + hitCount + " memory hits, " + diskHitCount + " disk hits, " +
+                        missCount + " misses");
+            }
+        }
+    }
+
+    /**
+     * Gets the persisted paths of a beatmap folder, loading them if needed.
+     *
+     * @param folder The path of the beatmap folder.
+     * @return The persisted paths, <code>null</code> if paths are not persisted for the folder.
+     */
+    private FolderStore getFolderStore(String folder) {
+        if (directory == null || folder == null) {
+            return null;
+        }
+
+        FolderStore folderStore;
+        ArrayList<FolderStore> evicted = null;
+
+        synchronized (this) {
+            folderStore = folders.get(folder);
+
+            if (folderStore == null) {
+                folderStore = new FolderStore(getFolderFile(folder));
+                folders.put(folder, folderStore);
+
+                if (!evictedFolders.isEmpty()) {
+                    evicted = new ArrayList<>(evictedFolders);
+                    evictedFolders.clear();
+                }
+            }
+        }
+
+        // Disk access happens outside the lock, so that other folders can be looked up meanwhile.
+        if (evicted != null) {
+            for (var evictedStore : evicted) {
+                evictedStore.save();
+            }
+        }
+
+        folderStore.ensureLoaded();
+
+        return folderStore;
+    }
+
+    private File getFolderFile(String folder) {
+        return new File(directory, MD5Calcuator.getStringMD5(folder) + ".dat");
+    }
+
+    /**
+     * The persisted paths of a beatmap folder.
+     * <br><br>
+     * Guarded by its own lock, so that loading or saving a folder does not block lookups in other folders.
+     */
+    private static final class FolderStore {
+        private final File file;
+        private final HashMap<Key, SliderPath> paths = new HashMap<>();
+        private boolean loaded;
+        private boolean deleted;
+        private boolean dirty;
+
+        private FolderStore(File file) {
+            this.file = file;
+        }
+
+        private synchronized SliderPath get(Key key) {
+            return paths.get(key);
+        }
+
+        private synchronized void put(Key key, SliderPath path) {
+            if (!deleted && !paths.containsKey(key)) {
+                paths.put(key, path);
+                dirty = true;
+            }
+        }
+
+        private synchronized void ensureLoaded() {
+            if (!loaded) {
+                loaded = true;
+                load();
+            }
+        }
+
+        private synchronized void delete() {
+            deleted = true;
+            dirty = false;
+            paths.clear();
+
+            if (file.exists() && !file.delete()) {
+                Debug.e("SliderPathCache: Unable to delete " + file.getPath());
+            }
+        }
+
+        private void load() {
+            if (!file.exists()) {
+                return;
+            }
+
+            try (var istream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (!HEADER.equals(istream.readUTF()) || istream.readInt() != VERSION) {
+                    // Approximated by an older version of the game, so every path is stale.
+                    dirty = true;
+                    return;
+                }
+
+                // The smallest entry is a type, an expected distance, and three empty counts.
+                int count = readCount(istream, 21);
+
+                for (int i = 0; i < count; ++i) {
+                    readEntry(istream);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The file is corrupt, so it is discarded and its paths are calculated again.
+                Debug.e("SliderPathCache: Discarding " + file.getPath() + ": " + e.getMessage(), e);
+
+                paths.clear();
+                dirty = false;
+
+                if (!file.delete()) {
+                    Debug.e("SliderPathCache: Unable to delete " + file.getPath());
+                }
+            }
+        }
+
+        /**
+         * Saves the paths to disk if they have been modified.
+         *
+         * @return Whether the paths were saved.
+         */
+        private synchronized boolean save() {
+            if (!dirty) {
+                return false;
+            }
+
+            var directory = file.getParentFile();
+
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                Debug.e("SliderPathCache: Unable to create " + directory.getPath());
+                return false;
+            }
+
+            // Written to a temporary file first, so that the game being killed mid-write does not corrupt the file.
+            var tempFile = new File(file.getPath() + ".tmp");
+
+            try (var ostream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                ostream.writeUTF(HEADER);
+                ostream.writeInt(VERSION);
+                ostream.writeInt(paths.size());
+
+                for (var entry : paths.entrySet()) {
+                    writeEntry(ostream, entry.getKey(), entry.getValue());
+                }
+            } catch (IOException e) {
+                Debug.e("SliderPathCache: " + e.getMessage(), e);
+
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+                return false;
+            }
+
+            if (!tempFile.renameTo(file)) {
+                Debug.e("SliderPathCache: Unable to replace " + file.getPath());
+
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+                return false;
+            }
+
+            dirty = false;
+            return true;
+        }
+
+        private void writeEntry(DataOutputStream ostream, Key key, SliderPath path) throws IOException {
+            ostream.writeByte(key.type.ordinal());
+            ostream.writeDouble(key.expectedDistance);
+            ostream.writeInt(key.controlPoints.length);
+
+            for (float value : key.controlPoints) {
+                ostream.writeFloat(value);
+            }
+
+            ostream.writeInt(path.calculatedPath.size());
+
+            for (int i = 0; i < path.calculatedPath.size(); ++i) {
+                ostream.writeFloat(path.calculatedPath.getX(i));
+                ostream.writeFloat(path.calculatedPath.getY(i));
+            }
+
+            ostream.writeInt(path.cumulativeLength.size());
+
+            for (int i = 0; i < path.cumulativeLength.size(); ++i) {
+                ostream.writeDouble(path.cumulativeLength.get(i));
+            }
+        }
+
+        private void readEntry(DataInputStream istream) throws IOException {
+            int typeOrdinal = istream.readUnsignedByte();
+
+            if (typeOrdinal >= SliderPathType.values().length) {
+                throw new IOException("Invalid slider path type " + typeOrdinal);
+            }
+
+            var type = SliderPathType.values()[typeOrdinal];
+            double expectedDistance = istream.readDouble();
+            var controlPoints = new float[readCount(istream, 4)];
+
+            if (controlPoints.length % 2 != 0) {
+                throw new IOException("Invalid control point count " + controlPoints.length);
+            }
+
+            for (int i = 0; i < controlPoints.length; ++i) {
+                controlPoints[i] = istream.readFloat();
+            }
+
+            int pathSize = readCount(istream, 8);
+            var calculatedPath = new PathPointList(pathSize);
+
+            for (int i = 0; i < pathSize; ++i) {
+                calculatedPath.add(istream.readFloat(), istream.readFloat());
+            }
+
+            int lengthSize = readCount(istream, 8);
+            var cumulativeLength = new DoubleList(lengthSize);
+
+            for (int i = 0; i < lengthSize; ++i) {
+                cumulativeLength.add(istream.readDouble());
+            }
+
+            var key = new Key(type, controlPoints, expectedDistance);
+
+            paths.put(key, new SliderPath(type, key.toVectors(), expectedDistance, calculatedPath, cumulativeLength));
+        }
+
+        /**
+         * Reads an element count, making sure that the file is large enough to contain that many elements.
+         *
+         * @param istream The stream to read from.
+         * @param elementSize The minimum size of an element in bytes.
+         * @return The element count.
+         * @throws IOException If the count is invalid, or reading from the stream failed.
+         */
+        private int readCount(DataInputStream istream, int elementSize) throws IOException {
+            int count = istream.readInt();
+
+            if (count < 0 || count > file.length() / elementSize) {
+                throw new IOException("Invalid element count " + count);
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * The content that determines an approximated slider path.
+     */
+    private static final class Key {
+        private final SliderPathType type;
+
+        /**
+         * The control points, as interleaved coordinates.
+         */
+        private final float[] controlPoints;
+
+        private final double expectedDistance;
+        private final int hashCode;
+
+        private Key(SliderPathType type, ArrayList<Vector2> controlPoints, double expectedDistance) {
+            this(type, flatten(controlPoints), expectedDistance);
+        }
+
+        private Key(SliderPathType type, float[] controlPoints, double expectedDistance) {
+            this.type = type;
+            this.controlPoints = controlPoints;
+            this.expectedDistance = expectedDistance;
+
+            long distanceBits = Double.doubleToLongBits(expectedDistance);
+            hashCode = 31 * (31 * type.ordinal() + Arrays.hashCode(controlPoints)) +
+                    (int) (distanceBits ^ (distanceBits >>> 32));
+        }
+
+        private ArrayList<Vector2> toVectors() {
+            var vectors = new ArrayList<Vector2>(controlPoints.length / 2);
+
+            for (int i = 0; i < controlPoints.length; i += 2) {
+                vectors.add(new Vector2(controlPoints[i], controlPoints[i + 1]));
+            }
+
+            return vectors;
+        }
+
+        private static float[] flatten(ArrayList<Vector2> vectors) {
+            var values = new float[vectors.size() * 2];
+
+            for (int i = 0; i < vectors.size(); ++i) {
+                values[i * 2] = vectors.get(i).x;
+                values[i * 2 + 1] = vectors.get(i).y;
+            }
+
+            return values;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+
+            return type == other.type &&
+                    Double.doubleToLongBits(expectedDistance) == Double.doubleToLongBits(other.expectedDistance) &&
+                    Arrays.equals(controlPoints, other.controlPoints);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -8,7 +8,7 @@ public class DBOpenHelper extends SQLiteOpenHelper {
     public static final String SCORES_TABLENAME = "scores";
     public static final String MAPS_TABLENAME = "ddlmaps";
     private static final String DBNAME = "osudroid_test";
-    private static final int DBVERSION = 6;
+    private static final int DBVERSION = 7;
     private static DBOpenHelper helper = null;
 
     private DBOpenHelper(Context context) {
@@ -50,13 +50,22 @@ public class DBOpenHelper extends SQLiteOpenHelper {
                 + "inserttime INTEGER,"
                 + "link TEXT);");
 
+        createScoreIndexes(db);
+    }
+
+    /**
+     * Creates the indexes used to look up the scores of a beatmap, best score first.
+     */
+    private static void createScoreIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + SCORES_TABLENAME + "_filename_score ON "
+                + SCORES_TABLENAME + " (filename, score DESC);");
     }
 
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         //db.execSQL("DROP TABLE IF EXISTS " + TABLENAME);
-        if (oldVersion <= 5 && newVersion == 6) {
+        if (oldVersion <= 5) {
             if (oldVersion != 5) {
                 String sql = "alter table [" + SCORES_TABLENAME + "] add [time] TIMESTAMP";
                 db.execSQL(sql);
@@ -64,5 +73,8 @@ public class DBOpenHelper extends SQLiteOpenHelper {
             String sql = "alter table [" + SCORES_TABLENAME + "] add [perfect] INTEGER";
             db.execSQL(sql);
         }
+        if (oldVersion <= 6) {
+            createScoreIndexes(db);
+        }
     }
 }
@@ -5,9 +5,8 @@ import org.anddev.andengine.entity.scene.Scene;
 import org.anddev.andengine.entity.sprite.Sprite;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import ru.nsu.ccfit.zuev.osu.BeatmapInfo;
 import ru.nsu.ccfit.zuev.osu.BeatmapProperties;
@@ -39,6 +38,10 @@ public class MenuItem {
     private boolean deleted = false;
     private Entity layer = null;
     private int trackId = -1;
+    private SongFilter.Target searchTarget;
+    private String titleSortKey;
+    private String artistSortKey;
+    private String creatorSortKey;
 
     public MenuItem(final MenuItemListener listener, final BeatmapInfo info) {
         this.listener = new WeakReference<>(listener);
@@ -192,7 +195,7 @@ public class MenuItem {
         selTrack = null;
     }
 
-    public void applyFilter(final String filter, final boolean favs, Set<String> limit) {
+    public void applyFilter(final SongFilter filter, final boolean favs, Set<String> limit) {
         if ((favs && !isFavorite())
                 || (limit != null && !limit.contains(trackDir))) {
             //System.out.println(trackDir);
@@ -203,57 +206,10 @@ public class MenuItem {
             visible = false;
             return;
         }
-        final StringBuilder builder = new StringBuilder();
-        builder.append(beatmap.getTitle());
-        builder.append(' ');
-        builder.append(beatmap.getArtist());
-        builder.append(' ');
-        builder.append(beatmap.getCreator());
-        builder.append(' ');
-        builder.append(beatmap.getTags());
-        builder.append(' ');
-        builder.append(beatmap.getSource());
-        builder.append(' ');
-        builder.append(beatmap.getTracks().get(0).getBeatmapSetID());
-        for (TrackInfo track : beatmap.getTracks()) {
-            builder.append(' ');
-            builder.append(track.getMode());
-        }
-        boolean canVisible = true;
-        final String lowerText = builder.toString().toLowerCase();
-        final String[] lowerFilterTexts = filter.toLowerCase().split("[ ]");
-        for (String filterText : lowerFilterTexts) {
-            Pattern pattern = Pattern.compile("(ar|od|cs|hp|star)(=|<|>|<=|>=)(\\d+)");
-            Matcher matcher = pattern.matcher(filterText);
-            if (matcher.find()) {
-                String key = matcher.group(1);
-                String opt = matcher.group(2);
-                String value = matcher.group(3);
-                boolean vis = false;
-                if(trackId < 0){
-                    for (TrackInfo track : beatmap.getTracks()) {
-                        if (key != null) {
-                            vis |= visibleTrack(track, key, opt, value);
-                        }
-                    }
-                }
-                else{
-                    if (key != null) {
-                        vis = visibleTrack(beatmap.getTrack(trackId), key, opt, value);
-                    }
-                }
-                canVisible &= vis;
-            } else {
-                if (!lowerText.contains(filterText)) {
-                    canVisible = false;
-                    break;
-                }
-            }
-        }
-
-        if (filter.equals("")) {
-            canVisible = true;
+        if (searchTarget == null) {
+            searchTarget = new SongFilter.Target(beatmap, trackId);
         }
+        final boolean canVisible = filter.matches(searchTarget);
 
         if (canVisible) {
             if (!visible) {
@@ -272,40 +228,6 @@ public class MenuItem {
         visible = false;
     }
 
-    private boolean visibleTrack(TrackInfo track, String key, String opt, String value) {
-        switch (key) {
-            case "ar":
-                return calOpt(track.getApproachRate(), Float.parseFloat(value), opt);
-            case "od":
-                return calOpt(track.getOverallDifficulty(), Float.parseFloat(value), opt);
-            case "cs":
-                return calOpt(track.getCircleSize(), Float.parseFloat(value), opt);
-            case "hp":
-                return calOpt(track.getHpDrain(), Float.parseFloat(value), opt);
-            case "star":
-                return calOpt(track.getDifficulty(), Float.parseFloat(value), opt);
-            default:
-                return false;
-        }
-    }
-
-    private boolean calOpt(float val1, float val2, String opt) {
-        switch (opt) {
-            case "=":
-                return val1 == val2;
-            case "<":
-                return val1 < val2;
-            case ">":
-                return val1 > val2;
-            case "<=":
-                return val1 <= val2;
-            case ">=":
-                return val1 >= val2;
-            default:
-                return false;
-        }
-    }
-
     public void delete() {
 
         if (selected) {
@@ -377,6 +299,13 @@ public class MenuItem {
 
     private void initTracks() {
         if (trackId == -1){
+            // Look up the marks of every difficulty at once, so that each track is served from the cache.
+            var filenames = new ArrayList<String>(trackSprites.length);
+            for (int i = 0; i < trackSprites.length; i++) {
+                filenames.add(beatmap.getTrack(i).getFilename());
+            }
+            ScoreLibrary.getInstance().getBestMarks(filenames);
+
             for (int i = 0; i < trackSprites.length; i++) {
                 trackSprites[i] = SongMenuPool.getInstance().newTrack();
                 trackSprites[i].setItem(this);
@@ -429,6 +358,52 @@ public class MenuItem {
         return beatmap.getTrack(Math.max(trackId, 0));
     }
 
+    /**
+     * Gets the sort key of the title. Comparing sort keys with <code>compareTo</code> orders the same way as
+     * comparing titles with <code>compareToIgnoreCase</code>.
+     */
+    public String getTitleSortKey() {
+        if (titleSortKey == null) {
+            titleSortKey = toSortKey(beatmap.getTitle());
+        }
+        return titleSortKey;
+    }
+
+    /**
+     * Gets the sort key of the artist.
+     *
+     * @see #getTitleSortKey()
+     */
+    public String getArtistSortKey() {
+        if (artistSortKey == null) {
+            artistSortKey = toSortKey(beatmap.getArtist());
+        }
+        return artistSortKey;
+    }
+
+    /**
+     * Gets the sort key of the creator.
+     *
+     * @see #getTitleSortKey()
+     */
+    public String getCreatorSortKey() {
+        if (creatorSortKey == null) {
+            creatorSortKey = toSortKey(beatmap.getCreator());
+        }
+        return creatorSortKey;
+    }
+
+    /**
+     * Folds the case of each character the same way as <code>String.compareToIgnoreCase</code>.
+     */
+    private static String toSortKey(final String s) {
+        final char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
     public void removeFromScene() {
         if (scene == null) {
             return;
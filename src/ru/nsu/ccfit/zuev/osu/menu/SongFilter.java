@@ -0,0 +1,244 @@
+package ru.nsu.ccfit.zuev.osu.menu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ru.nsu.ccfit.zuev.osu.BeatmapInfo;
+import ru.nsu.ccfit.zuev.osu.TrackInfo;
+
+/**
+ * A parsed song select filter.
+ * <br><br>
+ * A filter is made of space-separated terms that must all match. Terms such as <code>ar>=9</code> or
+ * <code>star<5</code> compare a difficulty attribute of any difficulty of a beatmap set, while every other term
+ * must be contained in the metadata of the set.
+ * <br><br>
+ * A filter is parsed once per change, and matched against <code>Target</code>s that each item builds once.
+ * Difficulty attributes are read from the tracks on every match, as star ratings may be calculated after the
+ * target was built.
+ */
+public class SongFilter {
+    private static final Pattern predicatePattern = Pattern.compile("(ar|od|cs|hp|star)(=|<|>|<=|>=)(\\d+)");
+
+    private static final int AR = 0;
+    private static final int OD = 1;
+    private static final int CS = 2;
+    private static final int HP = 3;
+    private static final int STAR = 4;
+
+    private static final int EQUAL = 0;
+    private static final int LESS = 1;
+    private static final int GREATER = 2;
+    private static final int LESS_OR_EQUAL = 3;
+    private static final int GREATER_OR_EQUAL = 4;
+
+    /**
+     * An empty filter, which matches every beatmap set.
+     */
+    public static final SongFilter EMPTY = new SongFilter(new String[0], new Predicate[0]);
+
+    private final String[] terms;
+    private final Predicate[] predicates;
+
+    private SongFilter(String[] terms, Predicate[] predicates) {
+        this.terms = terms;
+        this.predicates = predicates;
+    }
+
+    /**
+     * Parses a filter.
+     *
+     * @param filter The filter as typed by the player.
+     * @return The parsed filter.
+     */
+    public static SongFilter parse(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<String> terms = new ArrayList<>();
+        List<Predicate> predicates = new ArrayList<>();
+
+        for (String term : filter.toLowerCase().split("[ ]")) {
+            Matcher matcher = predicatePattern.matcher(term);
+
+            if (matcher.find()) {
+                predicates.add(new Predicate(
+                        parseAttribute(matcher.group(1)),
+                        parseOperator(matcher.group(2)),
+                        Float.parseFloat(matcher.group(3))
+                ));
+            } else if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+
+        return new SongFilter(terms.toArray(new String[0]), predicates.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Whether this filter matches every beatmap set.
+     */
+    public boolean isEmpty() {
+        return terms.length == 0 && predicates.length == 0;
+    }
+
+    /**
+     * Determines whether a beatmap set matches this filter.
+     */
+    public boolean matches(Target target) {
+        for (String term : terms) {
+            if (!target.text.contains(term)) {
+                return false;
+            }
+        }
+
+        for (Predicate predicate : predicates) {
+            if (!predicate.matches(target.tracks)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int parseAttribute(String key) {
+        switch (key) {
+            case "ar":
+                return AR;
+            case "od":
+                return OD;
+            case "cs":
+                return CS;
+            case "hp":
+                return HP;
+            default:
+                return STAR;
+        }
+    }
+
+    private static int parseOperator(String operator) {
+        switch (operator) {
+            case "<":
+                return LESS;
+            case ">":
+                return GREATER;
+            case "<=":
+                return LESS_OR_EQUAL;
+            case ">=":
+                return GREATER_OR_EQUAL;
+            default:
+                return EQUAL;
+        }
+    }
+
+    /**
+     * A comparison of a difficulty attribute against a value.
+     */
+    private static class Predicate {
+        private final int attribute;
+        private final int operator;
+        private final float value;
+
+        private Predicate(int attribute, int operator, float value) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        /**
+         * Determines whether the attribute of any of the given tracks satisfies this predicate.
+         * <br><br>
+         * Tracks whose star rating has not been calculated yet never satisfy a star rating predicate.
+         */
+        private boolean matches(TrackInfo[] tracks) {
+            for (TrackInfo track : tracks) {
+                if (attribute == STAR && track.getDifficulty() == TrackInfo.DIFFICULTY_UNKNOWN) {
+                    continue;
+                }
+
+                float v = getAttribute(track);
+
+                switch (operator) {
+                    case EQUAL:
+                        if (v == value) return true;
+                        break;
+                    case LESS:
+                        if (v < value) return true;
+                        break;
+                    case GREATER:
+                        if (v > value) return true;
+                        break;
+                    case LESS_OR_EQUAL:
+                        if (v <= value) return true;
+                        break;
+                    case GREATER_OR_EQUAL:
+                        if (v >= value) return true;
+                        break;
+                }
+            }
+
+            return false;
+        }
+
+        private float getAttribute(TrackInfo track) {
+            switch (attribute) {
+                case AR:
+                    return track.getApproachRate();
+                case OD:
+                    return track.getOverallDifficulty();
+                case CS:
+                    return track.getCircleSize();
+                case HP:
+                    return track.getHpDrain();
+                default:
+                    return track.getDifficulty();
+            }
+        }
+    }
+
+    /**
+     * The searchable data of a beatmap set, or of a single difficulty of it.
+     */
+    public static class Target {
+        /**
+         * The lowercase metadata of the beatmap set.
+         */
+        private final String text;
+
+        /**
+         * The difficulties whose attributes are compared.
+         */
+        private final TrackInfo[] tracks;
+
+        /**
+         * @param beatmap The beatmap set.
+         * @param trackId The index of the only difficulty to compare attributes of, or -1 to compare all of them.
+         */
+        public Target(BeatmapInfo beatmap, int trackId) {
+            List<TrackInfo> tracks = beatmap.getTracks();
+
+            StringBuilder builder = new StringBuilder();
+            builder.append(beatmap.getTitle());
+            builder.append(' ');
+            builder.append(beatmap.getArtist());
+            builder.append(' ');
+            builder.append(beatmap.getCreator());
+            builder.append(' ');
+            builder.append(beatmap.getTags());
+            builder.append(' ');
+            builder.append(beatmap.getSource());
+            builder.append(' ');
+            builder.append(tracks.get(0).getBeatmapSetID());
+            for (TrackInfo track : tracks) {
+                builder.append(' ');
+                builder.append(track.getMode());
+            }
+            text = builder.toString().toLowerCase();
+
+            this.tracks = trackId < 0 ? tracks.toArray(new TrackInfo[0]) : new TrackInfo[] { beatmap.getTrack(trackId) };
+        }
+    }
+}
@@ -83,6 +83,11 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
     private Activity context;
     private Entity backLayer = new Entity();
     private ArrayList<MenuItem> items = new ArrayList<>();
+    /**
+     * The items sorted by each order that has been used since the items were created, except for the star rating
+     * order, which is sorted again every time.
+     */
+    private final EnumMap<SortOrder, ArrayList<MenuItem>> sortedItems = new EnumMap<>(SortOrder.class);
     private MenuItem selectedItem = null;
     private TrackInfo selectedTrack;
     private Sprite bg = null;
@@ -165,6 +170,7 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
         velocityY = 0;
         selectedItem = null;
         items = new ArrayList<>();
+        sortedItems.clear();
         selectedTrack = null;
         bgLoaded = true;
         SongMenuPool.getInstance().init();
@@ -740,9 +746,9 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
         filterText = filter;
         camY = 0;
         velocityY = 0;
-        final String lowerFilter = filter.toLowerCase();
+        final SongFilter parsedFilter = SongFilter.parse(filter);
         for (final MenuItem item : items) {
-            item.applyFilter(lowerFilter, favsOnly, limit);
+            item.applyFilter(parsedFilter, favsOnly, limit);
         }
         if (favsOnly != this.favsOnly) {
             this.favsOnly = favsOnly;
@@ -760,41 +766,71 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
         if (!sortOrder.equals(FilterMenu.getInstance().getOrder())) {
             sortOrder = FilterMenu.getInstance().getOrder();
         }
-        Collections.sort(items, (i1, i2) -> {
-            String s1;
-            String s2;
-            switch (sortOrder) {
-                case Artist:
-                    s1 = i1.getBeatmap().getArtist();
-                    s2 = i2.getBeatmap().getArtist();
-                    break;
-                case Creator:
-                    s1 = i1.getBeatmap().getCreator();
-                    s2 = i2.getBeatmap().getCreator();
-                    break;
-                case Date:
-                    final Long int1 = i1.getBeatmap().getDate();
-                    final Long int2 = i2.getBeatmap().getDate();
-                    return int2.compareTo(int1);
-                case Bpm:
-                    final float bpm1 = i1.getFirstTrack().getBpmMax();
-                    final float bpm2 = i2.getFirstTrack().getBpmMax();
-                    return Float.compare(bpm2, bpm1);
-                case Stars:
-                    final float float1 = i1.getFirstTrack().getDifficulty();
-                    final float float2 = i2.getFirstTrack().getDifficulty();
-                    return Float.compare(float2, float1);
-                case Length:
-                    final Long length1 = i1.getFirstTrack().getMusicLength();
-                    final Long length2 = i2.getFirstTrack().getMusicLength();
-                    return length2.compareTo(length1);
-                default:
-                    s1 = i1.getBeatmap().getTitle();
-                    s2 = i2.getBeatmap().getTitle();
+        ArrayList<MenuItem> sorted = sortedItems.get(sortOrder);
+        if (sorted == null) {
+            sorted = new ArrayList<>(items);
+            Collections.sort(sorted, getComparator(sortOrder));
+            // Star ratings change after the library is loaded, when they are calculated in the background or on
+            // selection, so that order is always sorted with the current values.
+            if (sortOrder != SortOrder.Stars) {
+                sortedItems.put(sortOrder, sorted);
             }
+        }
+        items.clear();
+        items.addAll(sorted);
+    }
 
-            return s1.compareToIgnoreCase(s2);
-        });
+    /**
+     * Applies star ratings that have been calculated in the background to the sort order and filter.
+     * <br><br>
+     * Must be called on the update thread.
+     */
+    public void onStarRatingsChanged() {
+        if (sortOrder == SortOrder.Stars) {
+            sort();
+            reSelectItem(selectedTrack != null ? selectedTrack.getFilename() : "");
+        }
+        final SongFilter parsedFilter = SongFilter.parse(filterText);
+        if (parsedFilter.isEmpty()) {
+            return;
+        }
+        for (final MenuItem item : items) {
+            item.applyFilter(parsedFilter, favsOnly, limitC);
+        }
+        if (selectedItem != null && !selectedItem.isVisible()) {
+            selectedItem = null;
+            selectedTrack = null;
+        }
+    }
+
+    /**
+     * Deletes the beatmap set of an item, and removes the item from the list.
+     */
+    public void removeItem(final MenuItem item) {
+        item.delete();
+        items.remove(item);
+        for (final ArrayList<MenuItem> sorted : sortedItems.values()) {
+            sorted.remove(item);
+        }
+    }
+
+    private static Comparator<MenuItem> getComparator(final SortOrder order) {
+        switch (order) {
+            case Artist:
+                return (i1, i2) -> i1.getArtistSortKey().compareTo(i2.getArtistSortKey());
+            case Creator:
+                return (i1, i2) -> i1.getCreatorSortKey().compareTo(i2.getCreatorSortKey());
+            case Date:
+                return (i1, i2) -> Long.compare(i2.getBeatmap().getDate(), i1.getBeatmap().getDate());
+            case Bpm:
+                return (i1, i2) -> Float.compare(i2.getFirstTrack().getBpmMax(), i1.getFirstTrack().getBpmMax());
+            case Stars:
+                return (i1, i2) -> Float.compare(i2.getFirstTrack().getDifficulty(), i1.getFirstTrack().getDifficulty());
+            case Length:
+                return (i1, i2) -> Long.compare(i2.getFirstTrack().getMusicLength(), i1.getFirstTrack().getMusicLength());
+            default:
+                return (i1, i2) -> i1.getTitleSortKey().compareTo(i2.getTitleSortKey());
+        }
     }
 
     public void onUpdate(final float pSecondsElapsed) {
@@ -1034,7 +1070,7 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
                 .append("OD: ").append(GameHelper.Round(od, 2)).append(" ")
                 .append("CS: ").append(GameHelper.Round(cs, 2)).append(" ")
                 .append("HP: ").append(GameHelper.Round(hp, 2)).append(" ")
-                .append("Stars: ").append(GameHelper.Round(track.getDifficulty(), 2));
+                .append("Stars: ").append(GameHelper.Round(Math.max(track.getDifficulty(), 0), 2));
 
         dimensionInfo.setText(dimensionStringBuilder.toString());
     }
@@ -1438,6 +1474,7 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
                 item.removeFromScene();
             }
             items.clear();
+            sortedItems.clear();
             switch (type) {
                 case MapSet:
                     for (final BeatmapInfo i : LibraryManager.INSTANCE.getLibrary()) {
@@ -1458,11 +1495,11 @@ public class SongMenu implements IUpdateHandler, MenuItemListener,
                     }
                     break;
             }
-            final String lowerFilter = FilterMenu.getInstance().getFilter().toLowerCase();
+            final SongFilter filter = SongFilter.parse(FilterMenu.getInstance().getFilter());
             final boolean favsOnly = FilterMenu.getInstance().isFavoritesOnly();
             final Set<String> limit = FilterMenu.getInstance().getFavoriteFolder() == null ? null : FavoriteLibrary.get().getMaps(FilterMenu.getInstance().getFavoriteFolder());
             for (final MenuItem item : items) {
-                item.applyFilter(lowerFilter, favsOnly, limit);
+                item.applyFilter(filter, favsOnly, limit);
             }
             System.gc();
         }
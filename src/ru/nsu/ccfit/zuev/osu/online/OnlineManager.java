@@ -21,6 +21,7 @@ import ru.nsu.ccfit.zuev.osu.ResourceManager;
 import ru.nsu.ccfit.zuev.osu.TrackInfo;
 import ru.nsu.ccfit.zuev.osu.helper.MD5Calcuator;
 import ru.nsu.ccfit.zuev.osu.online.PostBuilder.RequestException;
+import ru.nsu.ccfit.zuev.osu.scoring.Replay;
 
 public class OnlineManager {
     public static final String hostname = "osudroid.moe";
@@ -358,7 +359,16 @@ public class OnlineManager {
 
     public void sendReplay(String filename) {
         Debug.i("Sending replay '" + filename + "' for id = " + replayID);
-        OnlineFileOperator.sendFile(endpoint + "upload.php", filename, String.valueOf(replayID));
+
+        // The server and older clients only understand the legacy replay format.
+        File legacyFile = new File(Config.getCachePath(), "upload.odr");
+
+        if (Replay.exportLegacy(filename, legacyFile.getPath())) {
+            OnlineFileOperator.sendFile(endpoint + "upload.php", legacyFile.getPath(), String.valueOf(replayID));
+            legacyFile.delete();
+        } else {
+            OnlineFileOperator.sendFile(endpoint + "upload.php", filename, String.valueOf(replayID));
+        }
     }
 
     public String getScorePack(int playid) throws OnlineManagerException {
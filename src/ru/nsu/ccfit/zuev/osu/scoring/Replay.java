@@ -6,15 +6,23 @@ import androidx.annotation.NonNull;
 
 import org.anddev.andengine.util.Debug;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.zip.Deflater;
@@ -31,6 +39,23 @@ import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
 import ru.nsu.ccfit.zuev.osuplus.R;
 
 public class Replay {
+    /**
+     * The first bytes of the data entry of a compact replay.
+     * <br><br>
+     * Java-serialized streams always start with <code>0xACED</code>, so legacy replays cannot start with this.
+     */
+    static final int COMPACT_MAGIC = 0x4F445236;
+
+    /**
+     * The replay version of compact replays.
+     */
+    public static final int COMPACT_VERSION = 6;
+
+    /**
+     * The amount of fixed-point steps per pixel that cursor coordinates are stored with in compact replays.
+     */
+    private static final float COORDINATE_PRECISION = 64;
+
     public static EnumSet<GameMod> mod = EnumSet.noneOf(GameMod.class);
     public static EnumSet<GameMod> oldMod = EnumSet.noneOf(GameMod.class);
     protected int pointsSkipped = 0;
@@ -111,21 +136,37 @@ public class Replay {
         cursorMoves.get(pid).pushBack(itime, TouchType.UP);
     }
 
+    /**
+     * Saves this replay in the compact replay format.
+     *
+     * @param filename The path to save this replay to.
+     */
     public void save(final String filename) {
+        save(filename, false);
+    }
+
+    /**
+     * Saves this replay in the legacy, Java-serialized replay format, which is understood by older clients.
+     *
+     * @param filename The path to save this replay to.
+     */
+    public void saveLegacy(final String filename) {
+        save(filename, true);
+    }
+
+    private void save(final String filename, final boolean legacy) {
         isSaving = true;
 
         for (int i = 0; i < cursorMoves.size(); i++)
             Debug.i("Replay contains " + cursorMoves.get(i).size + " moves for finger " + i);
         Debug.i("Skipped " + pointsSkipped + " points");
         Debug.i("Replay contains " + objectData.length + " objects");
-        ObjectOutputStream os;
         ZipOutputStream zip;
         try {
-            zip = new ZipOutputStream(new FileOutputStream(filename));
+            zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
             zip.setMethod(ZipOutputStream.DEFLATED);
             zip.setLevel(Deflater.DEFAULT_COMPRESSION);
             zip.putNextEntry(new ZipEntry("data"));
-            os = new ObjectOutputStream(zip);
         } catch (final FileNotFoundException e) {
             Debug.e("File not found " + filename, e);
             isSaving = false;
@@ -136,64 +177,18 @@ public class Replay {
             return;
         }
 
-        try {
-            os.writeObject(new ReplayVersion());
-            os.writeObject(mapName);
-            os.writeObject(mapFile);
-            os.writeObject(md5);
-
-            if (stat != null) {
-                os.writeLong(stat.getTime());
-                os.writeInt(stat.getHit300k());
-                os.writeInt(stat.getHit300());
-                os.writeInt(stat.getHit100k());
-                os.writeInt(stat.getHit100());
-                os.writeInt(stat.getHit50());
-                os.writeInt(stat.getMisses());
-                os.writeInt(stat.getModifiedTotalScore());
-                os.writeInt(stat.getMaxCombo());
-                os.writeFloat(stat.getAccuracy());
-                os.writeBoolean(stat.isPerfect());
-                os.writeObject(stat.getPlayerName());
-                os.writeObject(stat.getMod());
-                //Add in replay version 4
-                os.writeObject(stat.getExtraModString());
-            }
-
-            os.writeInt(cursorMoves.size());
-            //Storing all moves
-            for (final MoveArray move : cursorMoves) {
-                move.writeTo(os);
-            }
-            os.writeInt(objectData.length);
-            for (ReplayObjectData data : objectData) {
-                if (data == null) data = new ReplayObjectData();
-                os.writeShort(data.accuracy);
-                if (data.tickSet == null || data.tickSet.length() == 0) {
-                    os.writeByte(0);
-                } else {
-                    byte[] bytes = new byte[(data.tickSet.length() + 7) / 8];
-                    for (int i = 0; i < data.tickSet.length(); i++) {
-                        if (data.tickSet.get(i)) {
-                            bytes[bytes.length - i / 8 - 1] |= 1 << (i % 8);
-                        }
-                    }
-                    os.writeByte(bytes.length);
-                    os.write(bytes);
-                }
-                os.writeByte(data.result);
+        try (zip) {
+            if (legacy) {
+                final ObjectOutputStream os = new ObjectOutputStream(zip);
+                writeLegacy(os);
+                os.flush();
+            } else {
+                final DataOutputStream os = new DataOutputStream(zip);
+                writeCompact(os);
+                os.flush();
             }
-        } catch (final IOException e) {
-            Debug.e("IOException: " + e.getMessage(), e);
-            isSaving = false;
-            return;
-        }
 
-        try {
-            os.flush();
-            zip.flush();
             zip.closeEntry();
-            zip.flush();
         } catch (final IOException e) {
             Debug.e("IOException: " + e.getMessage(), e);
         }
@@ -201,84 +196,377 @@ public class Replay {
         isSaving = false;
     }
 
-    @SuppressWarnings("unchecked")
-    public boolean loadInfo(final String filename) {
-        ObjectInputStream os;
-        try {
-            final ZipInputStream zip = new ZipInputStream(new FileInputStream(filename));
-            zip.getNextEntry();
-            os = new ObjectInputStream(zip);
-            // zip.close();
-        } catch (final Exception e) {
-            Debug.e("Cannot load replay: " + e.getMessage(), e);
+    private void writeLegacy(final ObjectOutputStream os) throws IOException {
+        os.writeObject(new ReplayVersion());
+        os.writeObject(mapName);
+        os.writeObject(mapFile);
+        os.writeObject(md5);
+
+        if (stat != null) {
+            os.writeLong(stat.getTime());
+            os.writeInt(stat.getHit300k());
+            os.writeInt(stat.getHit300());
+            os.writeInt(stat.getHit100k());
+            os.writeInt(stat.getHit100());
+            os.writeInt(stat.getHit50());
+            os.writeInt(stat.getMisses());
+            os.writeInt(stat.getModifiedTotalScore());
+            os.writeInt(stat.getMaxCombo());
+            os.writeFloat(stat.getAccuracy());
+            os.writeBoolean(stat.isPerfect());
+            os.writeObject(stat.getPlayerName());
+            os.writeObject(stat.getMod());
+            //Add in replay version 4
+            os.writeObject(stat.getExtraModString());
+        }
+
+        os.writeInt(cursorMoves.size());
+        //Storing all moves
+        for (final MoveArray move : cursorMoves) {
+            move.writeTo(os);
+        }
+        os.writeInt(objectData.length);
+        for (ReplayObjectData data : objectData) {
+            if (data == null) data = new ReplayObjectData();
+            os.writeShort(data.accuracy);
+            if (data.tickSet == null || data.tickSet.length() == 0) {
+                os.writeByte(0);
+            } else {
+                byte[] bytes = new byte[(data.tickSet.length() + 7) / 8];
+                for (int i = 0; i < data.tickSet.length(); i++) {
+                    if (data.tickSet.get(i)) {
+                        bytes[bytes.length - i / 8 - 1] |= 1 << (i % 8);
+                    }
+                }
+                os.writeByte(bytes.length);
+                os.write(bytes);
+            }
+            os.writeByte(data.result);
+        }
+    }
+
+    /**
+     * Writes this replay in the compact replay format.
+     * <br><br>
+     * The header is written with plain <code>DataOutput</code> primitives. Cursor movements are stored per finger
+     * in columns (touch types, then times, then X and Y coordinates), with times and fixed-point coordinates
+     * delta-encoded as variable-length integers. Object results are stored in columns as well, with hit results
+     * packed into nibbles.
+     */
+    private void writeCompact(final DataOutputStream os) throws IOException {
+        os.writeInt(COMPACT_MAGIC);
+        os.writeUTF(mapName != null ? mapName : "");
+        os.writeUTF(mapFile != null ? mapFile : "");
+        os.writeUTF(md5 != null ? md5 : "");
+
+        os.writeBoolean(stat != null);
+
+        if (stat != null) {
+            os.writeLong(stat.getTime());
+            os.writeInt(stat.getHit300k());
+            os.writeInt(stat.getHit300());
+            os.writeInt(stat.getHit100k());
+            os.writeInt(stat.getHit100());
+            os.writeInt(stat.getHit50());
+            os.writeInt(stat.getMisses());
+            os.writeInt(stat.getModifiedTotalScore());
+            os.writeInt(stat.getMaxCombo());
+            os.writeFloat(stat.getAccuracy());
+            os.writeBoolean(stat.isPerfect());
+            writeNullableString(os, stat.getPlayerName());
+
+            writeVarInt(os, stat.getMod().size());
+            for (final GameMod mod : stat.getMod()) {
+                os.writeUTF(mod.name());
+            }
+
+            writeNullableString(os, stat.getExtraModString());
+        }
+
+        writeVarInt(os, cursorMoves.size());
+        for (final MoveArray move : cursorMoves) {
+            move.writeCompact(os);
+        }
+
+        writeVarInt(os, objectData.length);
+
+        for (final ReplayObjectData data : objectData) {
+            writeVarInt(os, zigZagEncode(data != null ? data.accuracy : 0));
+        }
+
+        for (int i = 0; i < objectData.length; i += 2) {
+            final int first = objectData[i] != null ? objectData[i].result & 0xF : 0;
+            final int second = i + 1 < objectData.length && objectData[i + 1] != null ? objectData[i + 1].result & 0xF : 0;
+
+            os.writeByte(first | second << 4);
+        }
+
+        for (final ReplayObjectData data : objectData) {
+            if (data == null || data.tickSet == null || data.tickSet.isEmpty()) {
+                writeVarInt(os, 0);
+                continue;
+            }
+
+            final byte[] bytes = data.tickSet.toByteArray();
+            writeVarInt(os, bytes.length);
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a replay in the compact replay format.
+     *
+     * @param is The stream to read from.
+     * @return Whether the replay was read. <code>false</code> if the replay does not match the map of this replay.
+     */
+    private boolean readCompact(final DataInputStream is) throws IOException {
+        final ReplayHeader header = ReplayHeader.readCompact(is);
+
+        if (!matchesMap(header)) {
             return false;
         }
 
-        Debug.i("Loading replay " + filename);
+        replayVersion = header.replayVersion;
+
+        if (header.hasStatistics) {
+            stat = header.toStatistic();
+        }
 
         cursorMoves.clear();
-        int version = 0;
-        try {
-            Object firstObject = os.readObject();
-            Debug.i("Readed object: " + firstObject.getClass().getName());
-            if (firstObject.getClass().equals(ReplayVersion.class)) {
-                Debug.i("Other replay version");
-                version = ((ReplayVersion) firstObject).version;
-                replayVersion = version;
-                mapName = (String) os.readObject();
-            } else {
-                mapName = (String) firstObject;
+        final int cursorCount = readVarInt(is);
+        for (int i = 0; i < cursorCount; i++) {
+            cursorMoves.add(MoveArray.readCompact(is));
+        }
+
+        final int objectCount = readVarInt(is);
+        if (objectData == null) {
+            objectData = new ReplayObjectData[objectCount];
+        }
+
+        final ReplayObjectData[] objects = new ReplayObjectData[objectCount];
+        for (int i = 0; i < objectCount; i++) {
+            objects[i] = new ReplayObjectData();
+            objects[i].accuracy = (short) zigZagDecode(readVarInt(is));
+        }
+
+        for (int i = 0; i < objectCount; i += 2) {
+            final int packed = is.readUnsignedByte();
+
+            objects[i].result = (byte) (packed & 0xF);
+            if (i + 1 < objectCount) {
+                objects[i + 1].result = (byte) (packed >> 4);
             }
-            mapFile = (String) os.readObject();
-            md5 = (String) os.readObject();
+        }
 
-            Debug.i(mapName);
-            Debug.i(mapFile);
-            Debug.i(md5);
+        for (int i = 0; i < objectCount; i++) {
+            final int length = readVarInt(is);
 
-            if (version >= 3) {
-                stat = new StatisticV2();
-                stat.setTime(os.readLong());
-                stat.setHit300k(os.readInt());
-                stat.setHit300(os.readInt());
-                stat.setHit100k(os.readInt());
-                stat.setHit100(os.readInt());
-                stat.setHit50(os.readInt());
-                stat.setMisses(os.readInt());
-                stat.setForcedScore(os.readInt());
-                stat.setMaxCombo(os.readInt());
-                stat.setAccuracy(os.readFloat());
-                stat.setPerfect(os.readBoolean());
-                stat.setPlayerName((String) os.readObject());
-                stat.setMod((EnumSet<GameMod>) os.readObject());
+            if (length > 0) {
+                final byte[] bytes = new byte[length];
+                is.readFully(bytes);
+                objects[i].tickSet = BitSet.valueOf(bytes);
             }
 
-            if (version >= 4) {
-                stat.setExtraModFromString((String) os.readObject());
+            if (i < objectData.length) {
+                objectData[i] = objects[i];
             }
+        }
 
-        } catch (EOFException e) {
+        return true;
+    }
+
+    private boolean matchesMap(final ReplayHeader header) {
+        if (header.mapName.equals(mapName) || header.mapFile.equals(mapFile)) {
+            return true;
+        }
+
+        Debug.i("Replay doesn't match the map!");
+        Debug.i(mapName + " ::: " + header.mapName);
+        Debug.i(mapFile + " ::: " + header.mapFile);
+        Debug.i(md5 + " ::: " + header.md5);
+        ToastLogger.showTextId(R.string.replay_wrongmap, true);
+        return false;
+    }
+
+    /**
+     * Converts a replay in the compact replay format into the legacy replay format, which is understood
+     * by the server and older clients.
+     *
+     * @param source The path to the replay to convert.
+     * @param destination The path to save the converted replay to.
+     * @return Whether the replay was converted. <code>false</code> if the replay is not a compact replay
+     * or could not be read.
+     */
+    public static boolean exportLegacy(final String source, final String destination) {
+        final ReplayHeader header = ReplayHeader.read(source);
+
+        if (header == null || header.replayVersion != COMPACT_VERSION) {
+            return false;
+        }
+
+        final Replay replay = new Replay();
+        replay.setMap(header.mapName, header.mapFile, header.md5);
+
+        try (final InputStream data = openData(source)) {
+            if (!replay.readCompact(new DataInputStream(data))) {
+                return false;
+            }
+        } catch (final Exception e) {
+            Debug.e("Cannot convert replay: " + e.getMessage(), e);
+            return false;
+        }
+
+        replay.saveLegacy(destination);
+        return true;
+    }
+
+    /**
+     * Opens the data entry of a replay file.
+     */
+    static InputStream openData(final String filename) throws IOException {
+        return openData(new FileInputStream(filename));
+    }
+
+    /**
+     * Opens the data entry of the contents of a replay file.
+     */
+    static InputStream openData(final InputStream replayFile) throws IOException {
+        final ZipInputStream zip = new ZipInputStream(replayFile);
+
+        if (zip.getNextEntry() == null) {
+            zip.close();
+            throw new IOException("Replay has no data");
+        }
+
+        return new BufferedInputStream(zip);
+    }
+
+    /**
+     * Checks whether the data entry of a replay file is Java-serialized, leaving the stream at its start.
+     */
+    static boolean isLegacyData(final InputStream data) throws IOException {
+        data.mark(4);
+        final int magic = new DataInputStream(data).readInt();
+        data.reset();
+
+        return magic != COMPACT_MAGIC;
+    }
+
+    private static void writeVarInt(final DataOutput os, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            os.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+
+        os.writeByte(value);
+    }
+
+    static int readVarInt(final DataInput is) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = is.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    private static int zigZagEncode(final int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private static int zigZagDecode(final int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static void writeNullableString(final DataOutput os, final String value) throws IOException {
+        os.writeBoolean(value != null);
+
+        if (value != null) {
+            os.writeUTF(value);
+        }
+    }
+
+    static String readNullableString(final DataInput is) throws IOException {
+        return is.readBoolean() ? is.readUTF() : null;
+    }
+
+    /**
+     * Loads a replay in the compact replay format, converting its cursor movements to real coordinates.
+     */
+    private boolean loadCompact(final InputStream data) {
+        try (data) {
+            if (!readCompact(new DataInputStream(data))) {
+                return false;
+            }
+        } catch (final EOFException e) {
             Debug.e("O_o eof...");
+            Debug.e(e);
             ToastLogger.showTextId(R.string.replay_corrupted, true);
             return false;
-
-        } catch (Exception e) {
+        } catch (final Exception e) {
             ToastLogger.showTextId(R.string.replay_corrupted, true);
             Debug.e("Cannot load replay: " + e.getMessage(), e);
             return false;
         }
 
+        for (final MoveArray move : cursorMoves) {
+            move.toRealCoordinates();
+        }
+
+        for (int i = 0; i < cursorMoves.size(); i++)
+            Debug.i("Loaded " + cursorMoves.get(i).size + " moves for finger " + i);
+        Debug.i("Loaded " + objectData.length + " objects");
+        return true;
+    }
+
+    /**
+     * Loads the map and statistics of a replay without its cursor movements and object results.
+     * <br><br>
+     * Prefer <code>ReplayIndex</code> when only the header of the replay is needed.
+     */
+    public boolean loadInfo(final String filename) {
+        Debug.i("Loading replay " + filename);
+
+        cursorMoves.clear();
+        final ReplayHeader header = ReplayHeader.read(filename);
+        if (header == null) {
+            ToastLogger.showTextId(R.string.replay_corrupted, true);
+            return false;
+        }
+
+        replayVersion = header.replayVersion;
+        mapName = header.mapName;
+        mapFile = header.mapFile;
+        md5 = header.md5;
+
+        Debug.i(mapName);
+        Debug.i(mapFile);
+        Debug.i(md5);
+
+        if (header.hasStatistics) {
+            stat = header.toStatistic();
+        }
+
         return true;
     }
 
-    @SuppressWarnings("unchecked")
     public boolean load(final String filename) {
         ObjectInputStream os;
         try {
-            final ZipInputStream zip = new ZipInputStream(new FileInputStream(filename));
-            zip.getNextEntry();
-            os = new ObjectInputStream(zip);
-            // zip.close();
+            final InputStream data = openData(filename);
+
+            if (!isLegacyData(data)) {
+                Debug.i("Loading replay " + filename);
+                return loadCompact(data);
+            }
+
+            os = new ObjectInputStream(data);
         } catch (final Exception e) {
             Debug.e("Cannot load replay: " + e.getMessage(), e);
             return false;
@@ -287,51 +575,18 @@ public class Replay {
         Debug.i("Loading replay " + filename);
 
         cursorMoves.clear();
-        int version = 0;
         try {
-            String mName;
-            Object firstObject = os.readObject();
-            Debug.i("Read object: " + firstObject.getClass().getName());
-            if (firstObject.getClass().equals(ReplayVersion.class)) {
-                Debug.i("Other replay version");
-                version = ((ReplayVersion) firstObject).version;
-                replayVersion = version;
-                mName = (String) os.readObject();
-            } else {
-                mName = (String) firstObject;
-            }
-            String mFile = (String) os.readObject();
-            String mmd5 = (String) os.readObject();
+            final ReplayHeader header = ReplayHeader.readLegacy(os);
 
-            if (!mName.equals(mapName) && !mFile.equals(mapFile)) {
-                Debug.i("Replay doesn't match the map!");
-                Debug.i(mapName + " ::: " + mName);
-                Debug.i(mapFile + " ::: " + mFile);
-                Debug.i(md5 + " ::: " + mmd5);
-                ToastLogger.showTextId(R.string.replay_wrongmap, true);
+            if (!matchesMap(header)) {
                 os.close();
                 return false;
             }
 
-            if (version >= 3) {
-                stat = new StatisticV2();
-                stat.setTime(os.readLong());
-                stat.setHit300k(os.readInt());
-                stat.setHit300(os.readInt());
-                stat.setHit100k(os.readInt());
-                stat.setHit100(os.readInt());
-                stat.setHit50(os.readInt());
-                stat.setMisses(os.readInt());
-                stat.setForcedScore(os.readInt());
-                stat.setMaxCombo(os.readInt());
-                stat.setAccuracy(os.readFloat());
-                stat.setPerfect(os.readBoolean());
-                stat.setPlayerName((String) os.readObject());
-                stat.setMod((EnumSet<GameMod>) os.readObject());
-            }
+            replayVersion = header.replayVersion;
 
-            if  (version >= 4) {
-                stat.setExtraModFromString((String) os.readObject());
+            if (header.hasStatistics) {
+                stat = header.toStatistic();
             }
 
             int msize = os.readInt();
@@ -347,14 +602,12 @@ public class Replay {
                 if (len > 0) {
                     data.tickSet = new BitSet();
                     byte[] bytes = new byte[len];
-                    if (os.read(bytes) > 0) {
-                        System.out.println("Read " + len + " bytes");
-                    }
+                    os.readFully(bytes);
                     for (int j = 0; j < len * 8; j++) {
                         data.tickSet.set(j, (bytes[len - j / 8 - 1] & 1 << (j % 8)) != 0);
                     }
                 }
-                if (version >= 1) {
+                if (replayVersion >= 1) {
                     data.result = os.readByte();
                 }
                 objectData[i] = data;
@@ -404,6 +657,8 @@ public class Replay {
         Object used to store data about current replay version for compatibility purposes.
         Version 4: Adds ExtraModString's save and load in save()/load()/loadInfo()
         Version 5: Changes coordinates to use the float primitive type
+        Version 6: Compact columnar format written without Java serialization, see writeCompact().
+                   This object is only written by saveLegacy().
      */
     public static class ReplayVersion implements Serializable {
         private static final long serialVersionUID = 4643121693566795335L;
@@ -416,33 +671,91 @@ public class Replay {
         public byte result = 0;
     }
 
-    public static class ReplayMovement {
-        protected int time;
-        protected PointF point = new PointF();
-        protected TouchType touchType;
+    /**
+     * The cursor movements of a finger.
+     * <br><br>
+     * Movements are stored in parallel primitive arrays rather than as objects, so that recording and replaying
+     * do not allocate on the game thread.
+     * <br><br>
+     * Arrays read from compact replays are decoded lazily in chunks as their movements are accessed,
+     * so that loading a replay does not have to decode every movement up front.
+     */
+    public static class MoveArray {
+        private static final TouchType[] touchTypes = TouchType.values();
+
+        /**
+         * The amount of movements that are decoded at once when a lazily decoded movement is accessed.
+         */
+        private static final int DECODE_CHUNK_SIZE = 256;
 
-        public int getTime() {
-            return time;
+        private int[] time;
+        private float[] x;
+        private float[] y;
+        private byte[] type;
+        public int size;
+        public int allocated;
+
+        /**
+         * The decoder of the movements that have not been decoded yet, <code>null</code> if every movement is decoded.
+         */
+        private Decoder decoder;
+
+        public MoveArray(int startSize) {
+            allocated = Math.max(1, startSize);
+            size = 0;
+            time = new int[allocated];
+            x = new float[allocated];
+            y = new float[allocated];
+            type = new byte[allocated];
         }
 
-        public PointF getPoint() {
-            return point;
+        /**
+         * Gets the time of a movement, in milliseconds.
+         */
+        public int getTime(int index) {
+            if (decoder != null && index >= decoder.decoded) {
+                decoder.decode(this, index);
+            }
+            return time[index];
         }
 
-        public TouchType getTouchType() {
-            return touchType;
+        /**
+         * Gets the X coordinate of a movement.
+         */
+        public float getX(int index) {
+            if (decoder != null && index >= decoder.decoded) {
+                decoder.decode(this, index);
+            }
+            return x[index];
         }
-    }
 
-    public static class MoveArray {
-        public ReplayMovement[] movements;
-        public int size;
-        public int allocated;
+        /**
+         * Gets the Y coordinate of a movement.
+         */
+        public float getY(int index) {
+            if (decoder != null && index >= decoder.decoded) {
+                decoder.decode(this, index);
+            }
+            return y[index];
+        }
 
-        public MoveArray(int startSize) {
-            allocated = startSize;
-            size = 0;
-            movements = new ReplayMovement[allocated];
+        /**
+         * Gets the touch type of a movement.
+         */
+        public TouchType getTouchType(int index) {
+            if (decoder != null && index >= decoder.decoded) {
+                decoder.decode(this, index);
+            }
+            return touchTypes[type[index]];
+        }
+
+        /**
+         * Decodes every movement of this array that has not been decoded yet.
+         */
+        public void decodeAll() {
+            if (decoder != null) {
+                decoder.decode(this, size - 1);
+            }
         }
 
         private static float readTouchPoint(ObjectInputStream is, @NonNull Replay replay) throws IOException {
@@ -454,25 +767,27 @@ public class Replay {
             int size = is.readInt();
             MoveArray array = new MoveArray(size);
             array.size = size;
+            PointF gamePoint = new PointF();
             for (int i = 0; i < size; i++) {
-                ReplayMovement movement = new ReplayMovement();
-                array.movements[i] = movement;
-                movement.time = is.readInt();
-                movement.touchType = TouchType.getByID((byte) (movement.time & 3));
-                movement.time >>= 2;
-                if (movement.touchType != TouchType.UP) {
+                int data = is.readInt();
+                array.time[i] = data >> 2;
+                array.type[i] = (byte) (data & 3);
+                if (array.type[i] != TouchType.UP.getId()) {
                     float baseX = readTouchPoint(is, replay);
                     float baseY = readTouchPoint(is, replay);
-                    PointF gamePoint = new PointF(
+                    gamePoint.set(
                             baseX / Config.getTextureQuality(),
                             baseY / Config.getTextureQuality()
                     );
-                    PointF realPoint = replay.replayVersion > 1 ?
-                            Utils.trackToRealCoords(gamePoint) :
-                            Utils.trackToRealCoords(
-                                    Utils.realToTrackCoords(gamePoint, 1024, 600, true)
-                            );
-                    movement.point.set(realPoint);
+                    if (replay.replayVersion > 1) {
+                        Utils.changeTrackToRealCoords(gamePoint);
+                    } else {
+                        gamePoint.set(Utils.trackToRealCoords(
+                                Utils.realToTrackCoords(gamePoint, 1024, 600, true)
+                        ));
+                    }
+                    array.x[i] = gamePoint.x;
+                    array.y[i] = gamePoint.y;
                 }
             }
 
@@ -481,22 +796,20 @@ public class Replay {
 
         public void reallocate(int newSize) {
             if (newSize <= allocated) return;
-            ReplayMovement[] newMovements = new ReplayMovement[newSize];
-            System.arraycopy(movements, 0, newMovements, 0, size);
-            movements = newMovements;
+            time = Arrays.copyOf(time, newSize);
+            x = Arrays.copyOf(x, newSize);
+            y = Arrays.copyOf(y, newSize);
+            type = Arrays.copyOf(type, newSize);
             allocated = newSize;
         }
 
         public boolean checkNewPoint(float px, float py) {
             if (size < 2) return false;
 
-            ReplayMovement minusTwoMovement = movements[size - 2];
-            ReplayMovement previousMovement = movements[size - 1];
+            float tx = (px + x[size - 2]) * 0.5f;
+            float ty = (py + y[size - 2]) * 0.5f;
 
-            float tx = (px + minusTwoMovement.point.x) * 0.5f;
-            float ty = (py + minusTwoMovement.point.y) * 0.5f;
-
-            return (Utils.sqr(previousMovement.point.x - tx) + Utils.sqr(previousMovement.point.y - ty)) <= 25;
+            return (Utils.sqr(x[size - 1] - tx) + Utils.sqr(y[size - 1] - ty)) <= 25;
         }
 
         public void pushBack(Replay replay, int time, float x, float y, TouchType touchType) {
@@ -506,38 +819,282 @@ public class Replay {
                 replay.pointsSkipped++;
             } else {
                 if (size + 1 >= allocated) {
-                    reallocate((allocated * 3) / 2);
+                    reallocate(Math.max(allocated + 2, (allocated * 3) / 2));
                 }
                 size++;
             }
-            ReplayMovement movement = new ReplayMovement();
-            movements[idx] = movement;
-            movement.time = time;
-            movement.point.x = x;
-            movement.point.y = y;
-            movement.touchType = touchType;
+            this.time[idx] = time;
+            this.x[idx] = x;
+            this.y[idx] = y;
+            this.type[idx] = touchType.getId();
         }
 
         public void pushBack(int time, TouchType touchType) {
             if (size >= allocated) {
-                reallocate((allocated * 3) / 2);
+                reallocate(Math.max(allocated + 1, (allocated * 3) / 2));
             }
-            movements[size] = new ReplayMovement();
-            ReplayMovement movement = movements[size];
-            movement.time = time;
-            movement.touchType = touchType;
+            this.time[size] = time;
+            this.x[size] = 0;
+            this.y[size] = 0;
+            this.type[size] = touchType.getId();
             size++;
         }
 
         public void writeTo(@NonNull ObjectOutputStream os) throws IOException {
+            decodeAll();
             os.writeInt(size);
             for (int i = 0; i < size; i++) {
-                ReplayMovement movement = movements[i];
-                os.writeInt((movement.time << 2) + movement.touchType.getId());
-                if (movement.touchType != TouchType.UP) {
-                    os.writeFloat(movement.point.x * Config.getTextureQuality());
-                    os.writeFloat(movement.point.y * Config.getTextureQuality());
+                os.writeInt((time[i] << 2) + type[i]);
+                if (type[i] != TouchType.UP.getId()) {
+                    os.writeFloat(x[i] * Config.getTextureQuality());
+                    os.writeFloat(y[i] * Config.getTextureQuality());
+                }
+            }
+        }
+
+        /**
+         * Writes this array in the compact replay format.
+         * <br><br>
+         * Touch types are packed into 2 bits each. Times and fixed-point coordinates are written as deltas from
+         * the previous movement, so that the small steps between consecutive movements take one or two bytes.
+         */
+        public void writeCompact(@NonNull DataOutputStream os) throws IOException {
+            decodeAll();
+            writeVarInt(os, size);
+
+            for (int i = 0; i < size; i += 4) {
+                int packed = 0;
+
+                for (int j = 0; j < 4 && i + j < size; j++) {
+                    packed |= type[i + j] << (j * 2);
+                }
+
+                os.writeByte(packed);
+            }
+
+            int previousTime = 0;
+            for (int i = 0; i < size; i++) {
+                writeVarInt(os, zigZagEncode(time[i] - previousTime));
+                previousTime = time[i];
+            }
+
+            writeCompactCoordinates(os, x);
+            writeCompactCoordinates(os, y);
+        }
+
+        private void writeCompactCoordinates(DataOutputStream os, float[] coordinates) throws IOException {
+            int previous = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (type[i] == TouchType.UP.getId()) {
+                    continue;
+                }
+
+                int fixed = Math.round(coordinates[i] * Config.getTextureQuality() * COORDINATE_PRECISION);
+
+                writeVarInt(os, zigZagEncode(fixed - previous));
+                previous = fixed;
+            }
+        }
+
+        /**
+         * Reads an array in the compact replay format.
+         * <br><br>
+         * Only the boundaries of the columns are found here. Movements are decoded in chunks when they are accessed.
+         * Coordinates are kept in track coordinates. Use <code>toRealCoordinates</code> to convert them.
+         */
+        @NonNull
+        public static MoveArray readCompact(@NonNull DataInputStream is) throws IOException {
+            int size = readVarInt(is);
+            MoveArray array = new MoveArray(Math.min(size, DECODE_CHUNK_SIZE));
+            array.size = size;
+
+            if (size == 0) {
+                return array;
+            }
+
+            byte[] types = new byte[(size + 3) / 4];
+            is.readFully(types);
+
+            int pointCount = 0;
+            for (int i = 0; i < size; i++) {
+                int touchType = (types[i / 4] >> ((i % 4) * 2)) & 3;
+
+                if (touchType >= touchTypes.length) {
+                    throw new IOException("Invalid touch type " + touchType);
+                }
+
+                if (touchType != TouchType.UP.getId()) {
+                    pointCount++;
+                }
+            }
+
+            array.decoder = new Decoder(types, readVarIntColumn(is, size),
+                    readVarIntColumn(is, pointCount), readVarIntColumn(is, pointCount));
+
+            return array;
+        }
+
+        /**
+         * Reads the bytes of a column of variable-length integers without decoding them.
+         */
+        private static byte[] readVarIntColumn(DataInputStream is, int count) throws IOException {
+            byte[] bytes = new byte[Math.max(16, count)];
+            int length = 0;
+
+            for (int i = 0; i < count; i++) {
+                int b;
+
+                do {
+                    if (length == bytes.length) {
+                        bytes = Arrays.copyOf(bytes, length * 2);
+                    }
+
+                    b = is.readUnsignedByte();
+                    bytes[length++] = (byte) b;
+                } while ((b & 0x80) != 0);
+            }
+
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /**
+         * Converts the track coordinates of this array to real coordinates.
+         * <br><br>
+         * The conversion is affine, so it is captured once and applied to movements that have not been decoded
+         * yet when they are decoded.
+         */
+        public void toRealCoordinates() {
+            // Probing far from the origin keeps the rounding error of the derived scale small.
+            final float probe = 4096;
+            PointF origin = new PointF(0, 0);
+            PointF far = new PointF(probe, probe);
+            Utils.changeTrackToRealCoords(origin);
+            Utils.changeTrackToRealCoords(far);
+
+            float scaleX = (far.x - origin.x) / probe;
+            float scaleY = (far.y - origin.y) / probe;
+
+            int decoded = decoder != null ? decoder.decoded : size;
+            transform(0, decoded, scaleX, origin.x, scaleY, origin.y);
+
+            if (decoder != null) {
+                decoder.scaleX = scaleX;
+                decoder.offsetX = origin.x;
+                decoder.scaleY = scaleY;
+                decoder.offsetY = origin.y;
+            }
+        }
+
+        private void transform(int start, int end, float scaleX, float offsetX, float scaleY, float offsetY) {
+            for (int i = start; i < end; i++) {
+                if (type[i] == TouchType.UP.getId()) {
+                    continue;
                 }
+
+                x[i] = x[i] * scaleX + offsetX;
+                y[i] = y[i] * scaleY + offsetY;
+            }
+        }
+
+        /**
+         * Decodes the columns of a compact replay into a <code>MoveArray</code>.
+         */
+        private static final class Decoder {
+            private final byte[] types;
+            private final VarIntColumn times;
+            private final VarIntColumn xs;
+            private final VarIntColumn ys;
+
+            private int time;
+            private int fixedX;
+            private int fixedY;
+
+            private float scaleX = 1;
+            private float offsetX;
+            private float scaleY = 1;
+            private float offsetY;
+
+            /**
+             * The amount of movements that have been decoded.
+             */
+            private int decoded;
+
+            private Decoder(byte[] types, byte[] times, byte[] xs, byte[] ys) {
+                this.types = types;
+                this.times = new VarIntColumn(times);
+                this.xs = new VarIntColumn(xs);
+                this.ys = new VarIntColumn(ys);
+            }
+
+            /**
+             * Decodes movements in chunks until a movement has been decoded.
+             */
+            private void decode(MoveArray array, int index) {
+                if (index >= array.size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + array.size);
+                }
+
+                int start = decoded;
+                int end = Math.min(array.size, (index / DECODE_CHUNK_SIZE + 1) * DECODE_CHUNK_SIZE);
+
+                if (end > array.allocated) {
+                    array.reallocate(Math.max(end, Math.min(array.size, array.allocated * 2)));
+                }
+
+                float precision = COORDINATE_PRECISION * Config.getTextureQuality();
+
+                for (int i = start; i < end; i++) {
+                    byte touchType = (byte) ((types[i / 4] >> ((i % 4) * 2)) & 3);
+                    array.type[i] = touchType;
+
+                    time += zigZagDecode(times.next());
+                    array.time[i] = time;
+
+                    if (touchType == TouchType.UP.getId()) {
+                        array.x[i] = 0;
+                        array.y[i] = 0;
+                        continue;
+                    }
+
+                    fixedX += zigZagDecode(xs.next());
+                    fixedY += zigZagDecode(ys.next());
+                    array.x[i] = fixedX / precision;
+                    array.y[i] = fixedY / precision;
+                }
+
+                decoded = end;
+                array.transform(start, end, scaleX, offsetX, scaleY, offsetY);
+
+                if (decoded == array.size) {
+                    array.decoder = null;
+                }
+            }
+        }
+
+        /**
+         * A column of variable-length integers that is read sequentially.
+         */
+        private static final class VarIntColumn {
+            private final byte[] bytes;
+            private int position;
+
+            private VarIntColumn(byte[] bytes) {
+                this.bytes = bytes;
+            }
+
+            private int next() {
+                int value = 0;
+                int shift = 0;
+                int b;
+
+                do {
+                    b = bytes[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                return value;
             }
         }
     }
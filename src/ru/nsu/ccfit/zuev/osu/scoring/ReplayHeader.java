@@ -0,0 +1,220 @@
+package ru.nsu.ccfit.zuev.osu.scoring;
+
+import org.anddev.andengine.util.Debug;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.EnumSet;
+
+import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
+
+/**
+ * The header of a replay file, holding the beatmap it was played on and its statistics.
+ * <br><br>
+ * Reading a header stops before cursor movements and object results, and does not require a <code>Replay</code>.
+ */
+public class ReplayHeader {
+    /**
+     * The version of the replay.
+     */
+    public int replayVersion;
+
+    /**
+     * The name of the beatmap the replay was played on.
+     */
+    public String mapName = "";
+
+    /**
+     * The file name of the beatmap the replay was played on.
+     */
+    public String mapFile = "";
+
+    /**
+     * The MD5 hash of the beatmap the replay was played on.
+     */
+    public String md5 = "";
+
+    /**
+     * Whether the replay holds statistics. Replays older than version 3 do not.
+     */
+    public boolean hasStatistics;
+
+    public long time;
+    public int hit300k;
+    public int hit300;
+    public int hit100k;
+    public int hit100;
+    public int hit50;
+    public int misses;
+    public int score;
+    public int maxCombo;
+    public float accuracy;
+    public boolean perfect;
+    public String playerName;
+    public EnumSet<GameMod> mods = EnumSet.noneOf(GameMod.class);
+    public String extraModString;
+
+    /**
+     * Creates the statistics of the replay.
+     *
+     * @return The statistics, <code>null</code> if the replay holds none.
+     */
+    public StatisticV2 toStatistic() {
+        if (!hasStatistics) {
+            return null;
+        }
+
+        final StatisticV2 stat = new StatisticV2();
+        stat.setTime(time);
+        stat.setHit300k(hit300k);
+        stat.setHit300(hit300);
+        stat.setHit100k(hit100k);
+        stat.setHit100(hit100);
+        stat.setHit50(hit50);
+        stat.setMisses(misses);
+        stat.setForcedScore(score);
+        stat.setMaxCombo(maxCombo);
+        stat.setAccuracy(accuracy);
+        stat.setPerfect(perfect);
+        stat.setPlayerName(playerName);
+        stat.setMod(EnumSet.copyOf(mods));
+
+        if (extraModString != null) {
+            stat.setExtraModFromString(extraModString);
+        }
+
+        return stat;
+    }
+
+    /**
+     * Reads the header of a replay file.
+     *
+     * @param filename The path to the replay file.
+     * @return The header, <code>null</code> if the file is not a readable replay.
+     */
+    public static ReplayHeader read(final String filename) {
+        try {
+            return read(new FileInputStream(filename));
+        } catch (final IOException e) {
+            Debug.e("Cannot read replay header: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the header of a replay file.
+     *
+     * @param replayFile The contents of the replay file. The stream is closed afterwards.
+     * @return The header, <code>null</code> if the contents are not a readable replay.
+     */
+    public static ReplayHeader read(final InputStream replayFile) {
+        try (final InputStream data = Replay.openData(replayFile)) {
+            if (Replay.isLegacyData(data)) {
+                return readLegacy(new ObjectInputStream(data));
+            }
+
+            return readCompact(new DataInputStream(data));
+        } catch (final Exception e) {
+            Debug.e("Cannot read replay header: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the header of a Java-serialized replay.
+     */
+    @SuppressWarnings("unchecked")
+    static ReplayHeader readLegacy(final ObjectInputStream is) throws IOException, ClassNotFoundException {
+        final ReplayHeader header = new ReplayHeader();
+
+        final Object firstObject = is.readObject();
+        if (firstObject.getClass().equals(Replay.ReplayVersion.class)) {
+            header.replayVersion = ((Replay.ReplayVersion) firstObject).version;
+            header.mapName = (String) is.readObject();
+        } else {
+            header.mapName = (String) firstObject;
+        }
+        header.mapFile = (String) is.readObject();
+        header.md5 = (String) is.readObject();
+
+        if (header.mapName == null) header.mapName = "";
+        if (header.mapFile == null) header.mapFile = "";
+        if (header.md5 == null) header.md5 = "";
+
+        if (header.replayVersion >= 3) {
+            header.hasStatistics = true;
+            header.time = is.readLong();
+            header.hit300k = is.readInt();
+            header.hit300 = is.readInt();
+            header.hit100k = is.readInt();
+            header.hit100 = is.readInt();
+            header.hit50 = is.readInt();
+            header.misses = is.readInt();
+            header.score = is.readInt();
+            header.maxCombo = is.readInt();
+            header.accuracy = is.readFloat();
+            header.perfect = is.readBoolean();
+            header.playerName = (String) is.readObject();
+            header.mods = (EnumSet<GameMod>) is.readObject();
+
+            if (header.mods == null) {
+                header.mods = EnumSet.noneOf(GameMod.class);
+            }
+        }
+
+        if (header.replayVersion >= 4) {
+            header.extraModString = (String) is.readObject();
+        }
+
+        return header;
+    }
+
+    /**
+     * Reads the header of a compact replay.
+     */
+    static ReplayHeader readCompact(final DataInputStream is) throws IOException {
+        if (is.readInt() != Replay.COMPACT_MAGIC) {
+            throw new IOException("Invalid replay header");
+        }
+
+        final ReplayHeader header = new ReplayHeader();
+        header.replayVersion = Replay.COMPACT_VERSION;
+        header.mapName = is.readUTF();
+        header.mapFile = is.readUTF();
+        header.md5 = is.readUTF();
+
+        if (is.readBoolean()) {
+            header.hasStatistics = true;
+            header.time = is.readLong();
+            header.hit300k = is.readInt();
+            header.hit300 = is.readInt();
+            header.hit100k = is.readInt();
+            header.hit100 = is.readInt();
+            header.hit50 = is.readInt();
+            header.misses = is.readInt();
+            header.score = is.readInt();
+            header.maxCombo = is.readInt();
+            header.accuracy = is.readFloat();
+            header.perfect = is.readBoolean();
+            header.playerName = Replay.readNullableString(is);
+
+            final int modCount = Replay.readVarInt(is);
+            for (int i = 0; i < modCount; i++) {
+                final String name = is.readUTF();
+
+                try {
+                    header.mods.add(GameMod.valueOf(name));
+                } catch (IllegalArgumentException e) {
+                    Debug.e("Unknown mod in replay: " + name);
+                }
+            }
+
+            header.extraModString = Replay.readNullableString(is);
+        }
+
+        return header;
+    }
+}
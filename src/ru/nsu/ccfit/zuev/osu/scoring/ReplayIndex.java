@@ -0,0 +1,321 @@
+package ru.nsu.ccfit.zuev.osu.scoring;
+
+import org.anddev.andengine.util.Debug;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import ru.nsu.ccfit.zuev.osu.Config;
+import ru.nsu.ccfit.zuev.osu.game.mods.GameMod;
+
+/**
+ * A persistent index of the headers of replay files under <code>Config.getScorePath()</code>.
+ * <br><br>
+ * Entries are keyed by path and remember the size and modification time of their file, so a replay is only
+ * opened again when it has changed on disk.
+ */
+public final class ReplayIndex {
+    private static final String HEADER = "replayindex";
+    private static final int FORMAT_VERSION = 1;
+
+    private static ReplayIndex instance;
+
+    private final File file;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    private boolean loaded;
+    private boolean dirty;
+
+    /**
+     * @param file The file to persist the index to.
+     */
+    public ReplayIndex(File file) {
+        this.file = file;
+    }
+
+    public static synchronized ReplayIndex getInstance() {
+        if (instance == null) {
+            instance = new ReplayIndex(new File(Config.getCachePath(), "replays.index.dat"));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Retrieves the header of a replay file, reading it only if the file is not indexed or has changed.
+     *
+     * @param replayFile The replay file.
+     * @return The header, <code>null</code> if the file does not exist or is not a readable replay.
+     */
+    public synchronized ReplayHeader get(File replayFile) {
+        ensureLoaded();
+
+        var path = replayFile.getAbsolutePath();
+        var entry = entries.get(path);
+
+        if (!replayFile.isFile()) {
+            if (entry != null) {
+                entries.remove(path);
+                dirty = true;
+            }
+
+            return null;
+        }
+
+        long size = replayFile.length();
+        long lastModified = replayFile.lastModified();
+
+        if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+            entry = new Entry(size, lastModified, ReplayHeader.read(path));
+            entries.put(path, entry);
+            dirty = true;
+        }
+
+        return entry.header;
+    }
+
+    /**
+     * Brings the index up to date with the replay files under <code>Config.getScorePath()</code> and saves it.
+     *
+     * @return The headers of all readable replays.
+     */
+    public synchronized List<ReplayHeader> refresh() {
+        ensureLoaded();
+
+        var headers = new ArrayList<ReplayHeader>();
+        var scoreDir = new File(Config.getScorePath());
+        var scoreDirPath = scoreDir.getAbsolutePath();
+        var files = scoreDir.listFiles((dir, name) -> name.endsWith(".odr"));
+        var paths = new HashMap<String, File>();
+
+        if (files != null) {
+            for (var replayFile : files) {
+                paths.put(replayFile.getAbsolutePath(), replayFile);
+            }
+        }
+
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            var path = it.next();
+
+            // Replays outside of the score directory are kept, as they are only added by explicit lookups.
+            if (!paths.containsKey(path) && path.startsWith(scoreDirPath)) {
+                it.remove();
+                dirty = true;
+            }
+        }
+
+        for (var replayFile : paths.values()) {
+            var header = get(replayFile);
+
+            if (header != null) {
+                headers.add(header);
+            }
+        }
+
+        save();
+
+        return headers;
+    }
+
+    /**
+     * Saves the index to disk if it has been modified.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        // Written to a temporary file first, so that the game being killed mid-write does not truncate the index.
+        var tempFile = new File(file.getPath() + ".tmp");
+
+        try (var ostream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            ostream.writeUTF(HEADER);
+            ostream.writeInt(FORMAT_VERSION);
+            ostream.writeInt(entries.size());
+
+            for (var entry : entries.entrySet()) {
+                writeEntry(ostream, entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            Debug.e("ReplayIndex: " + e.getMessage(), e);
+
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            Debug.e("ReplayIndex: Unable to replace " + file.getPath());
+
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * Loads the index from disk if it has not been loaded yet.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+
+        if (!file.exists()) {
+            return;
+        }
+
+        try (var istream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!HEADER.equals(istream.readUTF()) || istream.readInt() != FORMAT_VERSION) {
+                dirty = true;
+                return;
+            }
+
+            int count = istream.readInt();
+
+            for (int i = 0; i < count; ++i) {
+                readEntry(istream);
+            }
+        } catch (IOException e) {
+            Debug.e("ReplayIndex: " + e.getMessage(), e);
+
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    private void writeEntry(DataOutputStream ostream, String path, Entry entry) throws IOException {
+        ostream.writeUTF(path);
+        ostream.writeLong(entry.size);
+        ostream.writeLong(entry.lastModified);
+
+        var header = entry.header;
+        ostream.writeBoolean(header != null);
+
+        if (header == null) {
+            return;
+        }
+
+        ostream.writeInt(header.replayVersion);
+        ostream.writeUTF(header.mapName);
+        ostream.writeUTF(header.mapFile);
+        ostream.writeUTF(header.md5);
+        ostream.writeBoolean(header.hasStatistics);
+
+        if (!header.hasStatistics) {
+            return;
+        }
+
+        ostream.writeLong(header.time);
+        ostream.writeInt(header.hit300k);
+        ostream.writeInt(header.hit300);
+        ostream.writeInt(header.hit100k);
+        ostream.writeInt(header.hit100);
+        ostream.writeInt(header.hit50);
+        ostream.writeInt(header.misses);
+        ostream.writeInt(header.score);
+        ostream.writeInt(header.maxCombo);
+        ostream.writeFloat(header.accuracy);
+        ostream.writeBoolean(header.perfect);
+        writeNullableString(ostream, header.playerName);
+
+        ostream.writeInt(header.mods.size());
+        for (var mod : header.mods) {
+            ostream.writeUTF(mod.name());
+        }
+
+        writeNullableString(ostream, header.extraModString);
+    }
+
+    private void readEntry(DataInputStream istream) throws IOException {
+        var path = istream.readUTF();
+        long size = istream.readLong();
+        long lastModified = istream.readLong();
+        ReplayHeader header = null;
+
+        if (istream.readBoolean()) {
+            header = new ReplayHeader();
+            header.replayVersion = istream.readInt();
+            header.mapName = istream.readUTF();
+            header.mapFile = istream.readUTF();
+            header.md5 = istream.readUTF();
+            header.hasStatistics = istream.readBoolean();
+
+            if (header.hasStatistics) {
+                header.time = istream.readLong();
+                header.hit300k = istream.readInt();
+                header.hit300 = istream.readInt();
+                header.hit100k = istream.readInt();
+                header.hit100 = istream.readInt();
+                header.hit50 = istream.readInt();
+                header.misses = istream.readInt();
+                header.score = istream.readInt();
+                header.maxCombo = istream.readInt();
+                header.accuracy = istream.readFloat();
+                header.perfect = istream.readBoolean();
+                header.playerName = readNullableString(istream);
+
+                int modCount = istream.readInt();
+                header.mods = EnumSet.noneOf(GameMod.class);
+                for (int i = 0; i < modCount; ++i) {
+                    try {
+                        header.mods.add(GameMod.valueOf(istream.readUTF()));
+                    } catch (IllegalArgumentException e) {
+                        // The mod no longer exists, so the entry has to be read from the replay again.
+                        size = -1;
+                    }
+                }
+
+                header.extraModString = readNullableString(istream);
+            }
+        }
+
+        entries.put(path, new Entry(size, lastModified, header));
+    }
+
+    private static void writeNullableString(DataOutputStream ostream, String value) throws IOException {
+        ostream.writeBoolean(value != null);
+
+        if (value != null) {
+            ostream.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream istream) throws IOException {
+        return istream.readBoolean() ? istream.readUTF() : null;
+    }
+
+    /**
+     * An indexed replay file.
+     */
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+
+        /**
+         * The header of the replay, <code>null</code> if the file is not a readable replay.
+         */
+        private final ReplayHeader header;
+
+        private Entry(long size, long lastModified, ReplayHeader header) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.header = header;
+        }
+    }
+}
@@ -12,8 +12,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,7 +31,36 @@ import ru.nsu.ccfit.zuev.osuplus.R;
 public class ScoreLibrary {
     private static final Pattern newPathPattern = Pattern.compile("[^/]*/[^/]*\\z");
     private static ScoreLibrary lib = new ScoreLibrary();
+
+    /**
+     * The maximum amount of tracks whose best mark is cached. Least recently used entries are evicted first.
+     */
+    private static final int MAX_CACHED_MARKS = 2000;
+
+    /**
+     * The maximum amount of tracks looked up in a single query, kept below SQLite's host parameter limit.
+     */
+    private static final int MARK_BATCH_SIZE = 500;
+
+    /**
+     * Cached in place of tracks without scores, as the cache cannot hold <code>null</code> values apart from misses.
+     */
+    private static final String NO_MARK = "";
+
+    /**
+     * The maximum time to wait for queued scores when shutting down, in milliseconds.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 2000;
+
     private SQLiteDatabase db = null;
+    private ScoreWriter writer = null;
+
+    private final LinkedHashMap<String, String> bestMarks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_MARKS;
+        }
+    };
 
     private ScoreLibrary() {
     }
@@ -68,6 +100,9 @@ public class ScoreLibrary {
                     true);
             throw new RuntimeException(e);
         }
+        if (writer == null || writer.isClosed()) {
+            writer = new ScoreWriter(db, DBOpenHelper.SCORES_TABLENAME);
+        }
         loadOld(context);
     }
 
@@ -123,15 +158,24 @@ public class ScoreLibrary {
                 }
             }
 
+            in.close();
+
             if (scores != null) {
+                // The scores are written in as few transactions as possible, and waited for before the old
+                // scoreboard is removed.
+                final ArrayList<Future<Long>> results = new ArrayList<>();
                 for (String track : scores.keySet()) {
                     for (StatisticV2 stat : scores.get(track)) {
-                        addScore(track, stat, null);
+                        final Future<Long> result = addScore(track, stat, null);
+                        if (result != null) {
+                            results.add(result);
+                        }
                     }
                 }
+                for (final Future<Long> result : results) {
+                    result.get();
+                }
             }
-
-            in.close();
         } catch (final Exception e) {
             Debug.e("ScoreLibrary.loadOld: " + e.getMessage());
             return;
@@ -143,6 +187,27 @@ public class ScoreLibrary {
 
     }
 
+    /**
+     * Writes every queued score and stops the background writer.
+     */
+    public void shutdown() {
+        if (writer != null) {
+            writer.close(SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    /**
+     * Queues a row to be inserted into the scores table.
+     *
+     * @param values The values of the row.
+     * @return The ID of the inserted row, -1 if the insert failed. <code>null</code> if the database is not loaded.
+     */
+    public Future<Long> insertScore(final ContentValues values) {
+        if (writer == null) return null;
+        final String track = values.getAsString("filename");
+        return writer.insert(values, () -> invalidateBestMark(track));
+    }
+
     public void sendScoreOnline(final StatisticV2 stat, final String replay,
                                 final SendingPanel panel) {
         Debug.i("Preparing for online!");
@@ -150,13 +215,18 @@ public class ScoreLibrary {
         OnlineScoring.getInstance().sendRecord(stat, panel, replay);
     }
 
-    public void addScore(final String trackPath, final StatisticV2 stat, final String replay) {
+    /**
+     * Queues a score to be saved. The score is written by a background thread, so this does not block on I/O.
+     *
+     * @return The ID of the inserted row, -1 if the insert failed. <code>null</code> if the score was not saved.
+     */
+    public Future<Long> addScore(final String trackPath, final StatisticV2 stat, final String replay) {
         if (stat.getModifiedTotalScore() == 0) {
-            return;
+            return null;
         }
         final String track = getTrackPath(trackPath);
 
-        if (db == null) return;
+        if (writer == null) return null;
         ContentValues values = new ContentValues();
         values.put("filename", track);
         values.put("playername", stat.getPlayerName());
@@ -175,8 +245,8 @@ public class ScoreLibrary {
         values.put("time", stat.getTime());
         values.put("perfect", stat.isPerfect() ? 1 : 0);
 
-        long result = db.insert(DBOpenHelper.SCORES_TABLENAME, null, values);
-        Debug.i("Inserting data, result = " + result);
+        Debug.i("Queueing score for " + track);
+        final Future<Long> result = insertScore(values);
 
 //		String[] columns = {"id", "filename", "score", "replayfile"};
 //		Cursor response =
@@ -208,6 +278,7 @@ public class ScoreLibrary {
 //		}
 
 //		response.close();
+        return result;
     }
 
     public Cursor getMapScores(String[] columns, String filename) {
@@ -219,48 +290,106 @@ public class ScoreLibrary {
 
     public String getBestMark(final String trackPath) {
         final String track = getTrackPath(trackPath);
-        String[] columns = {"mark", "filename", "id", "score"};
+
+        synchronized (bestMarks) {
+            final String cached = bestMarks.get(track);
+            if (cached != null) {
+                return cached.equals(NO_MARK) ? null : cached;
+            }
+        }
+
+        if (db == null) return null;
+        String[] columns = {"mark"};
         Cursor response =
                 db.query(DBOpenHelper.SCORES_TABLENAME, columns, "filename = ?",
-                        new String[]{track}, null, null, "score DESC");
-        if (response.getCount() == 0) {
+                        new String[]{track}, null, null, "score DESC", "1");
+        String mark = response.moveToFirst() ? response.getString(0) : null;
+        response.close();
+
+        synchronized (bestMarks) {
+            bestMarks.put(track, mark != null ? mark : NO_MARK);
+        }
+
+        return mark;
+    }
+
+    /**
+     * Retrieves the best marks of many tracks, looking up uncached tracks in as few queries as possible.
+     *
+     * @param trackPaths The paths of the tracks.
+     * @return The best mark of each track that has a score, keyed by the given path.
+     */
+    public Map<String, String> getBestMarks(final Collection<String> trackPaths) {
+        final Map<String, String> marks = new HashMap<>();
+        final ArrayList<String> uncached = new ArrayList<>();
+
+        synchronized (bestMarks) {
+            for (final String trackPath : trackPaths) {
+                final String cached = bestMarks.get(getTrackPath(trackPath));
+
+                if (cached == null) {
+                    uncached.add(trackPath);
+                } else if (!cached.equals(NO_MARK)) {
+                    marks.put(trackPath, cached);
+                }
+            }
+        }
+
+        if (uncached.isEmpty() || db == null) {
+            return marks;
+        }
+
+        for (int start = 0; start < uncached.size(); start += MARK_BATCH_SIZE) {
+            final int end = Math.min(uncached.size(), start + MARK_BATCH_SIZE);
+            final Map<String, String> found = new HashMap<>();
+            final String[] tracks = new String[end - start];
+            final StringBuilder placeholders = new StringBuilder();
+
+            for (int i = start; i < end; i++) {
+                tracks[i - start] = getTrackPath(uncached.get(i));
+                placeholders.append(i > start ? ",?" : "?");
+            }
+
+            // SQLite returns the other columns of the row holding the maximum score.
+            Cursor response = db.rawQuery("SELECT filename, mark, MAX(score) FROM " + DBOpenHelper.SCORES_TABLENAME
+                    + " WHERE filename IN (" + placeholders + ") GROUP BY filename", tracks);
+            while (response.moveToNext()) {
+                found.put(response.getString(0), response.getString(1));
+            }
             response.close();
-            return null;
+
+            synchronized (bestMarks) {
+                for (int i = start; i < end; i++) {
+                    final String track = tracks[i - start];
+                    final String mark = found.get(track);
+
+                    bestMarks.put(track, mark != null ? mark : NO_MARK);
+                    if (mark != null) {
+                        marks.put(uncached.get(i), mark);
+                    }
+                }
+            }
         }
-        response.moveToFirst();
-
-        String mark = response.getString(0);
-//		do {
-//			final String s = response.getString(0);
-//			if (s.equals("XH")) {
-//				mark = s;
-//			} else if (s.equals("X") && mark.equals("XH") == false) {
-//				mark = s;
-//			} else if (s.equals("SH") && mark.equals("XH") == false
-//					&& mark.equals("X") == false) {
-//				mark = s;
-//			} else if (s.equals("S") && mark.equals("XH") == false
-//					&& mark.equals("X") == false && mark.equals("SH") == false) {
-//				mark = s;
-//			} else if (s.equals("A") && mark.equals("XH") == false
-//					&& mark.equals("X") == false && mark.equals("SH") == false
-//					&& mark.equals("S") == false) {
-//				mark = s;
-//			} else if (s.equals("B") && mark.equals("XH") == false
-//					&& mark.equals("X") == false && mark.equals("SH") == false
-//					&& mark.equals("S") == false && mark.equals("A") == false) {
-//				mark = s;
-//			} else if (s.equals("C") && mark.equals("XH") == false
-//					&& mark.equals("X") == false && mark.equals("SH") == false
-//					&& mark.equals("S") == false && mark.equals("A") == false
-//					&& mark.equals("B") == false) {
-//				mark = s;
-//			}
-//		} while (response.moveToNext());
 
-        response.close();
+        return marks;
+    }
 
-        return mark;
+    /**
+     * Drops the cached best mark of a track, after its scores have changed.
+     */
+    public void invalidateBestMark(final String trackPath) {
+        synchronized (bestMarks) {
+            bestMarks.remove(getTrackPath(trackPath));
+        }
+    }
+
+    /**
+     * Drops every cached best mark, after scores of unknown tracks have changed.
+     */
+    public void invalidateBestMarks() {
+        synchronized (bestMarks) {
+            bestMarks.clear();
+        }
     }
 
     public StatisticV2 getScore(int id) {
@@ -295,6 +424,7 @@ public class ScoreLibrary {
     }
 
     public boolean deleteScore(int id) {
+        invalidateBestMarks();
         return db.delete(DBOpenHelper.SCORES_TABLENAME, "id = " + id, null) != 0;
     }
 }
@@ -0,0 +1,232 @@
+package ru.nsu.ccfit.zuev.osu.scoring;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.reco1l.framework.lang.execution.Async;
+
+import org.anddev.andengine.util.Debug;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A single background writer for rows of the scores table.
+ * <br><br>
+ * Inserts are queued and written by one thread, which groups every insert queued at the time into a single
+ * transaction. Callers receive a <code>Future</code> of the inserted row ID instead of waiting for flash I/O.
+ */
+public final class ScoreWriter {
+    /**
+     * The maximum amount of inserts written in a single transaction.
+     */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final SQLiteDatabase db;
+    private final String table;
+    private final LinkedBlockingQueue<PendingInsert> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * @param db The database to write to.
+     * @param table The table to insert rows into.
+     */
+    public ScoreWriter(SQLiteDatabase db, String table) {
+        this.db = db;
+        this.table = table;
+
+        thread = new Thread(this::run, Async.THREAD_PREFIX + "ScoreWriter");
+        thread.start();
+    }
+
+    /**
+     * Queues a row to be inserted.
+     *
+     * @param values The values of the row.
+     * @param onWritten Ran on the writer thread once the row has been committed, may be <code>null</code>.
+     * @return The ID of the inserted row, -1 if the insert failed.
+     */
+    public Future<Long> insert(ContentValues values, Runnable onWritten) {
+        var pending = new PendingInsert(values, onWritten);
+
+        if (closed) {
+            // The writer thread is gone, so the row is written on the caller's thread instead.
+            var batch = new ArrayList<PendingInsert>(1);
+            batch.add(pending);
+            write(batch);
+        } else {
+            queue.add(pending);
+
+            // The writer thread may have stopped between the check above and queueing the insert.
+            if (closed && !thread.isAlive() && queue.remove(pending)) {
+                var batch = new ArrayList<PendingInsert>(1);
+                batch.add(pending);
+                write(batch);
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Waits until every row queued so far has been written.
+     *
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @return Whether all rows were written in time.
+     */
+    public boolean flush(long timeout) {
+        var marker = new PendingInsert(null, null);
+
+        if (closed && !thread.isAlive()) {
+            return true;
+        }
+
+        queue.add(marker);
+
+        // The writer thread may have stopped before picking up the marker, leaving nothing to wait for.
+        if (!thread.isAlive() && queue.remove(marker)) {
+            return true;
+        }
+
+        try {
+            return marker.latch.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Writes every queued row and stops the writer thread. Rows inserted afterwards are written synchronously.
+     *
+     * @param timeout The maximum time to wait for queued rows, in milliseconds.
+     */
+    public void close(long timeout) {
+        closed = true;
+
+        if (!flush(timeout)) {
+            Debug.e("ScoreWriter: timed out while writing queued scores");
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void run() {
+        var batch = new ArrayList<PendingInsert>(MAX_BATCH_SIZE);
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Debug.e("ScoreWriter: interrupted, " + queue.size() + " scores were not written");
+                return;
+            }
+
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            write(batch);
+            batch.clear();
+
+            if (closed && queue.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void write(ArrayList<PendingInsert> batch) {
+        boolean committed = false;
+
+        try {
+            db.beginTransaction();
+
+            try {
+                for (int i = 0; i < batch.size(); ++i) {
+                    var pending = batch.get(i);
+
+                    if (pending.values != null) {
+                        pending.id = db.insert(table, null, pending.values);
+                    }
+                }
+
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            committed = true;
+        } catch (Exception e) {
+            Debug.e("ScoreWriter: " + e.getMessage(), e);
+        }
+
+        for (int i = 0; i < batch.size(); ++i) {
+            var pending = batch.get(i);
+
+            if (!committed) {
+                pending.id = -1;
+            }
+
+            if (pending.onWritten != null) {
+                try {
+                    pending.onWritten.run();
+                } catch (Exception e) {
+                    Debug.e("ScoreWriter: " + e.getMessage(), e);
+                }
+            }
+
+            pending.latch.countDown();
+        }
+    }
+
+    /**
+     * A queued insert, completed once its transaction has ended.
+     */
+    private static final class PendingInsert implements Future<Long> {
+        private final ContentValues values;
+        private final Runnable onWritten;
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile long id = -1;
+
+        private PendingInsert(ContentValues values, Runnable onWritten) {
+            this.values = values;
+            this.onWritten = onWritten;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        @Override
+        public Long get() throws InterruptedException {
+            latch.await();
+            return id;
+        }
+
+        @Override
+        public Long get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            if (!latch.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+
+            return id;
+        }
+    }
+}